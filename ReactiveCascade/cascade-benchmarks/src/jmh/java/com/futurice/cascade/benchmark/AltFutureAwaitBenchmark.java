@@ -0,0 +1,69 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-in of {@link IAltFuture#await(IAltFuture[])} over steps which finish on different thread types:
+ * {@link Async#WORKER}, {@link Async#SERIAL_WORKER} and a thread type which runs on the calling thread
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AltFutureAwaitBenchmark {
+    private IThreadType mSynchronous;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init();
+        mSynchronous = BenchmarkAsync.newSynchronousThreadType("Synchronous");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mSynchronous.shutdownNow("End of benchmark", null, null, 0);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public IAltFuture<?, Integer> awaitAll() throws InterruptedException {
+        final IAltFuture<?, Integer> worker = Async.WORKER.then(() -> 1);
+        final IAltFuture<?, Integer> serialWorker = Async.SERIAL_WORKER.then(() -> 2);
+        final IAltFuture<?, Integer> synchronous = mSynchronous.then(() -> 3);
+        final SettableAltFuture<Integer> joined = (SettableAltFuture<Integer>) new SettableAltFuture<>(Async.WORKER, 0)
+                .await(worker, serialWorker, synchronous);
+
+        worker.fork();
+        serialWorker.fork();
+        synchronous.fork();
+        if (!joined.blockUntilDone(1, TimeUnit.SECONDS)) { // Parked until the last upchain step sets it
+            throw new IllegalStateException("await() did not complete: " + joined);
+        }
+
+        return joined;
+    }
+}
@@ -0,0 +1,113 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.functional.ActionRAltFuture;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of building and running a chain of {@link IAltFuture} steps
+ * <p>
+ * <code>create</code> measures only {@link IThreadType#then(com.futurice.cascade.i.IActionR)} and
+ * {@link IAltFuture#map(com.futurice.cascade.i.IActionOneR)}. <code>forkToCompletion</code> also runs
+ * the chain and waits for the last step, so on {@link Async#WORKER} it includes every thread handoff.
+ * The <code>synchronous</code> thread type runs each step on the calling thread, which leaves only the
+ * cost of the AltFuture machinery. <code>forkToCompletion</code> builds the whole chain before it forks
+ * the first step, so with a <code>fusedStepLimit</code> the steps run as one task, see
+ * {@link IThreadType#setFusedStepLimit(int)}.
+ * <p>
+ * Divide the <code>gc.alloc.rate.norm</code> result of the GC profiler by <code>steps</code> for the bytes
+ * allocated per step.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AltFutureChainBenchmark {
+    @Param({"1", "10", "100"})
+    public int steps;
+
+    @Param({"WORKER", "synchronous"})
+    public String threadTypeName;
+
+    @Param({"0", "1000"})
+    public int fusedStepLimit;
+
+    private IThreadType mThreadType;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init();
+        mThreadType = "WORKER".equals(threadTypeName) ? Async.WORKER : BenchmarkAsync.newSynchronousThreadType("Synchronous");
+        mThreadType.setFusedStepLimit(fusedStepLimit);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (mThreadType != Async.WORKER) {
+            mThreadType.shutdownNow("End of benchmark", null, null, 0);
+        } else {
+            mThreadType.setFusedStepLimit(0);
+        }
+    }
+
+    @NonNull
+    private IAltFuture<?, Integer> createChain() {
+        return addSteps(mThreadType.then(() -> 0));
+    }
+
+    @NonNull
+    private IAltFuture<?, Integer> addSteps(@NonNull IAltFuture<?, Integer> altFuture) {
+        for (int i = 1; i < steps; i++) {
+            altFuture = altFuture.map(value -> value + 1);
+        }
+
+        return altFuture;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public IAltFuture<?, Integer> create() {
+        return createChain();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public IAltFuture<?, Integer> forkToCompletion() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final IAltFuture<?, Integer> altFuture = addSteps(new ActionRAltFuture<>(mThreadType, () -> 0));
+
+        altFuture.then(value -> {
+            latch.countDown();
+        }).fork();
+        latch.await();
+
+        return altFuture;
+    }
+}
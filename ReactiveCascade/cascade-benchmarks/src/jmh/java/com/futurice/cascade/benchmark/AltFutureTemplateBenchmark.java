@@ -0,0 +1,109 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.functional.ActionRAltFuture;
+import com.futurice.cascade.functional.AltFutureTemplate;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running the same six step pipeline many times, as a new {@link IAltFuture} chain each time and as one
+ * {@link AltFutureTemplate}
+ * <p>
+ * Compare the <code>gc.alloc.rate.norm</code> results of the GC profiler. Both include one
+ * {@link CountDownLatch} per run to wait for the last step.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AltFutureTemplateBenchmark {
+    private static final int STEPS = 6;
+
+    @Param({"WORKER", "synchronous"})
+    public String threadTypeName;
+
+    private IThreadType mThreadType;
+    private AltFutureTemplate<Integer, Integer> mTemplate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init();
+        mThreadType = "WORKER".equals(threadTypeName) ? Async.WORKER : BenchmarkAsync.newSynchronousThreadType("Synchronous");
+
+        AltFutureTemplate<Integer, Integer> template = new AltFutureTemplate<>(mThreadType, value -> value + 1);
+        for (int i = 1; i < STEPS; i++) {
+            template = template.map(value -> value + 1);
+        }
+        mTemplate = template;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (mThreadType != Async.WORKER) {
+            mThreadType.shutdownNow("End of benchmark", null, null, 0);
+        }
+    }
+
+    @NonNull
+    private IAltFuture<?, Integer> createChain() {
+        IAltFuture<?, Integer> altFuture = new ActionRAltFuture<>(mThreadType, () -> 1);
+
+        for (int i = 1; i < STEPS; i++) {
+            altFuture = altFuture.map(value -> value + 1);
+        }
+
+        return altFuture;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public IAltFuture<?, Integer> chain() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final IAltFuture<?, Integer> altFuture = createChain();
+
+        altFuture.then(value -> {
+            latch.countDown();
+        }).fork();
+        latch.await();
+
+        return altFuture;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CountDownLatch template() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        mTemplate.run(0, value -> latch.countDown(), e -> latch.countDown());
+        latch.await();
+
+        return latch;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.AsyncBuilder;
+import com.futurice.cascade.core.BuildConfig;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.util.DefaultThreadType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared setup for the benchmarks
+ * <p>
+ * {@link com.futurice.cascade.Async} binds its thread types once when the class is loaded, so every
+ * benchmark calls {@link #init()} before it touches <code>Async</code>.
+ */
+public final class BenchmarkAsync {
+    private static volatile boolean sInitialized = false;
+
+    private BenchmarkAsync() {
+    }
+
+    /**
+     * Build the default {@link AsyncBuilder} once per JVM with the run-time checks turned off
+     */
+    public static void init() {
+        init(false, 1);
+    }
+
+    /**
+     * Build the default {@link AsyncBuilder} once per JVM with the run-time checks turned off. Only the
+     * first call in each JVM fork takes effect.
+     *
+     * @param traceAsyncOrigin record where each asynchronous object is created
+     * @param originSampleRate see {@link AsyncBuilder#setOriginSampleRate(int)}
+     */
+    public static synchronized void init(
+            final boolean traceAsyncOrigin,
+            final int originSampleRate) {
+        if (sInitialized) {
+            return;
+        }
+        if (BuildConfig.DEBUG) {
+            throw new IllegalStateException("Benchmarks of a debug build measure the debug checks. Run without -PcascadeDebug=true");
+        }
+        new AsyncBuilder()
+                .setRuntimeAssertionsEnabled(false)
+                .setUseForkedState(false)
+                .setStrictMode(false)
+                .setFailFast(false)
+                .setShowErrorStackTraces(traceAsyncOrigin)
+                .setOriginSampleRate(originSampleRate)
+                .build();
+        sInitialized = true;
+    }
+
+    /**
+     * Create a thread type which runs each task at once on the thread which submits it. This measures
+     * the cost of the AltFuture machinery without any thread handoff.
+     *
+     * @param name of the thread type
+     * @return the new thread type
+     */
+    @NonNull
+    public static IThreadType newSynchronousThreadType(@NonNull final String name) {
+        return new DefaultThreadType(name, new SynchronousExecutorService(), new LinkedBlockingQueue<>());
+    }
+
+    /**
+     * Run each task on the calling thread
+     */
+    private static final class SynchronousExecutorService extends AbstractExecutorService {
+        private volatile boolean mShutdown = false;
+
+        @Override // Executor
+        public void execute(@NonNull final Runnable command) {
+            command.run();
+        }
+
+        @Override // ExecutorService
+        public void shutdown() {
+            mShutdown = true;
+        }
+
+        @NonNull
+        @Override // ExecutorService
+        public List<Runnable> shutdownNow() {
+            mShutdown = true;
+            return Collections.emptyList();
+        }
+
+        @Override // ExecutorService
+        public boolean isShutdown() {
+            return mShutdown;
+        }
+
+        @Override // ExecutorService
+        public boolean isTerminated() {
+            return mShutdown;
+        }
+
+        @Override // ExecutorService
+        public boolean awaitTermination(
+                final long timeout,
+                @NonNull final TimeUnit unit) {
+            return mShutdown;
+        }
+    }
+}
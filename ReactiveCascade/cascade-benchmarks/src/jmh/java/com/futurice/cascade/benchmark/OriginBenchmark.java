@@ -0,0 +1,51 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.functional.SettableAltFuture;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of recording where each asynchronous object is created
+ * <p>
+ * <code>originSampleRate</code> 0 turns origin tracing off. Each setting runs in its own JVM fork because
+ * {@link Async#TRACE_ASYNC_ORIGIN} is fixed when the class loads.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OriginBenchmark {
+    @Param({"0", "1", "16"})
+    public int originSampleRate;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init(originSampleRate > 0, Math.max(1, originSampleRate));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public SettableAltFuture<Integer> createAltFuture() {
+        return new SettableAltFuture<>(Async.WORKER);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.i.IReactiveSource;
+import com.futurice.cascade.reactive.ReactiveValue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One {@link ReactiveValue#set(Object)} passed down a chain of
+ * {@link IReactiveSource#subscribeMap(com.futurice.cascade.i.IActionOneR)} steps on {@link Async#WORKER}
+ * <p>
+ * Each operation waits until the last step has received the new value. <code>gc.alloc.rate.norm</code>
+ * divided by <code>depth</code> is the bytes allocated per step.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactiveChainBenchmark {
+    @Param({"1", "10", "100"})
+    public int depth;
+
+    private final List<IReactiveSource<Integer>> mSubscriptions = new ArrayList<>(); // Steps are only weakly held by their source
+    private ReactiveValue<Integer> mReactiveValue;
+    private volatile int mLastReceived = 0;
+    private int mValue = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init();
+        mReactiveValue = new ReactiveValue<>("Chain", Async.WORKER, null, null);
+        IReactiveSource<Integer> source = mReactiveValue;
+        for (int i = 0; i < depth; i++) {
+            source = source.subscribeMap(value -> value);
+            mSubscriptions.add(source);
+        }
+        mSubscriptions.add(source.subscribe(value -> {
+            mLastReceived = value;
+        }));
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int subscribeMapChain() {
+        final int value = ++mValue;
+
+        mReactiveValue.set(value);
+        while (mLastReceived != value) {
+            Thread.yield();
+        }
+
+        return value;
+    }
+}
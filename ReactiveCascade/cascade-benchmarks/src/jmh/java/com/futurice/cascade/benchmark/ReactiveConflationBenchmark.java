@@ -0,0 +1,72 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.i.IReactiveSource;
+import com.futurice.cascade.reactive.ReactiveValue;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ReactiveValue#set(Object)} as fast as one thread can call it, with one slow-to-keep-up target
+ * <p>
+ * Values which arrive while the previous fire is still queued replace it in <code>mLatestFireIn</code>
+ * instead of queueing again. The <code>fires</code> counter is how many values the target actually
+ * received per second; compared to the <code>set</code> score it shows how much was conflated.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactiveConflationBenchmark {
+    private final AtomicLong mFires = new AtomicLong();
+    private ReactiveValue<Integer> mReactiveValue;
+    private IReactiveSource<Integer> mSubscription; // The target is only weakly held by its source
+    private int mValue = 0;
+
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class FireCounters {
+        public long fires;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init();
+        mReactiveValue = new ReactiveValue<>("Conflation", Async.WORKER, null, null);
+        mSubscription = mReactiveValue.subscribe(value -> {
+            mFires.incrementAndGet();
+        });
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpIteration() {
+        mFires.set(0);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void set(final FireCounters counters) {
+        mReactiveValue.set(++mValue);
+        counters.fires = mFires.get();
+    }
+}
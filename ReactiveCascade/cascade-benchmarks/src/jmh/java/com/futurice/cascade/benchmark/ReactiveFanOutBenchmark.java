@@ -0,0 +1,73 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.benchmark;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.i.IReactiveSource;
+import com.futurice.cascade.reactive.ReactiveValue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One {@link ReactiveValue#set(Object)} delivered to N subscribed targets on {@link Async#WORKER}
+ * <p>
+ * Each operation waits until every target has received the new value, so nothing is conflated and
+ * the time is for one complete fan-out through <code>fire()</code>, <code>forEachReactiveTarget()</code>
+ * and <code>fireNext()</code>. <code>gc.alloc.rate.norm</code> is the bytes allocated per fire.
+ */
+@State(Scope.Thread)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReactiveFanOutBenchmark {
+    @Param({"1", "10", "100"})
+    public int targets;
+
+    private final AtomicInteger mRemaining = new AtomicInteger();
+    private final List<IReactiveSource<Integer>> mSubscriptions = new ArrayList<>(); // Targets are only weakly held by their source
+    private ReactiveValue<Integer> mReactiveValue;
+    private int mValue = 0;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchmarkAsync.init();
+        mReactiveValue = new ReactiveValue<>("FanOut", Async.WORKER, null, null);
+        for (int i = 0; i < targets; i++) {
+            mSubscriptions.add(mReactiveValue.subscribe(value -> {
+                mRemaining.decrementAndGet();
+            }));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int fanOut() {
+        mRemaining.set(targets);
+        mReactiveValue.set(++mValue);
+        while (mRemaining.get() > 0) {
+            Thread.yield();
+        }
+
+        return mValue;
+    }
+}
@@ -5,26 +5,29 @@ This is open source for the common good. Please contribute improvements by pull
 */
 package com.futurice.cascade;
 
-import android.app.ActivityManager;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import android.util.Log;
 
 import com.futurice.cascade.i.IAction;
 import com.futurice.cascade.i.IActionOne;
 import com.futurice.cascade.i.IActionOneR;
 import com.futurice.cascade.i.IActionR;
 import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.ICancellable;
 import com.futurice.cascade.i.IRunnableAltFuture;
 import com.futurice.cascade.i.ISettableAltFuture;
 import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.ITypedThread;
 import com.futurice.cascade.util.DefaultThreadType;
+import com.futurice.cascade.util.PlatformLog;
+import com.futurice.cascade.util.ThreadTypeMetrics;
 import com.futurice.cascade.util.TypedThread;
 
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * "Any sufficiently advanced technology is indistinguishable from magic" -Arthur C Clarke
@@ -48,7 +51,11 @@ import java.util.concurrent.ScheduledExecutorService;
  * {@link DefaultThreadType} for managing tasks in one section of your architecture.
  */
 public final class Async {
-    //TODO TIMER system tests
+    /**
+     * @deprecated Use {@link IThreadType#schedule(long, TimeUnit, IAction)} which does not need a hop
+     * from the timer thread to the thread type where the work runs
+     */
+    @Deprecated
     public static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r ->
             new Thread(r, "Timer"));
     /**
@@ -56,7 +63,7 @@ public final class Async {
      * <p>
      * See also {@link Async#UI}. The system thread / main thread / UI thread is not created by Cascade, it does
      * not extend this class. It is wrapped in a special implementation with the the assistance of
-     * {@link com.futurice.cascade.util.UIExecutorService}
+     * <code>UIExecutorService</code> in the Android binding
      */
     public static final IThreadType NON_CASCADE_THREAD = new IThreadType() {
         /**
@@ -130,6 +137,16 @@ public final class Async {
             throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
         }
 
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        public boolean removeFromQueue(@NonNull Runnable runnable) {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
         /**
          * This is a marker class only.
          *
@@ -276,6 +293,79 @@ public final class Async {
             throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
         }
 
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        @NonNull
+        public <IN> ICancellable schedule(long delay, @NonNull TimeUnit timeUnit, @NonNull IAction<IN> action) {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        @NonNull
+        public <IN> ICancellable scheduleAtFixedRate(long initialDelay, long period, @NonNull TimeUnit timeUnit, @NonNull IAction<IN> action) {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        @NonNull
+        public ThreadTypeMetrics getMetrics() {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        public void setCapacity(int capacity, @NonNull OverflowPolicy overflowPolicy) {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        public void setInlineContinuationLimit(int limit) {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        public void setFusedStepLimit(int limit) {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
+        /**
+         * This is a marker class only.
+         *
+         * @throws UnsupportedOperationException
+         */
+        @Override // IThreadType
+        public int getFusedStepLimit() {
+            throw new UnsupportedOperationException("NON_CASCADE_THREAD is a marker and does not support execution");
+        }
+
         /**
          * This is a marker class only.
          *
@@ -328,6 +418,10 @@ public final class Async {
      * The from of {@link AsyncBuilder#isShowErrorStackTraces()} locked in for performance reasons by the <em>first</em> <code>AsyncBuilder</code>
      */
     public static final boolean TRACE_ASYNC_ORIGIN = (ASYNC_BUILDER == null) || ASYNC_BUILDER.isShowErrorStackTraces(); // This makes finding where in you code a given log line was directly or indirectly called, but slows running
+    /**
+     * The from of {@link AsyncBuilder#getOriginSampleRate()} locked in for performance reasons by the <em>first</em> <code>AsyncBuilder</code>
+     */
+    public static final int ORIGIN_SAMPLE_RATE = (ASYNC_BUILDER == null) ? 1 : ASYNC_BUILDER.getOriginSampleRate();
     // Some of the following logic lines are funky to support the Android visual editor. If you never initialized Async, you will want to see something in the visual editor. This matters for UI classes which receive services from Async
     public static final Thread UI_THREAD = (ASYNC_BUILDER == null) ? null : ASYNC_BUILDER.mUiThread; // The main system thread for this Context
     /**
@@ -381,7 +475,7 @@ public final class Async {
 
     static {
         if (!AsyncBuilder.isInitialized()) {
-            Log.e(Async.class.getSimpleName(),
+            PlatformLog.e(Async.class.getSimpleName(),
                     AsyncBuilder.NOT_INITIALIZED,
                     new IllegalStateException(AsyncBuilder.NOT_INITIALIZED));
         }
@@ -420,13 +514,13 @@ public final class Async {
         // Kill the app hard after some delay. You are not allowed to refire this Intent in some critical phases (Activity startup)
         //TODO let the Activity or Service down slowly and gently with lifecycle callbacks if production build
         if (sExitWithErrorCodeStarted) {
-            Log.v(tag, "Already existing, ignoring exit with error code (" + errorCode + "): " + message + "-" + t);
+            PlatformLog.v(tag, "Already existing, ignoring exit with error code (" + errorCode + "): " + message + "-" + t);
         } else {
             sExitWithErrorCodeStarted = true; // Not a thread-safe perfect lock, but fast and good enough to generally avoid duplicate shutdown messages during debug
             if (t != null) {
-                Log.e(tag, "Exit with error code (" + errorCode + "): " + message, t);
+                PlatformLog.e(tag, "Exit with error code (" + errorCode + "): " + message, t);
             } else {
-                Log.i(tag, "Exit, no error code : " + message);
+                PlatformLog.i(tag, "Exit, no error code : " + message);
             }
             WORKER.shutdownNow("exitWithErrorCode: " + message, null, null, 0);
             NET_READ.shutdownNow("exitWithErrorCode: " + message, null, null, 0);
@@ -438,7 +532,7 @@ public final class Async {
                     // Give the user time to see a popup split adb time to receive the error messages from this process before it dies
                     Thread.sleep(FAIL_FAST_SLEEP_BEFORE_SYSTEM_EXIT);
                 } catch (Exception e2) {
-                    Log.d(tag, "Problem while pausing before failfast system exit due to " + t, e2);
+                    PlatformLog.d(tag, "Problem while pausing before failfast system exit due to " + t, e2);
                 }
                 System.exit(errorCode);
             }, "FailFastDelayThread")
@@ -490,8 +584,9 @@ public final class Async {
      * If the current thread belongs to more than one <code>ThreadType</>, subscribe the returned ThreadType will be the one
      * which created the Thread
      * <p>
-     * This is used for debugging only. For performance reasons it will always return <code>null</code>
-     * in production builds.
+     * On an {@link ITypedThread} or the UI thread this is one field read, so it is cheap enough for hot paths
+     * such as inline execution decisions and thread assertions. Other threads, such as those of a
+     * {@link com.futurice.cascade.util.VirtualThreadType}, also cost one {@link ThreadLocal} read.
      * <p>
      * Beware of debugging confusion if you use one Thread as part of the executor in multiple different ThreadTypes
      *
@@ -501,13 +596,14 @@ public final class Async {
     public static IThreadType currentThreadType() {
         final Thread thread = Thread.currentThread();
 
-        if (thread instanceof TypedThread) {
-            return ((TypedThread) thread).getThreadType();
-        } else if (isUiThread()) {
+        if (thread instanceof ITypedThread) {
+            return ((ITypedThread) thread).getThreadType();
+        } else if (thread == UI_THREAD) {
             return UI;
         }
 
-        return NON_CASCADE_THREAD;
+        final IThreadType threadType = TypedThread.getCurrentThreadType(); // Virtual threads, which can not be an ITypedThread
+        return threadType != null ? threadType : NON_CASCADE_THREAD;
     }
 
     /**
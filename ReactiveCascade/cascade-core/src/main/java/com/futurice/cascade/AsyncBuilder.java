@@ -5,13 +5,11 @@ This is open source for the common good. Please contribute improvements by pull
 */
 package com.futurice.cascade;
 
-import android.content.Context;
-import android.os.Handler;
-import android.os.StrictMode;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.annotation.VisibleForTesting;
-import android.util.Log;
 
+import com.futurice.cascade.core.BuildConfig;
 import com.futurice.cascade.functional.ImmutableValue;
 import com.futurice.cascade.i.CallOrigin;
 import com.futurice.cascade.i.IAltFuture;
@@ -19,18 +17,24 @@ import com.futurice.cascade.i.IThreadType;
 import com.futurice.cascade.i.NotCallOrigin;
 import com.futurice.cascade.util.DefaultThreadType;
 import com.futurice.cascade.util.DoubleQueue;
+import com.futurice.cascade.util.ForkJoinThreadType;
+import com.futurice.cascade.util.IndexedBlockingDeque;
+import com.futurice.cascade.util.PlatformLog;
+import com.futurice.cascade.util.SerialThreadType;
 import com.futurice.cascade.util.TypedThread;
-import com.futurice.cascade.util.UIExecutorService;
+import com.futurice.cascade.util.VirtualThreadType;
 
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * <code><pre>
@@ -51,11 +55,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class AsyncBuilder {
     public static final int NUMBER_OF_CORES = Runtime.getRuntime().availableProcessors();
     public static final int NUMBER_OF_CONCURRENT_NET_READS = 4;
-    static final String NOT_INITIALIZED = "Please init with new AsyncBuilder(this).build() in for example Activity.onCreate() _before_ the classloader touches Async.class";
+    public static final int NUMBER_OF_KEYED_SERIAL_STRIPES = 32;
+    static final String NOT_INITIALIZED = "Please init with new AndroidAsyncBuilder(this).build() in for example Activity.onCreate(), or new AsyncBuilder().build() on a JVM, _before_ the classloader touches Async.class";
     private final static AtomicInteger sThreadNumber = new AtomicInteger();
     public static volatile AsyncBuilder sAsyncBuilder = null;
     static Thread sSerialWorkerThread;
-    public final Context mContext;
     private static final String TAG = AsyncBuilder.class.getSimpleName();
     private final AtomicBoolean mWorkerPoolIncludesSerialWorkerThread = new AtomicBoolean(false);
     public Thread mUiThread;
@@ -65,12 +69,17 @@ public class AsyncBuilder {
     private boolean mStrictModeEnabled = BuildConfig.DEBUG;
     private boolean mFailFast = BuildConfig.DEBUG;
     private boolean mShowErrorStackTraces = BuildConfig.DEBUG;
+    private int mOriginSampleRate = 1;
+    private boolean mUseForkJoinWorker = false;
+    private boolean mUseVirtualThreads = false;
     private IThreadType mWorkerThreadType;
     private IThreadType mSerialWorkerThreadType;
     private IThreadType mUiThreadType;
     private IThreadType mNetReadThreadType;
+    private boolean mNetReadThreadTypeCreated = false; // True if NET_READ is the default this builder created, not one set by the application
     private IThreadType mNetWriteThreadType;
     private IThreadType mFileThreadType;
+    private final AtomicReferenceArray<IThreadType> mKeyedSerialThreadTypes = new AtomicReferenceArray<>(NUMBER_OF_KEYED_SERIAL_STRIPES);
     private BlockingQueue<Runnable> mWorkerQueue;
     private BlockingQueue<Runnable> mSerialWorkerQueue;
     private BlockingQueue<Runnable> mFileQueue;
@@ -84,26 +93,12 @@ public class AsyncBuilder {
     private ExecutorService mNetWriteExecutorService;
 
     /**
-     * Create a new <code>AsyncBuilder</code> that will run as long as the specified
-     * {@link android.content.Context} will run.
+     * Create a new <code>AsyncBuilder</code> for a plain JVM, for example a server or a benchmark.
      * <p>
-     * Unless you have reason to do otherwise, you probably want to pass
-     * {@link android.app.Activity#getApplicationContext()} to ensure that the asynchronous
-     * actions last past the end of the current {@link android.app.Activity}. If you do so,
-     * you can for effeciency only create the one instance for the entire application lifecycle
-     * by for example setting a static variable the first time the <code>AsyncBuilder</code>
-     * is used.
-     *
-     * @param context
-     */
-    public AsyncBuilder(@NonNull final Context context) {
-        Context c = context;
-        try {
-            c = context.getApplicationContext();
-        } catch (NullPointerException e) {
-            // Needed for instrumentation setup with Android test runner
-        }
-        this.mContext = c;
+     * {@link Async#UI} is then a single daemon thread which stands in for the system UI thread. On
+     * Android use <code>AndroidAsyncBuilder</code> from the <code>cascade</code> module instead.
+     */
+    public AsyncBuilder() {
     }
 
     static boolean isInitialized() {
@@ -128,7 +123,7 @@ public class AsyncBuilder {
      * @param enabled mode
      */
     public AsyncBuilder setRuntimeAssertionsEnabled(final boolean enabled) {
-        Log.v(TAG, "setRuntimeAssertionsEnabled(" + enabled + ")");
+        PlatformLog.v(TAG, "setRuntimeAssertionsEnabled(" + enabled + ")");
         this.mRuntimeAssertionsEnabled = enabled;
 
         return this;
@@ -154,7 +149,7 @@ public class AsyncBuilder {
      * @param enabled mode
      */
     public AsyncBuilder setUseForkedState(final boolean enabled) {
-        Log.v(TAG, "setUseForkedState(" + enabled + ")");
+        PlatformLog.v(TAG, "setUseForkedState(" + enabled + ")");
         this.mUseForkedState = enabled;
 
         return this;
@@ -177,7 +172,7 @@ public class AsyncBuilder {
      * @param enabled mode
      */
     public AsyncBuilder setStrictMode(final boolean enabled) {
-        Log.v(TAG, "setStrictMode(" + enabled + ")");
+        PlatformLog.v(TAG, "setStrictMode(" + enabled + ")");
         this.mStrictModeEnabled = enabled;
 
         return this;
@@ -203,7 +198,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setFailFast(final boolean failFast) {
-        Log.v(TAG, "setFailFast(" + failFast + ")");
+        PlatformLog.v(TAG, "setFailFast(" + failFast + ")");
         this.mFailFast = failFast;
         return this;
     }
@@ -221,12 +216,112 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setShowErrorStackTraces(final boolean showErrorStackTraces) {
-        Log.v(TAG, "setShowErrorStackTraces(" + showErrorStackTraces + ")");
+        PlatformLog.v(TAG, "setShowErrorStackTraces(" + showErrorStackTraces + ")");
         this.mShowErrorStackTraces = showErrorStackTraces;
 
         return this;
     }
 
+    /**
+     * Get the fraction of asynchronous objects which record where they were created
+     *
+     * @return 1 in this many objects record their origin
+     */
+    public int getOriginSampleRate() {
+        return mOriginSampleRate;
+    }
+
+    /**
+     * When {@link #isShowErrorStackTraces()}, each asynchronous object records the line in your code which
+     * created it. Resolving a new line is slow, so each unique call stack is resolved once and shared. Set
+     * this higher to also skip reading the call stack for most objects, for example to leave tracing on
+     * under load in a staging build. The other objects log a placeholder instead of their origin.
+     * <p>
+     * The default from is <code>1</code>, record every origin
+     *
+     * @param originSampleRate 1 in this many objects record their origin
+     * @return the builder, for chaining
+     */
+    @NonNull
+    public AsyncBuilder setOriginSampleRate(final int originSampleRate) {
+        PlatformLog.v(TAG, "setOriginSampleRate(" + originSampleRate + ")");
+        if (originSampleRate < 1) {
+            throw new IllegalArgumentException("Origin sample rate must be 1 or more: " + originSampleRate);
+        }
+        this.mOriginSampleRate = originSampleRate;
+
+        return this;
+    }
+
+    /**
+     * Check if {@link Async#WORKER} will be a work-stealing {@link ForkJoinThreadType}
+     *
+     * @return mode
+     */
+    public boolean isUseForkJoinWorker() {
+        return mUseForkJoinWorker;
+    }
+
+    /**
+     * Set whether the default {@link Async#WORKER} should be a work-stealing {@link ForkJoinThreadType}
+     * with one deque per thread instead of a {@link ThreadPoolExecutor} sharing a single
+     * {@link LinkedBlockingDeque}. This reduces lock contention on devices with many cores.
+     * <p>
+     * The {@link Async#SERIAL_WORKER} thread will not help with {@link Async#WORKER} tasks in this mode.
+     * Requires API 21 or higher.
+     * <p>
+     * The default from is <code>false</code>
+     *
+     * @param enabled mode
+     * @return the builder, for chaining
+     */
+    @NonNull
+    public AsyncBuilder setUseForkJoinWorker(final boolean enabled) {
+        PlatformLog.v(TAG, "setUseForkJoinWorker(" + enabled + ")");
+        this.mUseForkJoinWorker = enabled;
+
+        return this;
+    }
+
+    /**
+     * Check if the blocking I/O thread types will be {@link VirtualThreadType}s when supported
+     *
+     * @return mode
+     */
+    public boolean isUseVirtualThreads() {
+        return mUseVirtualThreads;
+    }
+
+    /**
+     * Set whether the default {@link Async#NET_READ}, {@link Async#NET_WRITE} and {@link Async#FILE}
+     * should be {@link VirtualThreadType}s. A blocking call then holds a cheap virtual thread instead
+     * of one of a small pool of OS threads, so many more can wait at the same time.
+     * <p>
+     * This has effect only on a Java 21 or later JVM, see {@link VirtualThreadType#isSupported()}.
+     * Otherwise the default thread types are used.
+     * <p>
+     * The default from is <code>false</code>
+     *
+     * @param enabled mode
+     * @return the builder, for chaining
+     */
+    @NonNull
+    public AsyncBuilder setUseVirtualThreads(final boolean enabled) {
+        PlatformLog.v(TAG, "setUseVirtualThreads(" + enabled + ")");
+        this.mUseVirtualThreads = enabled;
+
+        return this;
+    }
+
+    private boolean isVirtualThreadsEnabled() {
+        if (mUseVirtualThreads && !VirtualThreadType.isSupported()) {
+            PlatformLog.i(TAG, "Virtual threads are not supported on this runtime, using the default thread types");
+            mUseVirtualThreads = false;
+        }
+
+        return mUseVirtualThreads;
+    }
+
     /**
      * @return
      */
@@ -234,6 +329,9 @@ public class AsyncBuilder {
     @NotCallOrigin
     @VisibleForTesting
     IThreadType getWorkerThreadType() {
+        if (mWorkerThreadType == null && mUseForkJoinWorker) {
+            setWorkerThreadType(new ForkJoinThreadType("WorkerThreadType", NUMBER_OF_CORES));
+        }
         if (mWorkerThreadType == null) {
             ImmutableValue<IThreadType> threadTypeImmutableValue = new ImmutableValue<>();
             setWorkerThreadType(new DefaultThreadType("WorkerThreadType",
@@ -253,7 +351,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setWorkerThreadType(@NonNull final IThreadType workerThreadType) {
-        Log.v(TAG, "setWorkerThreadType(" + workerThreadType + ")");
+        PlatformLog.v(TAG, "setWorkerThreadType(" + workerThreadType + ")");
         this.mWorkerThreadType = workerThreadType;
 
         return this;
@@ -279,13 +377,40 @@ public class AsyncBuilder {
         return mSerialWorkerThreadType;
     }
 
+    /**
+     * Get an in-order {@link IThreadType} for one key, such as a record id or file name
+     * <p>
+     * Tasks for the same key run one at a time in FIFO order. Tasks for different keys run in parallel
+     * on the {@link Async#WORKER} threads, unlike {@link Async#SERIAL_WORKER} which orders all work in the app.
+     * Keys are spread by {@link Object#hashCode()} over {@link #NUMBER_OF_KEYED_SERIAL_STRIPES} stripes,
+     * so two unrelated keys may occasionally share a stripe and wait for each other. The order of tasks for
+     * any one key is always kept.
+     *
+     * @param key with {@link Object#hashCode()} consistent with {@link Object#equals(Object)}
+     * @return the in-order thread type for this key
+     */
+    @NonNull
+    public IThreadType getKeyedSerialThreadType(@NonNull final Object key) {
+        final int h = key.hashCode();
+        final int stripe = ((h ^ (h >>> 16)) & Integer.MAX_VALUE) % NUMBER_OF_KEYED_SERIAL_STRIPES;
+        IThreadType threadType = mKeyedSerialThreadTypes.get(stripe);
+
+        if (threadType == null) {
+            PlatformLog.v(TAG, "Creating keyed serial thread type " + stripe);
+            mKeyedSerialThreadTypes.compareAndSet(stripe, null, new SerialThreadType("KeyedSerialThreadType" + stripe, getWorkerThreadType()));
+            threadType = mKeyedSerialThreadTypes.get(stripe);
+        }
+
+        return threadType;
+    }
+
     /**
      * @param serialWorkerThreadType
      * @return the builder, for chaining
      */
     @NonNull
     public AsyncBuilder setSerialWorkerThreadType(@NonNull final IThreadType serialWorkerThreadType) {
-        Log.v(TAG, "setSerialWorkerThreadType(" + serialWorkerThreadType + ")");
+        PlatformLog.v(TAG, "setSerialWorkerThreadType(" + serialWorkerThreadType + ")");
         this.mSerialWorkerThreadType = serialWorkerThreadType;
 
         return this;
@@ -298,7 +423,7 @@ public class AsyncBuilder {
     @VisibleForTesting
     IThreadType getUiThreadType() {
         if (mUiThreadType == null) {
-            setUIThreadType(new DefaultThreadType("UIThreadType", getUiExecutorService(), null));
+            setUIThreadType(createUiThreadType());
         }
 
         return mUiThreadType;
@@ -310,7 +435,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setUIThreadType(@NonNull final IThreadType uiThreadType) {
-        Log.v(TAG, "setUIThreadType(" + uiThreadType + ")");
+        PlatformLog.v(TAG, "setUIThreadType(" + uiThreadType + ")");
         this.mUiThreadType = uiThreadType;
         return this;
     }
@@ -321,6 +446,9 @@ public class AsyncBuilder {
     @NonNull
     @VisibleForTesting
     IThreadType getNetReadThreadType() {
+        if (mNetReadThreadType == null && isVirtualThreadsEnabled()) {
+            setNetReadThreadType(new VirtualThreadType("NetReadThreadType", false));
+        }
         if (mNetReadThreadType == null) {
             final ImmutableValue<IThreadType> threadTypeImmutableValue = new ImmutableValue<>();
             setNetReadThreadType(new DefaultThreadType("NetReadThreadType",
@@ -329,19 +457,30 @@ public class AsyncBuilder {
                     )
             );
             threadTypeImmutableValue.set(mNetReadThreadType);
+            mNetReadThreadTypeCreated = true;
         }
 
         return mNetReadThreadType;
     }
 
+    /**
+     * @return the default {@link Async#NET_READ} if this builder created it, or <code>null</code> if the
+     * application set its own or it has not been created yet. Only a created one may be resized by the platform binding.
+     */
+    @Nullable
+    protected IThreadType getCreatedNetReadThreadType() {
+        return mNetReadThreadTypeCreated ? mNetReadThreadType : null;
+    }
+
     /**
      * @param netReadThreadType
      * @return the builder, for chaining
      */
     @NonNull
     public AsyncBuilder setNetReadThreadType(@NonNull final IThreadType netReadThreadType) {
-        Log.v(TAG, "setNetReadThreadType(" + netReadThreadType + ")");
+        PlatformLog.v(TAG, "setNetReadThreadType(" + netReadThreadType + ")");
         this.mNetReadThreadType = netReadThreadType;
+        this.mNetReadThreadTypeCreated = false;
         return this;
     }
 
@@ -351,6 +490,9 @@ public class AsyncBuilder {
     @NonNull
     @VisibleForTesting
     IThreadType getNetWriteThreadType() {
+        if (mNetWriteThreadType == null && isVirtualThreadsEnabled()) {
+            setNetWriteThreadType(new VirtualThreadType("NetWriteThreadType", true));
+        }
         if (mNetWriteThreadType == null) {
             final ImmutableValue<IThreadType> threadTypeImmutableValue = new ImmutableValue<>();
             setNetWriteThreadType(new DefaultThreadType("NetWriteThreadType",
@@ -370,14 +512,14 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setNetWriteThreadType(@NonNull final IThreadType netWriteThreadType) {
-        Log.v(TAG, "setNetWriteThreadType(" + netWriteThreadType + ")");
+        PlatformLog.v(TAG, "setNetWriteThreadType(" + netWriteThreadType + ")");
         this.mNetWriteThreadType = netWriteThreadType;
         return this;
     }
 
 //    @NonNull//    public MirrorService getFileService() {
 //        if (fileService == null) {
-//            Log.v(TAG, "Creating default file service");
+//            PlatformLog.v(TAG, "Creating default file service");
 //            setFileService(new FileMirrorService("Default FileMirrorService",
 //                    "FileMirrorService",
 //                    false,
@@ -390,7 +532,7 @@ public class AsyncBuilder {
 //    }
 
 //    @NonNull//    public AsyncBuilder setFileService(@NonNull final MirrorService fileService) {
-//        Log.v(TAG, "setFileService(" + fileService + ")");
+//        PlatformLog.v(TAG, "setFileService(" + fileService + ")");
 //        this.fileService = fileService;
 //        return this;
 //    }
@@ -401,6 +543,9 @@ public class AsyncBuilder {
     @NonNull
     @VisibleForTesting
     IThreadType getFileThreadType() {
+        if (mFileThreadType == null && isVirtualThreadsEnabled()) {
+            setFileThreadType(new VirtualThreadType("FileReadThreadType", true));
+        }
         if (mFileThreadType == null) {
             final ImmutableValue<IThreadType> threadTypeImmutableValue = new ImmutableValue<>();
             setFileThreadType(new DefaultThreadType("FileReadThreadType",
@@ -420,7 +565,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setFileThreadType(@NonNull final IThreadType fileThreadType) {
-        Log.v(TAG, "setFileThreadType(" + fileThreadType + ")");
+        PlatformLog.v(TAG, "setFileThreadType(" + fileThreadType + ")");
         this.mFileThreadType = fileThreadType;
         return this;
     }
@@ -443,7 +588,7 @@ public class AsyncBuilder {
     @VisibleForTesting
     ExecutorService getWorkerExecutorService(@NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
         if (mWorkerExecutorService == null) {
-            Log.v(TAG, "Creating default worker executor service");
+            PlatformLog.v(TAG, "Creating default worker executor service");
             final BlockingQueue<Runnable> q = getWorkerQueue();
             final int numberOfThreads = q instanceof BlockingDeque ? NUMBER_OF_CORES : 1;
 
@@ -480,7 +625,7 @@ public class AsyncBuilder {
     @VisibleForTesting
     ExecutorService getSerialWorkerExecutorService(@NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
         if (mSerialWorkerExecutorService == null) {
-            Log.v(TAG, "Creating default serial worker executor service");
+            PlatformLog.v(TAG, "Creating default serial worker executor service");
 
             setSerialWorkerExecutorService(new ThreadPoolExecutor(
                             1,
@@ -503,8 +648,8 @@ public class AsyncBuilder {
     @VisibleForTesting
     BlockingQueue<Runnable> getWorkerQueue() {
         if (mWorkerQueue == null) {
-            Log.d(TAG, "Creating default worker mQueue");
-            setWorkerQueue(new LinkedBlockingDeque<>());
+            PlatformLog.d(TAG, "Creating default worker mQueue");
+            setWorkerQueue(new IndexedBlockingDeque<>());
         }
 
         return mWorkerQueue;
@@ -516,7 +661,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setWorkerQueue(@NonNull final BlockingQueue<Runnable> queue) {
-        Log.d(TAG, "setWorkerQueue(" + queue + ")");
+        PlatformLog.d(TAG, "setWorkerQueue(" + queue + ")");
         mWorkerQueue = queue;
         return this;
     }
@@ -531,7 +676,7 @@ public class AsyncBuilder {
     @VisibleForTesting
     BlockingQueue<Runnable> getSerialWorkerQueue() {
         if (mSerialWorkerQueue == null) {
-            Log.d(TAG, "Creating default in-order worker mQueue");
+            PlatformLog.d(TAG, "Creating default in-order worker mQueue");
             setSerialWorkerQueue(new DoubleQueue<>(getWorkerQueue()));
         }
 
@@ -544,7 +689,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setSerialWorkerQueue(@NonNull final BlockingQueue<Runnable> queue) {
-        Log.d(TAG, "setSerialWorkerQueue(" + queue + ")");
+        PlatformLog.d(TAG, "setSerialWorkerQueue(" + queue + ")");
         mSerialWorkerQueue = queue;
         return this;
     }
@@ -556,7 +701,7 @@ public class AsyncBuilder {
     @VisibleForTesting
     BlockingQueue<Runnable> getFileQueue() {
         if (mFileQueue == null) {
-            Log.d(TAG, "Creating default file read mQueue");
+            PlatformLog.d(TAG, "Creating default file read mQueue");
             setFileQueue(new LinkedBlockingDeque<>());
         }
 
@@ -569,7 +714,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setFileQueue(@NonNull final BlockingQueue<Runnable> queue) {
-        Log.d(TAG, "setFileQueue(" + queue + ")");
+        PlatformLog.d(TAG, "setFileQueue(" + queue + ")");
         this.mFileQueue = queue;
         return this;
     }
@@ -581,8 +726,8 @@ public class AsyncBuilder {
     @VisibleForTesting
     BlockingQueue<Runnable> getNetReadQueue() {
         if (mNetReadQueue == null) {
-            Log.d(TAG, "Creating default net read mQueue");
-            setNetReadQueue(new LinkedBlockingDeque<>());
+            PlatformLog.d(TAG, "Creating default net read mQueue");
+            setNetReadQueue(new IndexedBlockingDeque<>());
         }
 
         return mNetReadQueue;
@@ -594,7 +739,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setNetReadQueue(@NonNull final BlockingQueue<Runnable> queue) {
-        Log.d(TAG, "setNetReadQueue(" + queue + ")");
+        PlatformLog.d(TAG, "setNetReadQueue(" + queue + ")");
         this.mNetReadQueue = queue;
         return this;
     }
@@ -606,7 +751,7 @@ public class AsyncBuilder {
     @VisibleForTesting
     BlockingQueue<Runnable> getNetWriteQueue() {
         if (mNetWriteQueue == null) {
-            Log.d(TAG, "Creating default worker net write mQueue");
+            PlatformLog.d(TAG, "Creating default worker net write mQueue");
             setNetWriteQueue(new LinkedBlockingDeque<>());
         }
 
@@ -619,7 +764,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setNetWriteQueue(@NonNull final BlockingQueue<Runnable> queue) {
-        Log.d(TAG, "setNetWriteQueue(" + queue + ")");
+        PlatformLog.d(TAG, "setNetWriteQueue(" + queue + ")");
         this.mNetWriteQueue = queue;
         return this;
     }
@@ -633,7 +778,7 @@ public class AsyncBuilder {
     ExecutorService getFileExecutorService(
             @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
         if (mFileReadExecutorService == null) {
-            Log.d(TAG, "Creating default file read executor service");
+            PlatformLog.d(TAG, "Creating default file read executor service");
             setFileReadExecutorService(new ThreadPoolExecutor(1, 1,
                             0L, TimeUnit.MILLISECONDS,
                             getFileQueue(),
@@ -655,12 +800,14 @@ public class AsyncBuilder {
     ExecutorService getNetReadExecutorService(
             @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
         if (mNetReadExecutorService == null) {
-            Log.d(TAG, "Creating default net read executor service");
-            setNetReadExecutorService(new ThreadPoolExecutor(1, NUMBER_OF_CONCURRENT_NET_READS,
-                            1000, TimeUnit.MILLISECONDS, getNetReadQueue(),
-                            runnable ->
-                                    new TypedThread(threadTypeImmutableValue.get(), runnable, "NetReadThread" + sThreadNumber.getAndIncrement()))
-            );
+            PlatformLog.d(TAG, "Creating default net read executor service");
+            // With an unbounded mQueue a ThreadPoolExecutor never grows past the core size, so core and maximum are the same
+            final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(NUMBER_OF_CONCURRENT_NET_READS, NUMBER_OF_CONCURRENT_NET_READS,
+                    1000, TimeUnit.MILLISECONDS, getNetReadQueue(),
+                    runnable ->
+                            new TypedThread(threadTypeImmutableValue.get(), runnable, "NetReadThread" + sThreadNumber.getAndIncrement()));
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            setNetReadExecutorService(threadPoolExecutor);
         }
 
         return mNetReadExecutorService;
@@ -675,7 +822,7 @@ public class AsyncBuilder {
     ExecutorService getNetWriteExecutorService(
             @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
         if (mNetWriteExecutorService == null) {
-            Log.d(TAG, "Creating default net write executor service");
+            PlatformLog.d(TAG, "Creating default net write executor service");
             setNetWriteExecutorService(Executors.newSingleThreadExecutor(
                             runnable ->
                                     new TypedThread(threadTypeImmutableValue.get(), runnable, "NetWriteThread" + sThreadNumber.getAndIncrement()))
@@ -692,18 +839,67 @@ public class AsyncBuilder {
     @NonNull
     @VisibleForTesting
     ExecutorService getUiExecutorService() {
-        if (mContext == null) {
-            Exception e = new IllegalStateException(NOT_INITIALIZED);
-            Log.e(TAG, NOT_INITIALIZED, e);
-            System.exit(-1);
-        }
         if (mUiExecutorService == null) {
-            setUiExecutorService(new UIExecutorService(new Handler(mContext.getMainLooper())));
+            setUiExecutorService(createUiExecutorService());
         }
 
         return mUiExecutorService;
     }
 
+    /**
+     * Create the default {@link Async#UI} thread type. Platform bindings override this, for example
+     * to batch UI work once per display frame.
+     *
+     * @return the new thread type
+     */
+    @NonNull
+    protected IThreadType createUiThreadType() {
+        return new DefaultThreadType("UIThreadType", getUiExecutorService(), null);
+    }
+
+    /**
+     * Create the default executor for {@link Async#UI}. Platform bindings override this to run on the
+     * system UI thread.
+     * <p>
+     * On a plain JVM there is no UI thread, so a single daemon thread is started to play that role.
+     * It is also {@link #getDefaultUiThread()}.
+     *
+     * @return the new executor
+     */
+    @NonNull
+    protected ExecutorService createUiExecutorService() {
+        final ThreadPoolExecutor executorService = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            final Thread thread = new Thread(runnable, "UIThread");
+
+            thread.setDaemon(true);
+            if (mUiThread == null) {
+                setUI_Thread(thread);
+            }
+            return thread;
+        });
+        executorService.prestartCoreThread();
+
+        return executorService;
+    }
+
+    /**
+     * The thread which {@link Async#isUiThread()} recognizes if {@link #setUI_Thread(Thread)} is not called
+     *
+     * @return the thread running {@link Async#UI} tasks, or the current thread if that is not known
+     */
+    @NonNull
+    protected Thread getDefaultUiThread() {
+        getUiExecutorService();
+
+        return mUiThread != null ? mUiThread : Thread.currentThread();
+    }
+
+    /**
+     * Apply the platform's policy checks when {@link #isStrictMode()}. The plain JVM has none.
+     */
+    protected void applyStrictMode() {
+    }
+
     /**
      * Note that if you override this, you may also want to override the associated default
      * {@link #setUI_Thread(Thread)}
@@ -713,7 +909,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setUiExecutorService(@NonNull final ExecutorService uiExecutorService) {
-        Log.d(TAG, "setUiExecutorService()");
+        PlatformLog.d(TAG, "setUiExecutorService()");
         this.mUiExecutorService = uiExecutorService;
         return this;
     }
@@ -729,7 +925,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setWorkerExecutorService(@NonNull final ExecutorService executorService) {
-        Log.v(TAG, "setWorkerExecutorService(" + executorService + ")");
+        PlatformLog.v(TAG, "setWorkerExecutorService(" + executorService + ")");
         mWorkerExecutorService = executorService;
         return this;
     }
@@ -740,7 +936,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setSerialWorkerExecutorService(@NonNull final ExecutorService executorService) {
-        Log.v(TAG, "setSerialWorkerExecutorService(" + executorService + ")");
+        PlatformLog.v(TAG, "setSerialWorkerExecutorService(" + executorService + ")");
         mSerialWorkerExecutorService = executorService;
         return this;
     }
@@ -755,7 +951,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder singleThreadedWorkerExecutorService() {
-        Log.v(TAG, "singleThreadedWorkerExecutorService()");
+        PlatformLog.v(TAG, "singleThreadedWorkerExecutorService()");
         final ImmutableValue<IThreadType> threadTypeImmutableValue = new ImmutableValue<>();
         this.mWorkerExecutorService = Executors.newSingleThreadScheduledExecutor(
                 runnable ->
@@ -771,7 +967,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setFileReadExecutorService(@NonNull final ExecutorService fileReadExecutorService) {
-        Log.v(TAG, "setFileReadExecutorService(" + fileReadExecutorService + ")");
+        PlatformLog.v(TAG, "setFileReadExecutorService(" + fileReadExecutorService + ")");
         this.mFileReadExecutorService = fileReadExecutorService;
         return this;
     }
@@ -782,7 +978,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setFileWriteExecutorService(@NonNull final ExecutorService executorService) {
-        Log.v(TAG, "setFileWriteExecutorService(" + mFileWriteExecutorService + ")");
+        PlatformLog.v(TAG, "setFileWriteExecutorService(" + mFileWriteExecutorService + ")");
         mFileWriteExecutorService = executorService;
         return this;
     }
@@ -793,7 +989,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setNetReadExecutorService(@NonNull final ExecutorService netReadExecutorService) {
-        Log.v(TAG, "setNetReadExecutorService(" + netReadExecutorService + ")");
+        PlatformLog.v(TAG, "setNetReadExecutorService(" + netReadExecutorService + ")");
         this.mNetReadExecutorService = netReadExecutorService;
         return this;
     }
@@ -806,7 +1002,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setNetWriteExecutorService(@NonNull final ExecutorService netWriteExecutorService) {
-        Log.v(TAG, "setNetWriteExecutorService(" + netWriteExecutorService + ")");
+        PlatformLog.v(TAG, "setNetWriteExecutorService(" + netWriteExecutorService + ")");
         this.mNetWriteExecutorService = netWriteExecutorService;
         return this;
     }
@@ -822,7 +1018,7 @@ public class AsyncBuilder {
      */
     @NonNull
     public AsyncBuilder setUI_Thread(@NonNull final Thread uiThread) {
-        Log.v(TAG, "setUI_Thread(" + uiThread + ")");
+        PlatformLog.v(TAG, "setUI_Thread(" + uiThread + ")");
         uiThread.setName("UIThread");
         this.mUiThread = uiThread;
 
@@ -835,9 +1031,9 @@ public class AsyncBuilder {
 //                .setExtraHeaders(extraHeaders)
 //                .build();
 //        if (signalVisualizerClient == null) {
-//            Log.v(TAG, "signalVisualizerClient set");
+//            PlatformLog.v(TAG, "signalVisualizerClient set");
 //        } else {
-//            Log.v(TAG, "No signalVisualizerClient");
+//            PlatformLog.v(TAG, "No signalVisualizerClient");
 //        }
 //
 //        return this;
@@ -860,25 +1056,12 @@ public class AsyncBuilder {
     @NotCallOrigin
     public Async build() {
         if (mUiThread == null) {
-            Thread thread = Thread.currentThread();
-            try {
-                thread = mContext.getMainLooper().getThread();
-            } catch (NullPointerException e) {
-                // Needed for Google instrumentation test runner
-            }
-            setUI_Thread(thread);
+            setUI_Thread(getDefaultUiThread());
         }
         if (mStrictModeEnabled) {
-            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
-                    .detectAll()
-                    .penaltyDeath()
-                    .build());
-            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
-                    .detectAll()
-                    .penaltyDeath()
-                    .build());
+            applyStrictMode();
         }
-        Log.v(TAG, "AsyncBuilder complete");
+        PlatformLog.v(TAG, "AsyncBuilder complete");
 
         sAsyncBuilder = this;
         return new Async(); //TODO Pass the builder as an argument to the constructor
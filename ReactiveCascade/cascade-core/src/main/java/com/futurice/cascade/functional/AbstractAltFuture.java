@@ -9,9 +9,10 @@ import android.support.annotation.CallSuper;
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
 
 import com.futurice.cascade.Async;
-import com.futurice.cascade.BuildConfig;
+import com.futurice.cascade.core.BuildConfig;
 import com.futurice.cascade.i.CallOrigin;
 import com.futurice.cascade.i.IAction;
 import com.futurice.cascade.i.IActionOne;
@@ -26,11 +27,12 @@ import com.futurice.cascade.util.AssertUtil;
 import com.futurice.cascade.util.Origin;
 import com.futurice.cascade.util.RCLog;
 
-import java.util.Iterator;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The common base class for default implementations such as {@link SettableAltFuture} and {@link RunnableAltFuture}.
@@ -113,18 +115,39 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     protected final AtomicReference<Object> mStateAR = new AtomicReference<>(ZEN);
     @NonNull
     protected final IThreadType mThreadType;
-    @NonNull
-    protected final CopyOnWriteArrayList<IAltFuture<OUT, ?>> mDownchainAltFutureList = new CopyOnWriteArrayList<>(); // Callable split IThreadType actions to start after this mOnFireAction completes
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractAltFuture, Object> DOWNCHAIN_UPDATER = AtomicReferenceFieldUpdater.newUpdater(AbstractAltFuture.class, Object.class, "mDownchain");
+    /**
+     * Split {@link IThreadType} actions to start after this completes: <code>null</code>, a single
+     * {@link IAltFuture} or, only when fanning out, an {@link IAltFuture}[] which is replaced by a
+     * larger copy on each addition. Changed only through {@link #DOWNCHAIN_UPDATER}.
+     */
+    @Nullable
+    private volatile Object mDownchain;
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<AbstractAltFuture, Waiter> WAITERS_UPDATER = AtomicReferenceFieldUpdater.newUpdater(AbstractAltFuture.class, Waiter.class, "mWaiters");
+    @Nullable
+    private volatile Waiter mWaiters; // Threads parked in blockUntilDone() and whenDone() actions, most recent first
     @NonNull
     private final AtomicReference<IAltFuture<?, ? extends IN>> mPreviousAltFutureAR = new AtomicReference<>();
+    private volatile int mPriority = PRIORITY_UNSET;
+    @Nullable
+    protected final AltFutureScope mScope; // The scope current when this was created, or null
 
     /**
      * Create, from is not yet determined
+     * <p>
+     * If an {@link AltFutureScope} is current on the calling thread, this joins it. If that scope is already
+     * cancelled, this is cancelled before the subclass constructor continues.
      *
      * @param threadType on which this alt future will evaluate and fire downchain events
      */
     public AbstractAltFuture(@NonNull final IThreadType threadType) {
         this.mThreadType = threadType;
+        this.mScope = AltFutureScope.current();
+        if (mScope != null) {
+            mScope.add(this);
+        }
     }
 
     @Override // IAltFuture
@@ -135,6 +158,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
         if (mStateAR.compareAndSet(ZEN, state) || mStateAR.compareAndSet(FORKED, state)) {
             RCLog.d(this, "Cancelled: reason=" + reason);
+            releaseWaiters();
             return true;
         }
 
@@ -176,6 +200,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
         if (mStateAR.compareAndSet(ZEN, stateCancelled) || mStateAR.compareAndSet(FORKED, stateCancelled)) {
             RCLog.d(this, "Cancelled from state " + state);
+            releaseWaiters();
             final Exception e = forEachThen(ignore ->
                     doOnCancelled(stateCancelled));
             if (e != null) {
@@ -208,6 +233,168 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         return state != ZEN && state != FORKED;
     }
 
+    /**
+     * Hold the calling thread until this is done, cancelled or in error, or the timeout passes
+     * <p>
+     * The thread is parked and woken directly by the state change, it does not poll. Prefer a
+     * non-blocking chain; this is for bridging to code which must block such as tests.
+     *
+     * @param timeout the longest time to wait
+     * @param unit    of the timeout
+     * @return <code>true</code> if {@link #isDone()}, <code>false</code> if the timeout passed first
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public final boolean blockUntilDone(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        if (isDone()) {
+            return true;
+        }
+
+        final Waiter waiter = new Waiter(Thread.currentThread(), null);
+        pushWaiter(waiter);
+
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        try {
+            while (!isDone()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("Interrupted in blockUntilDone(): " + this);
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        } finally {
+            removeWaiter(waiter); // So that repeated timed waits do not grow the stack
+        }
+
+        return true;
+    }
+
+    /**
+     * Perform an action once when this is done, cancelled or in error
+     * <p>
+     * Unlike {@link #then(IAction)} this is not a chain step. The action is called directly on the thread
+     * which changes the state, with no {@link IThreadType} queue between. Keep it short and non-blocking,
+     * such as completing a future from another library. If this is already done the action is called now
+     * on the calling thread.
+     *
+     * @param action called exactly once. Read the final state with {@link #get()}, {@link #getStateError()}
+     *               and {@link #getStateCancelled()}
+     */
+    public final void whenDone(@NonNull final IAction<?> action) {
+        pushWaiter(new Waiter(null, action));
+        if (isDone()) {
+            releaseWaiters(); // The state changed before the push, or concurrently. Whichever call takes the stack runs the action
+        }
+    }
+
+    private void pushWaiter(@NonNull final Waiter waiter) {
+        Waiter head;
+        do {
+            head = mWaiters;
+            waiter.mNext = head;
+        } while (!WAITERS_UPDATER.compareAndSet(this, head, waiter));
+    }
+
+    /**
+     * Unlink a waiter which no longer waits, and any other such node met on the way
+     * <p>
+     * Nodes may be unlinked concurrently with a push or {@link #releaseWaiters()}. A node with a thread or an
+     * action is never unlinked, so at worst a dead node is left for the next call.
+     *
+     * @param waiter from {@link #blockUntilDone(long, TimeUnit)}
+     */
+    private void removeWaiter(@NonNull final Waiter waiter) {
+        waiter.mThread = null;
+        retry:
+        while (true) {
+            Waiter previous = null;
+            Waiter next;
+
+            for (Waiter w = mWaiters; w != null; w = next) {
+                next = w.mNext;
+                if (w.mThread != null || w.mAction != null) {
+                    previous = w;
+                } else if (previous != null) {
+                    previous.mNext = next;
+                    if (previous.mThread == null && previous.mAction == null) {
+                        continue retry; // The previous node itself was removed meanwhile
+                    }
+                } else if (!WAITERS_UPDATER.compareAndSet(this, w, next)) {
+                    continue retry; // The head changed
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * @return the number of nodes now on the waiter stack
+     */
+    @VisibleForTesting
+    final int getWaiterCount() {
+        int count = 0;
+
+        for (Waiter w = mWaiters; w != null; w = w.mNext) {
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Wake all threads in {@link #blockUntilDone(long, TimeUnit)}, call all {@link #whenDone(IAction)}
+     * actions and leave the {@link AltFutureScope}. Implementations must call this after each change to a
+     * final state. It does nothing if there are no waiters or this is not yet done.
+     */
+    protected final void releaseWaiters() {
+        if (mScope != null && isDone()) {
+            mScope.remove(this);
+        }
+        if (mWaiters == null || !isDone()) {
+            return;
+        }
+
+        Waiter waiter = WAITERS_UPDATER.getAndSet(this, null);
+        while (waiter != null) {
+            final Thread thread = waiter.mThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+            if (waiter.mAction != null) {
+                try {
+                    waiter.mAction.call();
+                } catch (Exception e) {
+                    RCLog.e(this, "Problem in whenDone() action", e);
+                }
+            }
+            waiter = waiter.mNext;
+        }
+    }
+
+    /**
+     * @return the error if this ended in an error state, otherwise <code>null</code>
+     */
+    @Nullable
+    public final StateError getStateError() {
+        final Object state = mStateAR.get();
+
+        return state instanceof StateError ? (StateError) state : null;
+    }
+
+    /**
+     * @return the cancellation if this was cancelled, otherwise <code>null</code>
+     */
+    @Nullable
+    public final StateCancelled getStateCancelled() {
+        final Object state = mStateAR.get();
+
+        return state instanceof StateCancelled ? (StateCancelled) state : null;
+    }
+
     @Override // IAltFuture
     public final boolean isForked() {
         return isForked(mStateAR.get());
@@ -228,6 +415,21 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             return this;
         }
 
+        if (claimFork(previousAltFuture)) {
+            doFork();
+        }
+
+        return this;
+    }
+
+    /**
+     * Change the state from {@link #ZEN} to {@link #FORKED} once all upchain steps are done
+     *
+     * @param previousAltFuture the upchain step, from which an unset priority is inherited
+     * @return <code>true</code> if the caller now owns running this step, <code>false</code> if it was
+     * already forked, set, cancelled or in error
+     */
+    protected final boolean claimFork(@Nullable final IAltFuture<?, ? extends IN> previousAltFuture) {
         Object s = null;
         if (Async.USE_FORKED_STATE ? !mStateAR.compareAndSet(ZEN, FORKED) : (s = mStateAR.get()) != ZEN) {
             if (s == null) {
@@ -235,14 +437,16 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             }
             if (s instanceof StateCancelled || s instanceof StateError) {
                 RCLog.v(getOrigin(), "Can not fork(), RunnableAltFuture was cancelled: " + s);
-                return this;
+                return false;
             }
             RCLog.i(getOrigin(), "Possibly a legitimate race condition. Ignoring duplicate fork(), already fork()ed or set(): " + s);
-            return this;
+            return false;
+        }
+        if (mPriority == PRIORITY_UNSET && previousAltFuture != null) {
+            mPriority = previousAltFuture.getPriority(); // Inherit now, the upchain reference is cleared as the chain burns
         }
-        doFork();
 
-        return this;
+        return true;
     }
 
     protected abstract void doFork();
@@ -311,28 +515,105 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         return this.mThreadType;
     }
 
+    @Override // IPrioritized
+    public int getPriority() {
+        final int priority = mPriority;
+
+        if (priority != PRIORITY_UNSET) {
+            return priority;
+        }
+        final IAltFuture<?, ? extends IN> previousAltFuture = getUpchain();
+
+        return previousAltFuture != null ? previousAltFuture.getPriority() : PRIORITY_UNSET;
+    }
+
+    @Override // IAltFuture
+    @NonNull
+    public IAltFuture<IN, OUT> setPriority(final int priority) {
+        this.mPriority = priority;
+
+        return this;
+    }
+
     /**
      * Perform some action on an instantaneous snapshot of the list of .subscribe() down-chain actions
      *
      * @param action
-     * @throws Exception
+     * @return the first exception thrown by the action, or <code>null</code> if all calls succeeded
      */
+    @Nullable
+    @SuppressWarnings("unchecked")
     protected Exception forEachThen(@NonNull final IActionOne<IAltFuture<OUT, ?>> action) {
-        final Iterator<IAltFuture<OUT, ?>> iterator = mDownchainAltFutureList.iterator();
+        final Object downchain = mDownchain;
+
+        if (downchain == null) {
+            return null;
+        }
+        if (!(downchain instanceof IAltFuture[])) {
+            return callThen(action, (IAltFuture<OUT, ?>) downchain, null);
+        }
+
         Exception exception = null;
+        for (final IAltFuture<?, ?> altFuture : (IAltFuture<?, ?>[]) downchain) {
+            exception = callThen(action, (IAltFuture<OUT, ?>) altFuture, exception);
+        }
 
-        while (iterator.hasNext()) {
-            try {
-                action.call(iterator.next());
-            } catch (Exception e) {
-                if (exception == null) {
-                    exception = e;
-                }
-                RCLog.e(this, "Problem with forEachThen(): " + e);
+        return exception;
+    }
+
+    @Nullable
+    private Exception callThen(
+            @NonNull final IActionOne<IAltFuture<OUT, ?>> action,
+            @NonNull final IAltFuture<OUT, ?> altFuture,
+            @Nullable final Exception previousException) {
+        try {
+            action.call(altFuture);
+        } catch (Exception e) {
+            RCLog.e(this, "Problem with forEachThen(): " + e);
+            if (previousException == null) {
+                return e;
             }
         }
 
-        return exception;
+        return previousException;
+    }
+
+    /**
+     * @return the downchain step if there is exactly one, or <code>null</code> if there are none or several
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    protected final IAltFuture<OUT, ?> getSingleDownchain() {
+        final Object downchain = mDownchain;
+
+        return downchain instanceof IAltFuture[] ? null : (IAltFuture<OUT, ?>) downchain;
+    }
+
+    /**
+     * Add a downchain action without locking. The first is stored directly, further ones grow a copy-on-write array.
+     *
+     * @param altFuture to start after this completes
+     */
+    private void addDownchain(@NonNull final IAltFuture<OUT, ?> altFuture) {
+        while (true) {
+            final Object downchain = mDownchain;
+            final Object next;
+
+            if (downchain == null) {
+                next = altFuture;
+            } else if (downchain instanceof IAltFuture[]) {
+                final IAltFuture<?, ?>[] altFutures = (IAltFuture<?, ?>[]) downchain;
+                final IAltFuture<?, ?>[] grown = Arrays.copyOf(altFutures, altFutures.length + 1);
+                grown[altFutures.length] = altFuture;
+                next = grown;
+            } else {
+                next = new IAltFuture<?, ?>[]{(IAltFuture<?, ?>) downchain, altFuture};
+            }
+
+            if (DOWNCHAIN_UPDATER.compareAndSet(this, downchain, next)) {
+                return;
+            }
+        }
     }
 
     @NotCallOrigin
@@ -356,10 +637,11 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     public void doOnError(@NonNull final StateError stateError) throws Exception {
         RCLog.d(this, "Handling doOnError(): " + stateError);
 
-        if (!this.mStateAR.compareAndSet(ZEN, stateError) || (Async.USE_FORKED_STATE && !this.mStateAR.compareAndSet(FORKED, stateError))) {
+        if (!(this.mStateAR.compareAndSet(ZEN, stateError) || (Async.USE_FORKED_STATE && this.mStateAR.compareAndSet(FORKED, stateError)))) {
             RCLog.i(this, "Will not repeat doOnError() because IAltFuture state is already determined: " + mStateAR.get());
             return;
         }
+        releaseWaiters();
 
         final Exception e = forEachThen(af -> {
             af.doOnError(stateError);
@@ -377,6 +659,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             RCLog.i(this, "Can not doOnCancelled because IAltFuture state is already determined: " + mStateAR.get());
             return;
         }
+        releaseWaiters();
 
         final Exception e = forEachThen(altFuture -> {
             altFuture.doOnCancelled(stateCancelled);
@@ -417,14 +700,14 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     @NonNull
     @Override
     public IAltFuture<OUT, OUT> then(@NonNull IAction<OUT> action) {
-        return then(new RunnableAltFuture<OUT, OUT>(mThreadType, action));
+        return then(new ActionAltFuture<OUT, OUT>(mThreadType, action));
     }
 
     @Override // IAltFuture
     @NonNull
     @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
     public IAltFuture<OUT, OUT> then(@NonNull final IActionOne<OUT> action) {
-        return then(new RunnableAltFuture<OUT, OUT>(mThreadType, action));
+        return then(new ActionOneAltFuture<OUT, OUT>(mThreadType, action));
     }
 
 //    @NonNull
@@ -472,8 +755,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         for (int i = 0; i < actions.length; i++) {
             final IActionOne<OUT> a = actions[i];
 
-            altFutures[i] = then(new RunnableAltFuture<>(mThreadType,
-                    a::call));
+            altFutures[i] = then(new ActionOneAltFuture<>(mThreadType, a));
         }
 
         return await(altFutures);
@@ -483,7 +765,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     @NonNull
     @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
     public <DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT> then(@NonNull final IActionR<DOWNCHAIN_OUT> action) {
-        return then(new RunnableAltFuture<>(mThreadType, action));
+        return then(new ActionRAltFuture<>(mThreadType, action));
     }
 
     @Override // IAltFuture
@@ -492,7 +774,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     public <DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT> then(@NonNull final IAltFuture<OUT, DOWNCHAIN_OUT> altFuture) {
         altFuture.setUpchain(this);
 
-        this.mDownchainAltFutureList.add(altFuture);
+        addDownchain(altFuture);
         if (isDone()) {
 //            altFuture.map((IActionOne) v -> {
 //                visualize(mOrigin.getName(), v.toString(), "RunnableAltFuture");
@@ -515,7 +797,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         for (int i = 0; i < actions.length; i++) {
             final IAction<? extends OUT> a = actions[i];
 
-            altFutures[i] = then(new RunnableAltFuture<>(mThreadType, a));
+            altFutures[i] = then(new ActionAltFuture<>(mThreadType, a));
         }
 
         return await(altFutures);
@@ -525,7 +807,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     @NonNull
     @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
     public <DOWNCHAIN_OUT> IAltFuture<OUT, DOWNCHAIN_OUT> map(@NonNull final IActionOneR<OUT, DOWNCHAIN_OUT> action) {
-        return then(new RunnableAltFuture<>(mThreadType, action));
+        return then(new ActionOneRAltFuture<>(mThreadType, action));
     }
 
     @NonNull
@@ -540,7 +822,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
         for (int i = 0; i < actions.length; i++) {
             final IActionOneR<OUT, DOWNCHAIN_OUT> a = actions[i];
 
-            altFutures[i] = new RunnableAltFuture<OUT, DOWNCHAIN_OUT>(mThreadType, a);
+            altFutures[i] = new ActionOneRAltFuture<OUT, DOWNCHAIN_OUT>(mThreadType, a);
         }
 
         return altFutures;
@@ -555,9 +837,9 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
 
         outAltFuture.setUpchain(this);
         final IAltFuture<?, ?> ignore = this.then(() -> {
-            Async.TIMER.schedule(() -> {
+            mThreadType.schedule(sleepTime, timeUnit, () -> {
                 outAltFuture.set(get());
-            }, sleepTime, timeUnit);
+            });
         });
 
         return outAltFuture;
@@ -602,7 +884,7 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
     @NonNull
     @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
     public IAltFuture<IN, IN> filter(@NonNull final IActionOneR<IN, Boolean> action) {
-        return new RunnableAltFuture<>(mThreadType, in -> {
+        return new ActionOneRAltFuture<>(mThreadType, in -> {
             if (!action.call(in)) {
                 cancel("Filtered: " + in);
             }
@@ -728,4 +1010,19 @@ public abstract class AbstractAltFuture<IN, OUT> extends Origin implements IAltF
             return "ERROR: reason=" + reason + " error=" + e;
         }
     }
+
+    private static final class Waiter {
+        @Nullable
+        volatile Thread mThread;
+        @Nullable
+        final IAction<?> mAction;
+        @Nullable
+        volatile Waiter mNext;
+
+        Waiter(@Nullable final Thread thread,
+               @Nullable final IAction<?> action) {
+            this.mThread = thread;
+            this.mAction = action;
+        }
+    }
 }
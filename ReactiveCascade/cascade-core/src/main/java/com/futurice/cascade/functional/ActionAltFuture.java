@@ -0,0 +1,57 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IAction;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.util.AssertUtil;
+
+/**
+ * A chain step which performs an {@link IAction} and passes the upchain value through unchanged
+ *
+ * @param <IN>
+ * @param <OUT>
+ */
+@NotCallOrigin
+public class ActionAltFuture<IN, OUT> extends RunnableAltFuture<IN, OUT> {
+    @NonNull
+    private final IAction<? extends IN> mAction;
+
+    /**
+     * Create a chain step
+     *
+     * @param threadType the thread pool to run this command on
+     * @param action     a function that receives no input and has no return value
+     */
+    public ActionAltFuture(
+            @NonNull final IThreadType threadType,
+            @NonNull final IAction<? extends IN> action) {
+        super(threadType);
+
+        this.mAction = action;
+    }
+
+    @Override // RunnableAltFuture
+    @SuppressWarnings("unchecked")
+    protected OUT callAction() throws Exception {
+        final IAltFuture<?, ? extends IN> previousAltFuture = getUpchain();
+        final OUT out;
+
+        if (previousAltFuture == null) {
+            out = (OUT) COMPLETE;
+        } else {
+            AssertUtil.assertTrue("The previous RunnableAltFuture to IAction is not finished", previousAltFuture.isDone());
+            out = (OUT) previousAltFuture.get();
+        }
+        mAction.call();
+
+        return out; // IN and OUT are the same when there is no return type from the action
+    }
+}
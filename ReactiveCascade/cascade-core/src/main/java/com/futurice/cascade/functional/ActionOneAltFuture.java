@@ -0,0 +1,53 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IActionOne;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.util.AssertUtil;
+
+/**
+ * A chain step which performs an {@link IActionOne} on the upchain value and passes it through unchanged
+ *
+ * @param <IN>
+ * @param <OUT>
+ */
+@NotCallOrigin
+public class ActionOneAltFuture<IN, OUT> extends RunnableAltFuture<IN, OUT> {
+    @NonNull
+    private final IActionOne<IN> mAction;
+
+    /**
+     * Create a chain step
+     *
+     * @param threadType the thread pool to run this command on
+     * @param action     a function that receives one input and has no return value
+     */
+    public ActionOneAltFuture(
+            @NonNull final IThreadType threadType,
+            @NonNull final IActionOne<IN> action) {
+        super(threadType);
+
+        this.mAction = action;
+    }
+
+    @Override // RunnableAltFuture
+    @SuppressWarnings("unchecked")
+    protected OUT callAction() throws Exception {
+        final IAltFuture<?, ? extends IN> previousAltFuture = getUpchain();
+
+        AssertUtil.assertNotNull(previousAltFuture);
+        AssertUtil.assertTrue("The previous RunnableAltFuture in the chain is not finished", previousAltFuture.isDone());
+        final IN in = previousAltFuture.get();
+        mAction.call(in);
+
+        return (OUT) in; // IN and OUT are the same when there is no return type from the action
+    }
+}
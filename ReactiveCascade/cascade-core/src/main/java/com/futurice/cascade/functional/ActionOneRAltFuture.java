@@ -0,0 +1,50 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IActionOneR;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.util.AssertUtil;
+
+/**
+ * A chain step which maps the upchain value with an {@link IActionOneR}
+ *
+ * @param <IN>
+ * @param <OUT>
+ */
+@NotCallOrigin
+public class ActionOneRAltFuture<IN, OUT> extends RunnableAltFuture<IN, OUT> {
+    @NonNull
+    private final IActionOneR<IN, OUT> mAction;
+
+    /**
+     * Create a chain step
+     *
+     * @param threadType the thread pool to run this command on
+     * @param action     a mapping function
+     */
+    public ActionOneRAltFuture(
+            @NonNull final IThreadType threadType,
+            @NonNull final IActionOneR<IN, OUT> action) {
+        super(threadType);
+
+        this.mAction = action;
+    }
+
+    @Override // RunnableAltFuture
+    protected OUT callAction() throws Exception {
+        final IAltFuture<?, ? extends IN> previousAltFuture = getUpchain();
+
+        AssertUtil.assertNotNull(previousAltFuture);
+        AssertUtil.assertTrue("The previous RunnableAltFuture in the chain is not finished", previousAltFuture.isDone());
+
+        return mAction.call(previousAltFuture.get());
+    }
+}
@@ -0,0 +1,43 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IActionR;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+/**
+ * A chain step which performs an {@link IActionR} that does not depend on the upchain value
+ *
+ * @param <IN>
+ * @param <OUT>
+ */
+@NotCallOrigin
+public class ActionRAltFuture<IN, OUT> extends RunnableAltFuture<IN, OUT> {
+    @NonNull
+    private final IActionR<OUT> mAction;
+
+    /**
+     * Create a chain step
+     *
+     * @param threadType the thread pool to run this command on
+     * @param action     a function that does not vary with the input value
+     */
+    public ActionRAltFuture(
+            @NonNull final IThreadType threadType,
+            @NonNull final IActionR<OUT> action) {
+        super(threadType);
+
+        this.mAction = action;
+    }
+
+    @Override // RunnableAltFuture
+    protected OUT callAction() throws Exception {
+        return mAction.call();
+    }
+}
@@ -0,0 +1,245 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.i.IAction;
+import com.futurice.cascade.i.IActionR;
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.util.Origin;
+import com.futurice.cascade.util.RCLog;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A group of {@link IAltFuture}s which can be cancelled together, for example all work started for one screen
+ * <p>
+ * Every {@link AbstractAltFuture} created inside {@link #run(IAction)} or {@link #call(IActionR)} joins the
+ * scope. So does every one created while a chain step of the scope runs, and any scope created there becomes
+ * a child scope. A future leaves the scope when it is done.
+ * <p>
+ * {@link #cancel(String, boolean)} cancels each future still in the scope and removes the queued ones from
+ * their {@link IThreadType} queue with {@link IThreadType#removeFromQueue(Runnable)}, so they no longer hold
+ * a place ahead of other work. Futures created in the scope after it is cancelled are cancelled at once.
+ * <pre>
+ * mScope = new AltFutureScope();
+ * mScope.run(() -&gt; NET_READ.then(() -&gt; load(url))
+ *         .then(UI, bitmap -&gt; imageView.setImageBitmap(bitmap)));
+ * ..
+ * public void onDestroy() {
+ *     mScope.cancel("Screen closed", false);
+ * }
+ * </pre>
+ */
+@NotCallOrigin
+public class AltFutureScope extends Origin implements ICancellable {
+    private static final ThreadLocal<AltFutureScope> sCurrentScope = new ThreadLocal<>();
+    private static final AtomicInteger sEnteredCount = new AtomicInteger(); // Threads inside a scope. While 0, creating a future does not read the ThreadLocal
+
+    @NonNull
+    private final Set<ICancellable> mMembers = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    @NonNull
+    private final AtomicReference<String> mCancelReasonAR = new AtomicReference<>();
+    private volatile boolean mInterruptOnCancel = false;
+
+    /**
+     * Create a scope. If this is created inside another scope it becomes a child, and is cancelled
+     * when the parent is cancelled.
+     */
+    public AltFutureScope() {
+        final AltFutureScope parent = current();
+
+        if (parent != null) {
+            parent.add(this);
+        }
+    }
+
+    /**
+     * @return the scope which futures created on the current thread join, or <code>null</code> if none
+     */
+    @Nullable
+    public static AltFutureScope current() {
+        return sEnteredCount.get() == 0 ? null : sCurrentScope.get();
+    }
+
+    /**
+     * Make a scope current on this thread
+     *
+     * @param scope to enter, or <code>null</code> to leave all scopes
+     * @return the previous scope, to pass to {@link #exit(AltFutureScope)}
+     */
+    @Nullable
+    static AltFutureScope enter(@Nullable final AltFutureScope scope) {
+        final AltFutureScope previousScope = sCurrentScope.get();
+
+        sCurrentScope.set(scope);
+        if (scope != null && previousScope == null) {
+            sEnteredCount.incrementAndGet();
+        } else if (scope == null && previousScope != null) {
+            sEnteredCount.decrementAndGet();
+        }
+
+        return previousScope;
+    }
+
+    /**
+     * Restore the scope which was current before {@link #enter(AltFutureScope)}
+     *
+     * @param previousScope the value returned by {@link #enter(AltFutureScope)}
+     */
+    static void exit(@Nullable final AltFutureScope previousScope) {
+        enter(previousScope);
+    }
+
+    /**
+     * Perform an action in which all new futures join this scope
+     *
+     * @param action usually creates one or more chains
+     * @throws Exception if the action throws
+     */
+    public void run(@NonNull final IAction<?> action) throws Exception {
+        final AltFutureScope previousScope = enter(this);
+
+        try {
+            action.call();
+        } finally {
+            exit(previousScope);
+        }
+    }
+
+    /**
+     * Perform an action in which all new futures join this scope
+     *
+     * @param action usually creates a chain and returns its last step
+     * @param <OUT>  the type returned by the action
+     * @return the value returned by the action
+     * @throws Exception if the action throws
+     */
+    public <OUT> OUT call(@NonNull final IActionR<OUT> action) throws Exception {
+        final AltFutureScope previousScope = enter(this);
+
+        try {
+            return action.call();
+        } finally {
+            exit(previousScope);
+        }
+    }
+
+    /**
+     * Add a future or child scope. If this scope is already cancelled, that is cancelled now.
+     *
+     * @param member to cancel with this scope
+     */
+    void add(@NonNull final ICancellable member) {
+        mMembers.add(member);
+        final String reason = mCancelReasonAR.get();
+        if (reason != null && mMembers.remove(member)) {
+            cancelMember(member, reason); // Cancelled while we added. Either this or cancel() removes it, so it is cancelled once
+        }
+    }
+
+    /**
+     * Remove a future which is done
+     *
+     * @param member no longer needing cancellation
+     */
+    void remove(@NonNull final ICancellable member) {
+        mMembers.remove(member);
+    }
+
+    /**
+     * @return the number of futures and child scopes which may still be cancelled
+     */
+    public int size() {
+        return mMembers.size();
+    }
+
+    /**
+     * Cancel all futures in this scope and its child scopes without interrupting those already running
+     *
+     * @param reason for debugging
+     * @return <code>true</code> if this call cancelled the scope
+     */
+    @Override // ICancellable
+    public boolean cancel(@NonNull final String reason) {
+        return cancel(reason, false);
+    }
+
+    /**
+     * Cancel all futures in this scope and its child scopes
+     *
+     * @param reason                for debugging
+     * @param mayInterruptIfRunning <code>true</code> to also {@link Thread#interrupt()} the threads running
+     *                              chain steps of this scope. Use this only if those steps handle an interrupt.
+     * @return <code>true</code> if this call cancelled the scope
+     */
+    public boolean cancel(
+            @NonNull final String reason,
+            final boolean mayInterruptIfRunning) {
+        if (!mCancelReasonAR.compareAndSet(null, reason)) {
+            RCLog.d(this, "Ignoring duplicate cancel(\"" + reason + "\"), already cancelled: " + mCancelReasonAR.get());
+            return false;
+        }
+        mInterruptOnCancel = mayInterruptIfRunning; // Only the first cancel decides. A future joining meanwhile is not yet running, so it needs no interrupt
+
+        int count = 0;
+        for (final ICancellable member : mMembers) {
+            if (mMembers.remove(member)) {
+                cancelMember(member, reason);
+                count++;
+            }
+        }
+        RCLog.d(this, "Cancelled " + count + " futures and child scopes: reason=" + reason);
+
+        return true;
+    }
+
+    private void cancelMember(
+            @NonNull final ICancellable member,
+            @NonNull final String reason) {
+        try {
+            if (member instanceof AltFutureScope) {
+                ((AltFutureScope) member).cancel(reason, mInterruptOnCancel);
+                return;
+            }
+
+            member.cancel(reason);
+            if (member instanceof RunnableAltFuture) {
+                final RunnableAltFuture<?, ?> runnableAltFuture = (RunnableAltFuture<?, ?>) member;
+
+                if (!runnableAltFuture.getThreadType().removeFromQueue(runnableAltFuture) && mInterruptOnCancel) {
+                    runnableAltFuture.interruptRunner();
+                }
+            }
+        } catch (Exception e) {
+            RCLog.e(this, "Problem cancelling " + member, e);
+        }
+    }
+
+    /**
+     * Cancel all futures in this scope and its child scopes without interrupting those already running
+     *
+     * @param stateError the reason for debugging
+     * @return <code>true</code> if this call cancelled the scope
+     */
+    @Override // ICancellable
+    public boolean cancel(@NonNull final StateError stateError) {
+        return cancel(stateError.toString(), false);
+    }
+
+    @Override // ICancellable
+    public boolean isCancelled() {
+        return mCancelReasonAR.get() != null;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.i.IActionOne;
+import com.futurice.cascade.i.IActionOneR;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.IOverflowAware;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.util.Origin;
+import com.futurice.cascade.util.RCLog;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A chain of steps defined once and run many times, each time with a new input
+ * <p>
+ * An {@link IAltFuture} chain is single use: each step goes from {@link AbstractAltFuture#ZEN} to a value once,
+ * so running the same pipeline again builds every step again. A template holds the steps as a plain list of
+ * {@link IThreadType} and action pairs. The steps are created and the {@link Origin} is captured once, when the
+ * template is built.
+ * <p>
+ * Each {@link #run(Object, IActionOne, IActionOne)} takes a small per-run state object from a pool. That object
+ * runs the steps one after another in the same task while they share a thread type, and hands itself to the next
+ * thread type where they do not. It returns to the pool when the last step completes or a step fails.
+ * <pre>
+ * final AltFutureTemplate&lt;String, Integer&gt; parseAndStore = new AltFutureTemplate&lt;&gt;(WORKER, Integer::parseInt)
+ *         .map(i -&gt; i * 2)
+ *         .then(FILE, i -&gt; store(i));
+ *
+ * parseAndStore.run("21", i -&gt; RCLog.d(TAG, "Stored " + i), e -&gt; RCLog.e(TAG, "Not stored", e));
+ * </pre>
+ * The template is immutable. {@link #map(IActionOneR)} and {@link #then(IActionOne)} return a new, longer template
+ * and may be called from any thread.
+ *
+ * @param <IN>  the type of the input to each run
+ * @param <OUT> the type of the result of each run
+ */
+@NotCallOrigin
+public class AltFutureTemplate<IN, OUT> extends Origin {
+    private static final int POOL_SIZE = 16; // Runs waiting for reuse. More concurrent runs than this allocate and are dropped when done
+
+    @NonNull
+    private final Step[] mSteps;
+    @NonNull
+    private final AtomicReferenceArray<Run> mPool = new AtomicReferenceArray<>(POOL_SIZE);
+
+    /**
+     * Start a template with its first step
+     *
+     * @param threadType on which the first step runs
+     * @param action     the first step, which receives the input of each run
+     */
+    public AltFutureTemplate(
+            @NonNull final IThreadType threadType,
+            @NonNull final IActionOneR<IN, OUT> action) {
+        this(new Step[]{new Step(threadType, action)});
+    }
+
+    private AltFutureTemplate(@NonNull final Step[] steps) {
+        this.mSteps = steps;
+    }
+
+    /**
+     * Add a step on the same thread type as the last step
+     *
+     * @param action         a mapping function
+     * @param <DOWNCHAIN_OUT> the result type of the new step
+     * @return a new template which ends with this step
+     */
+    @NonNull
+    @CheckResult(suggest = "The template is immutable, use the returned template")
+    public <DOWNCHAIN_OUT> AltFutureTemplate<IN, DOWNCHAIN_OUT> map(@NonNull final IActionOneR<OUT, DOWNCHAIN_OUT> action) {
+        return map(mSteps[mSteps.length - 1].mThreadType, action);
+    }
+
+    /**
+     * Add a step
+     *
+     * @param threadType     on which the new step runs
+     * @param action         a mapping function
+     * @param <DOWNCHAIN_OUT> the result type of the new step
+     * @return a new template which ends with this step
+     */
+    @NonNull
+    @CheckResult(suggest = "The template is immutable, use the returned template")
+    public <DOWNCHAIN_OUT> AltFutureTemplate<IN, DOWNCHAIN_OUT> map(
+            @NonNull final IThreadType threadType,
+            @NonNull final IActionOneR<OUT, DOWNCHAIN_OUT> action) {
+        final Step[] steps = Arrays.copyOf(mSteps, mSteps.length + 1);
+        steps[mSteps.length] = new Step(threadType, action);
+
+        return new AltFutureTemplate<>(steps);
+    }
+
+    /**
+     * Add a step on the same thread type as the last step which passes its input on unchanged
+     *
+     * @param action a side effect such as storing the value
+     * @return a new template which ends with this step
+     */
+    @NonNull
+    @CheckResult(suggest = "The template is immutable, use the returned template")
+    public AltFutureTemplate<IN, OUT> then(@NonNull final IActionOne<OUT> action) {
+        return then(mSteps[mSteps.length - 1].mThreadType, action);
+    }
+
+    /**
+     * Add a step which passes its input on unchanged
+     *
+     * @param threadType on which the new step runs
+     * @param action     a side effect such as storing the value
+     * @return a new template which ends with this step
+     */
+    @NonNull
+    @CheckResult(suggest = "The template is immutable, use the returned template")
+    public AltFutureTemplate<IN, OUT> then(
+            @NonNull final IThreadType threadType,
+            @NonNull final IActionOne<OUT> action) {
+        return map(threadType, value -> {
+            action.call(value);
+            return value;
+        });
+    }
+
+    /**
+     * Run all steps with the given input. This returns at once.
+     * <p>
+     * If a step throws, later steps are skipped and <code>onError</code> receives the exception. If a thread type
+     * with a {@link IThreadType#setCapacity(int, IThreadType.OverflowPolicy)} drops or rejects the run, it is
+     * the {@link java.util.concurrent.RejectedExecutionException} of the {@link com.futurice.cascade.util.QueueOverflowStateError}.
+     *
+     * @param in        the input to the first step
+     * @param onSuccess called with the result of the last step, on the thread type of the last step
+     * @param onError   called on the thread type of the step which failed, or on the thread which found the mQueue full
+     */
+    public void run(
+            @NonNull final IN in,
+            @NonNull final IActionOne<OUT> onSuccess,
+            @NonNull final IActionOne<Exception> onError) {
+        final Run run = acquire();
+
+        run.mStepIndex = 0;
+        run.mValue = in;
+        run.mOnSuccess = onSuccess;
+        run.mOnError = onError;
+        mSteps[0].mThreadType.run(run);
+    }
+
+    /**
+     * Run all steps with the given input. This returns at once.
+     * <p>
+     * This allocates one {@link SettableAltFuture} per run. Use {@link #run(Object, IActionOne, IActionOne)}
+     * where callbacks are enough.
+     *
+     * @param in the input to the first step
+     * @return set to the result of the last step, or changed to an error state if a step throws or a full mQueue
+     * drops the run
+     */
+    @NonNull
+    public IAltFuture<OUT, OUT> fork(@NonNull final IN in) {
+        final SettableAltFuture<OUT> result = new SettableAltFuture<>(mSteps[mSteps.length - 1].mThreadType);
+
+        run(in, result::set, e ->
+                result.doOnError(result.new AltFutureStateError("AltFutureTemplate run problem", e)));
+
+        return result;
+    }
+
+    /**
+     * @return the number of steps in each run
+     */
+    public int size() {
+        return mSteps.length;
+    }
+
+    @NonNull
+    private Run acquire() {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            final Run run = mPool.get(i);
+
+            if (run != null && mPool.compareAndSet(i, run, null)) {
+                return run;
+            }
+        }
+
+        return new Run();
+    }
+
+    private void release(@NonNull final Run run) {
+        for (int i = 0; i < POOL_SIZE; i++) {
+            if (mPool.get(i) == null && mPool.compareAndSet(i, null, run)) {
+                return;
+            }
+        }
+    }
+
+    private static final class Step {
+        @NonNull
+        final IThreadType mThreadType;
+        @NonNull
+        final IActionOneR<Object, Object> mAction;
+
+        @SuppressWarnings("unchecked")
+        Step(@NonNull final IThreadType threadType,
+             @NonNull final IActionOneR<?, ?> action) {
+            this.mThreadType = threadType;
+            this.mAction = (IActionOneR<Object, Object>) action;
+        }
+    }
+
+    /**
+     * The state of one run. The fields are handed from thread to thread by {@link IThreadType#run(Runnable)},
+     * which orders the writes of one step before the reads of the next.
+     */
+    @NotCallOrigin
+    private final class Run implements IOverflowAware {
+        int mStepIndex;
+        @Nullable
+        Object mValue;
+        @Nullable
+        IActionOne<OUT> mOnSuccess;
+        @Nullable
+        IActionOne<Exception> mOnError;
+
+        @Override // Runnable
+        @SuppressWarnings("unchecked")
+        public void run() {
+            Step step = mSteps[mStepIndex];
+
+            try {
+                while (true) {
+                    mValue = step.mAction.call(mValue);
+                    if (++mStepIndex == mSteps.length) {
+                        break;
+                    }
+
+                    final Step nextStep = mSteps[mStepIndex];
+                    if (nextStep.mThreadType != step.mThreadType) {
+                        nextStep.mThreadType.run(this);
+                        return;
+                    }
+                    step = nextStep;
+                }
+            } catch (Exception e) {
+                step.mThreadType.getMetrics().recordFailure();
+                fail(e);
+                return;
+            }
+
+            final IActionOne<OUT> onSuccess = mOnSuccess;
+            final OUT out = (OUT) mValue;
+            recycle();
+            try {
+                onSuccess.call(out);
+            } catch (Exception e) {
+                RCLog.e(AltFutureTemplate.this, "Problem in onSuccess() of a run", e);
+            }
+        }
+
+        @Override // IOverflowAware
+        public void onOverflow(@NonNull final ICancellable.StateError stateError) {
+            fail(stateError.getException());
+        }
+
+        private void fail(@NonNull final Exception e) {
+            final IActionOne<Exception> onError = mOnError;
+
+            recycle();
+            try {
+                onError.call(e);
+            } catch (Exception e2) {
+                RCLog.e(AltFutureTemplate.this, "Problem in onError() of a run", e2);
+            }
+        }
+
+        /**
+         * Clear references to values and callbacks before this run is reused, so they may be garbage collected
+         */
+        private void recycle() {
+            mValue = null;
+            mOnSuccess = null;
+            mOnError = null;
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.functional;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.ISettableAltFuture;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.util.RCLog;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Convert between {@link IAltFuture} and {@link CompletionStage} for libraries which use the JVM standard
+ * <p>
+ * Both directions complete from the state change itself. There is no extra chain step and no
+ * {@link IThreadType} queue between, so the other side continues on the thread which finished the work.
+ * Cancelling either side cancels the other.
+ * <p>
+ * These are static methods rather than methods of {@link IAltFuture} and {@link IThreadType} because
+ * {@link CompletionStage} requires Android API 24 or higher. Do not call them on older devices.
+ */
+@NotCallOrigin
+public final class CompletionStageUtil {
+    private CompletionStageUtil() {
+    }
+
+    /**
+     * A {@link CompletionStage} which completes when the {@link IAltFuture} is done
+     * <p>
+     * An error state completes it exceptionally with the original exception. A cancelled state completes it
+     * with a {@link CancellationException}. Cancelling the returned stage with
+     * {@link CompletableFuture#cancel(boolean)} cancels the {@link IAltFuture}.
+     * <p>
+     * This does not {@link IAltFuture#fork()} the chain.
+     * <p>
+     * Only the {@link IAltFuture} implementations in this package are supported. The completion is read
+     * from their final state, which the {@link IAltFuture} interface does not expose.
+     *
+     * @param altFuture the source
+     * @param <OUT>     the type of the result
+     * @return a stage completed directly by the state change of <code>altFuture</code>
+     * @throws IllegalArgumentException if <code>altFuture</code> is some other implementation
+     */
+    @NonNull
+    public static <OUT> CompletableFuture<OUT> toCompletionStage(@NonNull final IAltFuture<?, OUT> altFuture) {
+        if (altFuture instanceof CompoundAltFuture) {
+            final CompletableFuture<OUT> completableFuture = toCompletionStage(((CompoundAltFuture<?, OUT>) altFuture).mTail);
+
+            completableFuture.whenComplete((value, t) -> {
+                if (completableFuture.isCancelled()) {
+                    altFuture.cancel("CompletableFuture was cancelled");
+                }
+            });
+
+            return completableFuture;
+        }
+
+        if (!(altFuture instanceof AbstractAltFuture)) {
+            throw new IllegalArgumentException("Can not convert " + altFuture.getClass().getName() + " to a CompletionStage, it is not an AbstractAltFuture or CompoundAltFuture");
+        }
+
+        final AbstractAltFuture<?, OUT> abstractAltFuture = (AbstractAltFuture<?, OUT>) altFuture;
+        final CompletableFuture<OUT> completableFuture = new CompletableFuture<OUT>() {
+            @Override // CompletableFuture
+            public boolean cancel(final boolean mayInterruptIfRunning) {
+                final boolean cancelled = super.cancel(mayInterruptIfRunning);
+
+                if (cancelled) {
+                    abstractAltFuture.cancel("CompletableFuture was cancelled");
+                }
+
+                return cancelled;
+            }
+        };
+
+        abstractAltFuture.whenDone(() -> {
+            final ICancellable.StateCancelled stateCancelled = abstractAltFuture.getStateCancelled();
+            if (stateCancelled != null) {
+                completableFuture.completeExceptionally(new CancellationException(stateCancelled.getReason()));
+                return;
+            }
+
+            final ICancellable.StateError stateError = abstractAltFuture.getStateError();
+            if (stateError != null) {
+                completableFuture.completeExceptionally(stateError.getException());
+                return;
+            }
+
+            completableFuture.complete(abstractAltFuture.get());
+        });
+
+        return completableFuture;
+    }
+
+    /**
+     * An {@link IAltFuture} which is set when the {@link CompletionStage} completes
+     * <p>
+     * Downchain steps continue on <code>threadType</code>. An exceptional completion changes the result to an
+     * error state with the original exception. A {@link CancellationException} cancels it. Cancelling the
+     * result calls {@link CompletableFuture#cancel(boolean)} on the stage.
+     *
+     * @param threadType     on which downchain steps run
+     * @param completionStage the source
+     * @param <OUT>          the type of the result
+     * @return set directly by the completion of <code>completionStage</code>
+     */
+    @NonNull
+    public static <OUT> ISettableAltFuture<OUT> from(
+            @NonNull final IThreadType threadType,
+            @NonNull final CompletionStage<OUT> completionStage) {
+        final SettableAltFuture<OUT> altFuture = new SettableAltFuture<>(threadType);
+
+        altFuture.whenDone(() -> {
+            final ICancellable.StateCancelled stateCancelled = altFuture.getStateCancelled();
+            if (stateCancelled != null) {
+                try {
+                    completionStage.toCompletableFuture().cancel(false);
+                } catch (UnsupportedOperationException e) {
+                    RCLog.v(altFuture, "CompletionStage can not be cancelled: " + completionStage);
+                }
+            }
+        });
+        completionStage.whenComplete((value, t) -> {
+            if (t == null) {
+                set(altFuture, value);
+                return;
+            }
+
+            final Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+            if (cause instanceof CancellationException) {
+                altFuture.cancel("CompletionStage was cancelled: " + cause.getMessage());
+                return;
+            }
+
+            final Exception e = cause instanceof Exception ? (Exception) cause : new CompletionException(cause);
+            try {
+                altFuture.doOnError(altFuture.new AltFutureStateError("CompletionStage completed exceptionally", e));
+            } catch (Exception e2) {
+                RCLog.e(altFuture, "Problem changing to error state after CompletionStage error", e2);
+            }
+        });
+
+        return altFuture;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <OUT> void set(
+            @NonNull final SettableAltFuture<OUT> altFuture,
+            final OUT value) {
+        if (altFuture.isDone()) {
+            RCLog.v(altFuture, "Already done, ignoring CompletionStage value: " + value);
+            return;
+        }
+        altFuture.set(value != null ? value : (OUT) AbstractAltFuture.COMPLETE); // A CompletionStage<Void> completes with null
+    }
+}
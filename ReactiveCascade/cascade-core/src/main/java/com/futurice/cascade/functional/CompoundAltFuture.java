@@ -58,6 +58,19 @@ public class CompoundAltFuture<IN, OUT> extends Origin implements IAltFuture<IN,
         return mHead.getThreadType();
     }
 
+    @Override // IPrioritized
+    public int getPriority() {
+        return mTail.getPriority();
+    }
+
+    @NonNull
+    @Override // IAltFuture
+    public IAltFuture<IN, OUT> setPriority(final int priority) {
+        mHead.setPriority(priority);
+
+        return this;
+    }
+
     @Override // IAltFuture
     public boolean isDone() {
         return mTail.isDone();
@@ -41,10 +41,11 @@ public class OnCancelledAltFuture<T> extends SettableAltFuture<T> {
     public void doOnCancelled(@NonNull final StateCancelled stateCancelled) throws Exception {
         RCLog.d(this, "Handling doOnCancelled(): " + stateCancelled);
 
-        if (!this.mStateAR.compareAndSet(ZEN, stateCancelled) || (Async.USE_FORKED_STATE && !this.mStateAR.compareAndSet(FORKED, stateCancelled))) {
+        if (!(this.mStateAR.compareAndSet(ZEN, stateCancelled) || (Async.USE_FORKED_STATE && this.mStateAR.compareAndSet(FORKED, stateCancelled)))) {
             RCLog.i(this, "Will not doOnCancelled() because IAltFuture state is already determined: " + mStateAR.get());
             return;
         }
+        releaseWaiters();
 
         @SuppressWarnings("unchecked")
         final IAltFuture<?, String> altFuture = mThreadType
@@ -39,10 +39,11 @@ public class OnErrorAltFuture<T> extends SettableAltFuture<T> {
     public void doOnError(@NonNull final StateError stateError) throws Exception {
         RCLog.d(this, "Handling doOnError(): " + stateError);
 
-        if (!this.mStateAR.compareAndSet(ZEN, stateError) || (Async.USE_FORKED_STATE && !this.mStateAR.compareAndSet(FORKED, stateError))) {
+        if (!(this.mStateAR.compareAndSet(ZEN, stateError) || (Async.USE_FORKED_STATE && this.mStateAR.compareAndSet(FORKED, stateError)))) {
             RCLog.i(this, "Will not doOnError() because IAltFuture state is already determined: " + mStateAR.get());
             return;
         }
+        releaseWaiters();
 
         @SuppressWarnings("unchecked")
         final IAltFuture<?, Exception> altFuture = mThreadType
@@ -7,6 +7,7 @@ package com.futurice.cascade.functional;
 
 import android.support.annotation.CallSuper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.futurice.cascade.i.IAction;
 import com.futurice.cascade.i.IActionOne;
@@ -18,11 +19,11 @@ import com.futurice.cascade.i.ICancellable;
 import com.futurice.cascade.i.IRunnableAltFuture;
 import com.futurice.cascade.i.IThreadType;
 import com.futurice.cascade.i.NotCallOrigin;
-import com.futurice.cascade.functional.AbstractAltFuture;
 import com.futurice.cascade.util.AssertUtil;
 import com.futurice.cascade.util.RCLog;
 
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A present-time representation of one of many possible alternate future results
@@ -82,7 +83,29 @@ import java.util.concurrent.CancellationException;
  */
 @NotCallOrigin
 public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> implements IRunnableAltFuture<IN, OUT> {
-    private final IActionR<OUT> mAction;
+    private static final Object INTERRUPTING = new Object(); // mRunner while AltFutureScope.cancel() interrupts the thread
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<RunnableAltFuture, Object> RUNNER_UPDATER = AtomicReferenceFieldUpdater.newUpdater(RunnableAltFuture.class, Object.class, "mRunner");
+    @Nullable
+    private final IActionR<OUT> mAction; // null when a subclass overrides callAction()
+    @Nullable
+    private volatile Object mRunner; // The Thread running the action of a step in an AltFutureScope, INTERRUPTING, or null
+
+    /**
+     * Create a {@link java.lang.Runnable} for a subclass which performs its own action in
+     * {@link #callAction()}
+     * <p>
+     * The public constructors adapt each action shape into an {@link IActionR} with a new lambda. The
+     * subclasses {@link ActionAltFuture}, {@link ActionOneAltFuture}, {@link ActionRAltFuture} and
+     * {@link ActionOneRAltFuture} instead call the action directly, so each chain step is one object.
+     *
+     * @param threadType the thread pool to run this command on
+     */
+    protected RunnableAltFuture(@NonNull final IThreadType threadType) {
+        super(threadType);
+
+        this.mAction = null;
+    }
 
     /**
      * Create a {@link java.lang.Runnable} which will be executed one time on the
@@ -167,7 +190,7 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
             final IAltFuture<?, ? extends IN> previousAltFuture = getUpchain();
 
             AssertUtil.assertNotNull(previousAltFuture);
-            AssertUtil.assertTrue("The previous RunnableAltFuture in the chain is not finished:" + getOrigin(), previousAltFuture.isDone());
+            AssertUtil.assertTrue("The previous RunnableAltFuture in the chain is not finished", previousAltFuture.isDone());
 
             return mAction.call(previousAltFuture.get());
         };
@@ -193,6 +216,62 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
 //        return false;
 //    }
 
+    /**
+     * Perform the action of this chain step
+     *
+     * @return the value of this step, passed to downchain steps
+     * @throws Exception
+     */
+    @SuppressWarnings("ConstantConditions")
+    protected OUT callAction() throws Exception {
+        return mAction.call();
+    }
+
+    /**
+     * Perform the action with the {@link AltFutureScope} of this step current, so futures created by the action
+     * join the same scope. The running thread is recorded for {@link #interruptRunner()}.
+     *
+     * @return the value of this step
+     * @throws Exception
+     */
+    private OUT callActionInScope() throws Exception {
+        final Thread thread = Thread.currentThread();
+        final AltFutureScope previousScope = AltFutureScope.enter(mScope);
+
+        mRunner = thread;
+        try {
+            if (isCancelled()) {
+                throw new CancellationException("Scope cancelled before execution started: " + mStateAR.get().toString());
+            }
+
+            return callAction();
+        } finally {
+            if (!RUNNER_UPDATER.compareAndSet(this, thread, null)) {
+                while (mRunner == INTERRUPTING) {
+                    Thread.yield(); // interruptRunner() is between reading mRunner and Thread.interrupt()
+                }
+                Thread.interrupted(); // The interrupt was for this step only, do not pass it on to the next task on this thread
+            }
+            AltFutureScope.exit(previousScope);
+        }
+    }
+
+    /**
+     * Interrupt the thread now running the action of this step, if any. Only steps created in an
+     * {@link AltFutureScope} record their thread.
+     */
+    void interruptRunner() {
+        final Object runner = mRunner;
+
+        if (runner instanceof Thread && RUNNER_UPDATER.compareAndSet(this, runner, INTERRUPTING)) {
+            try {
+                ((Thread) runner).interrupt();
+            } finally {
+                mRunner = null;
+            }
+        }
+    }
+
     /**
      * The {@link java.util.concurrent.ExecutorService} of this <code>RunnableAltFuture</code>s {@link com.futurice.cascade.i.IThreadType}
      * will call this for you. You will {@link #fork()} when all prerequisite tasks have completed
@@ -200,24 +279,47 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
      * chain, subscribe it will be forked for you when the prerequisites have finished.
      * <p>
      * This is called for you from the {@link IThreadType}'s {@link java.util.concurrent.ExecutorService}
+     * <p>
+     * If the {@link IThreadType#getFusedStepLimit()} allows, the single downchain step on the same thread
+     * type is run next in this same task instead of being forked, and so on down the chain.
      */
     @Override
     @NotCallOrigin
     public final void run() {
+        final int fusedStepLimit = mThreadType.getFusedStepLimit();
+        RunnableAltFuture<?, ?> step = this;
+
+        for (int fusedSteps = 0; step != null; fusedSteps++) {
+            step = step.runStep(fusedSteps < fusedStepLimit);
+        }
+    }
+
+    /**
+     * Perform this step and set the resulting state
+     *
+     * @param mayFuse <code>true</code> if the downchain step may be returned to run next instead of being forked
+     * @return the claimed downchain step to run next in this task, or <code>null</code> if downchain steps were forked
+     */
+    @Nullable
+    @NotCallOrigin
+    private RunnableAltFuture<OUT, ?> runStep(final boolean mayFuse) {
         boolean stateChanged = false;
+        boolean succeeded = false;
+        RunnableAltFuture<OUT, ?> fusedStep = null;
 
         try {
             if (isCancelled()) {
                 RCLog.d(this, "RunnableAltFuture was cancelled before execution. state=" + mStateAR.get());
                 throw new CancellationException("Cancelled before execution started: " + mStateAR.get().toString());
             }
-            final OUT out = mAction.call();
+            final OUT out = mScope == null ? callAction() : callActionInScope();
 
             if (!(mStateAR.compareAndSet(ZEN, out) || mStateAR.compareAndSet(FORKED, out))) {
                 RCLog.d(this, "RunnableAltFuture was cancelled() or otherwise changed during execution. Returned from of function is ignored, but any direct side-effects not cooperatively stopped or rolled back in mOnError()/onCatch() are still in effect. state=" + mStateAR.get());
                 throw new CancellationException(mStateAR.get().toString());
             }
             stateChanged = true;
+            succeeded = true;
         } catch (CancellationException e) {
             stateChanged = cancel("RunnableAltFuture threw a CancellationException (accepted behavior, will not fail fast): " + e);
             stateChanged = true;
@@ -226,19 +328,36 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
         } catch (Exception e) {
             final AltFutureStateError stateError = new AltFutureStateError("RunnableAltFuture run problem", e);
 
-            if (!(mStateAR.compareAndSet(ZEN, stateError) && !(mStateAR.compareAndSet(FORKED, stateError)))) {
+            mThreadType.getMetrics().recordFailure();
+
+            if (mStateAR.compareAndSet(ZEN, stateError) || mStateAR.compareAndSet(FORKED, stateError)) {
+                releaseWaiters();
+                final Exception downchainException = forEachThen(af -> {
+                    af.doOnError(stateError);
+                });
+                if (downchainException != null) {
+                    RCLog.e(this, "RunnableAltFuture.run() state=" + stateError + "\nProblem passing the error to downchain steps", downchainException);
+                }
+                clearPreviousAltFuture();
+            } else {
                 RCLog.i(this, "RunnableAltFuture had a problem, but can not transition to stateError as the state has already changed. This is either a logic error or a possible but rare legitimate cancel() race condition: " + e);
                 stateChanged = true;
             }
         } finally {
             if (stateChanged) {
+                releaseWaiters();
                 if (!isDone()) {
                     RCLog.e(this, "Not done");
                 }
-                try {
-                    doThen();
-                } catch (Exception e) {
-                    RCLog.e(this, "RunnableAltFuture.run() state=" + mStateAR.get() + "\nProblem in resulting .doThen()", e);
+                if (succeeded && mayFuse) {
+                    fusedStep = claimFusedStep();
+                }
+                if (fusedStep == null) {
+                    try {
+                        doThen();
+                    } catch (Exception e) {
+                        RCLog.e(this, "RunnableAltFuture.run() state=" + mStateAR.get() + "\nProblem in resulting .doThen()", e);
+                    }
                 }
 
                 try {
@@ -248,6 +367,31 @@ public class RunnableAltFuture<IN, OUT> extends AbstractAltFuture<IN, OUT> imple
                 }
             }
         }
+
+        return fusedStep;
+    }
+
+    /**
+     * Claim the downchain step to run next in this task. It must be the only downchain step, so no
+     * other step observes the value in between, and it must run on this same thread type.
+     * <p>
+     * A {@link #then(IAltFuture)} which races with this sees {@link #isDone()} and forks its own step.
+     *
+     * @return the downchain step, now {@link #FORKED}, or <code>null</code> if it must be forked as usual
+     */
+    @Nullable
+    private RunnableAltFuture<OUT, ?> claimFusedStep() {
+        final IAltFuture<OUT, ?> downchain = getSingleDownchain();
+
+        if (!(downchain instanceof RunnableAltFuture)
+                || downchain.getThreadType() != mThreadType
+                || downchain.getUpchain() != this
+                || mThreadType.isShutdown()) {
+            return null;
+        }
+        final RunnableAltFuture<OUT, ?> fusedStep = (RunnableAltFuture<OUT, ?>) downchain;
+
+        return fusedStep.claimFork(this) ? fusedStep : null;
     }
 
     /**
@@ -55,27 +55,40 @@ public class SettableAltFuture<T> extends AbstractAltFuture<T, T> implements ISe
         set(value);
     }
 
+    /**
+     * Set the value and continue the chain
+     * <p>
+     * If this was already cancelled, for example because it was created in a cancelled {@link AltFutureScope},
+     * the value is ignored.
+     *
+     * @param value the result
+     */
     @Override // ISettable
     public void set(@NonNull final T value) {
         if (mStateAR.compareAndSet(ZEN, value) || mStateAR.compareAndSet(FORKED, value)) {
             // Previous state was FORKED, so set completes the mOnFireAction and continues the chain
             RCLog.v(this, "SettableAltFuture set, from= " + value);
-            doFork();
+            releaseWaiters();
+            try {
+                doThen();
+            } catch (Exception e) {
+                RCLog.e(this, "Problem forking downchain steps after set()", e);
+            }
             clearPreviousAltFuture();
             return;
         }
 
-        // Already set, cancelled or error state
-        RCLog.throwIllegalArgumentException(this, "Attempted to set " + this + " to from=" + value + ", but the from can only be set once and was already set to from=" + get());
+        final Object state = mStateAR.get();
+        if (state instanceof StateCancelled) {
+            RCLog.d(this, "Ignoring set(" + value + "), already cancelled: " + state);
+            return;
+        }
+
+        // Already set or error state
+        RCLog.throwIllegalArgumentException(this, "Attempted to set " + this + " to from=" + value + ", but the from can only be set once and was already set to state=" + state);
     }
 
     protected void doFork() {
-        // This is not an IRunnableAltFuture, so nothing to fork() or run(). But RunnableAltFuture overrides this and does more
-//        AssertUtil.assertTrue(isDone());
-//        try {
-//            doThen();
-//        } catch (Exception e) {
-//            RCLog.e(this, "Can not doFork()", e);
-//        }
+        // This is not an IRunnableAltFuture, so nothing to fork() or run(). set() continues the chain instead
     }
 }
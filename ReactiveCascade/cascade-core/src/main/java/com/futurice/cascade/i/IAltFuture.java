@@ -66,7 +66,7 @@ import java.util.concurrent.TimeUnit;
  * <code>IAltFuture</code> implementations are compatible with {@link Future}. The default implementation
  * {@link RunnableAltFuture} is not a <code>Future</code> to avoid confusion.
  */
-public interface IAltFuture<IN, OUT> extends ICancellable, ISafeGettable<OUT>, IAsyncOrigin {
+public interface IAltFuture<IN, OUT> extends ICancellable, ISafeGettable<OUT>, IAsyncOrigin, IPrioritized {
     /**
      * A method which returns a new (unforked) <code>IAltFuture</code> should follow the naming conventiond <code>..Async</code>
      * and be annotated <code>@CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION) to {@link CheckResult} that
@@ -84,6 +84,16 @@ public interface IAltFuture<IN, OUT> extends ICancellable, ISafeGettable<OUT>, I
     @NonNull
     IThreadType getThreadType();
 
+    /**
+     * Set how urgently this and, unless they set their own, all downchain steps should run on a
+     * priority-aware {@link IThreadType}. Call this before {@link #fork()}.
+     *
+     * @param priority the priority level, <code>0</code> is most urgent
+     * @return <code>this</code>
+     */
+    @NonNull
+    IAltFuture<IN, OUT> setPriority(int priority);
+
     /**
      * Find if the final, immutable state has been entered either with a successful result or an error
      * code
@@ -0,0 +1,28 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.i;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Where log lines are written, for example the Android system log or the console of a JVM
+ * <p>
+ * The methods match <code>android.util.Log</code> so that the Android binding can delegate directly.
+ * See {@link com.futurice.cascade.util.PlatformLog}.
+ */
+public interface ILog {
+    void v(@NonNull String tag, @NonNull String message);
+
+    void d(@NonNull String tag, @NonNull String message);
+
+    void d(@NonNull String tag, @NonNull String message, @NonNull Throwable t);
+
+    void i(@NonNull String tag, @NonNull String message);
+
+    void e(@NonNull String tag, @NonNull String message);
+
+    void e(@NonNull String tag, @NonNull String message, @NonNull Throwable t);
+}
@@ -0,0 +1,23 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.i;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A task which is told when a bounded {@link IThreadType} will not run it.
+ * <p>
+ * An {@link IAltFuture} is cancelled or moved to an error state when its {@link IThreadType.OverflowPolicy}
+ * drops or rejects it. Any other dropped task is only logged, so implement this for tasks which someone waits on.
+ */
+public interface IOverflowAware extends Runnable {
+    /**
+     * The task was dropped or rejected because the mQueue was full, and will not run
+     *
+     * @param stateError the reason, see {@link IThreadType#setCapacity(int, IThreadType.OverflowPolicy)}
+     */
+    void onOverflow(@NonNull ICancellable.StateError stateError);
+}
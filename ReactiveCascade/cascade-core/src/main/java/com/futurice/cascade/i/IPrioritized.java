@@ -0,0 +1,24 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.i;
+
+/**
+ * A task which can tell a priority-aware {@link IThreadType} how urgently it should run.
+ * <p>
+ * Lower numbers run first; <code>0</code> is the most urgent. A {@link IThreadType} which does not
+ * support priority ignores this.
+ */
+public interface IPrioritized {
+    /**
+     * No priority has been set. Inherit from upchain, or use the default of the {@link IThreadType}.
+     */
+    int PRIORITY_UNSET = -1;
+
+    /**
+     * @return the priority level, or {@link #PRIORITY_UNSET}
+     */
+    int getPriority();
+}
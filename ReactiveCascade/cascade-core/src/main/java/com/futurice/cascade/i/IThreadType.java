@@ -10,10 +10,11 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import com.futurice.cascade.functional.RunnableAltFuture;
-import com.futurice.cascade.util.UIExecutorService;
+import com.futurice.cascade.util.ThreadTypeMetrics;
 
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A group of one or more {@link Thread}s, all of which work together in an {@link java.util.concurrent.Executor}.
@@ -23,13 +24,46 @@ import java.util.concurrent.Future;
  * the bounding of concurrency split other resource contention to increase runtime performance.
  * <p>
  * One special case of bounded concurrency is {@link #isInOrderExecutor()} that can be guaranteed
- * only for a single-threaded or single-thread-at-a-time implementation. {@link UIExecutorService}
+ * only for a single-threaded or single-thread-at-a-time implementation. <code>UIExecutorService</code>
  * supplies a wrapper for the default system UI thread behavior which provides these convenience
  * methods. It can be accessed from anywhere using <code>ALog.UI.subscribe(..)</code> notation. Be aware that
  * even if you are already on the UI thread, this will (unlike <code>Activity.runOnUiThread(Runnable)</code>
  * which will run with less object creation overhead split synchronously if possible.
  */
 public interface IThreadType extends INamed {
+    /**
+     * What to do when a task is added to a full mQueue. See {@link #setCapacity(int, OverflowPolicy)}
+     * <p>
+     * A task which implements {@link IOverflowAware} is told when it is dropped or rejected, instead of being
+     * cancelled or throwing as described for each policy.
+     */
+    enum OverflowPolicy {
+        /**
+         * Wait until there is space. A task added from one of this thread type's own threads is run
+         * immediately on that thread instead, since waiting there could deadlock.
+         */
+        BLOCK,
+        /**
+         * Remove the task at the head of the mQueue to make space. A removed {@link IAltFuture} is cancelled.
+         * If the thread type does not expose its mQueue, the new task is dropped instead.
+         */
+        DROP_OLDEST,
+        /**
+         * Do not add the new task. An {@link IAltFuture} is cancelled.
+         */
+        DROP_NEWEST,
+        /**
+         * Run the new task immediately on the thread which added it
+         */
+        RUN_ON_CALLER,
+        /**
+         * Do not add the new task. An {@link IAltFuture} moves to {@link com.futurice.cascade.util.QueueOverflowStateError}
+         * and <code>.onError()</code> is called downchain. A plain {@link Runnable} throws a
+         * {@link java.util.concurrent.RejectedExecutionException} to the caller.
+         */
+        FAIL
+    }
+
     /**
      * Determine if this asynchronous implementation guarantees in-order execution such that one
      * mOnFireAction completes before the next begins.
@@ -49,6 +83,41 @@ public interface IThreadType extends INamed {
     @NotCallOrigin
     <IN> void execute(@NonNull IAction<IN> action);
 
+    /**
+     * Run this action on this thread type after a delay
+     * <p>
+     * The task is handed directly to this thread type's mQueue when it is due, without first running on a
+     * timer thread. It may run up to about twice {@link com.futurice.cascade.util.HashedWheelTimer#DEFAULT_TICK_MILLIS} late.
+     *
+     * @param delay    time to wait
+     * @param timeUnit units of the delay
+     * @param action   the work to be performed
+     * @param <IN>     the type of input argument expected by the action
+     * @return a handle to cancel the action if it has not yet started
+     */
+    @NonNull
+    <IN> ICancellable schedule(
+            long delay,
+            @NonNull TimeUnit timeUnit,
+            @NonNull IAction<IN> action);
+
+    /**
+     * Run this action on this thread type repeatedly, at a fixed rate, until cancelled or this thread type is shut down
+     *
+     * @param initialDelay time to wait before the first run
+     * @param period       time between the start of each run
+     * @param timeUnit     units of the delay and period
+     * @param action       the work to be performed
+     * @param <IN>         the type of input argument expected by the action
+     * @return a handle to stop the repetition
+     */
+    @NonNull
+    <IN> ICancellable scheduleAtFixedRate(
+            long initialDelay,
+            long period,
+            @NonNull TimeUnit timeUnit,
+            @NonNull IAction<IN> action);
+
     /**
      * Execute a runnable. Generally this is an action that has already been error-catch wrapped using for example
      * {@link #wrapActionWithErrorProtection(IAction)}
@@ -127,6 +196,18 @@ public interface IThreadType extends INamed {
      */
     boolean moveToHeadOfQueue(@NonNull Runnable runnable);
 
+    /**
+     * Remove a task which is waiting in the mQueue so it will not run. A task which has already
+     * started is not affected.
+     * <p>
+     * This is useful to free the mQueue of work which is no longer needed, such as a cancelled
+     * {@link com.futurice.cascade.i.IRunnableAltFuture}.
+     *
+     * @param runnable the task as it was originally submitted
+     * @return <code>true</code> if found in the mQueue and removed
+     */
+    boolean removeFromQueue(@NonNull Runnable runnable);
+
     /**
      * Run this mOnFireAction after all previously submitted actions (FIFO).
      *
@@ -334,6 +415,65 @@ public interface IThreadType extends INamed {
      */
     public boolean isShutdown();
 
+    /**
+     * Measurements of the tasks run by this thread type, such as mQueue depth, wait time and run time. These
+     * are collected only after {@link ThreadTypeMetrics#setEnabled(boolean)}.
+     *
+     * @return the metrics for this thread type
+     */
+    @NonNull
+    public ThreadTypeMetrics getMetrics();
+
+    /**
+     * Limit the number of tasks waiting to run. Tasks already running do not count.
+     * <p>
+     * The default is no limit. A burst of work such as many network requests can otherwise fill
+     * the heap with waiting tasks.
+     *
+     * @param capacity       the most tasks which may wait, or {@link Integer#MAX_VALUE} for no limit
+     * @param overflowPolicy what to do with a task added when the mQueue is full
+     */
+    public void setCapacity(
+            int capacity,
+            @NonNull OverflowPolicy overflowPolicy);
+
+    /**
+     * Let a chain step forked from a thread of this thread type run at once on that thread rather than
+     * wait in the mQueue.
+     * <p>
+     * The default is <code>0</code>, every step is queued. With a limit, a chain such as ten
+     * <code>.then()</code> steps on {@link com.futurice.cascade.Async#WORKER} runs without ten mQueue handoffs.
+     * The limit bounds how many steps run one after another before the next is queued, so a long chain
+     * does not hold the thread while other tasks wait.
+     * <p>
+     * An inline step starts ahead of tasks already waiting, so enable this only on thread types which
+     * do not promise in-order execution.
+     *
+     * @param limit the most chain steps run inline in a row, or <code>0</code> to always queue
+     */
+    public void setInlineContinuationLimit(int limit);
+
+    /**
+     * Run the next step of a chain in the same task as the step before it, rather than fork and queue it.
+     * <p>
+     * The default is <code>0</code>, every step is forked when the one before it completes. With a limit,
+     * a run of steps such as <code>WORKER.then(a).map(b).then(c)</code> is one task on one thread with no
+     * mQueue handoff between the steps. A step is fused only if it is the single downchain step of a step
+     * which succeeded, runs on this same thread type and was not already forked. Fan-out, a change of
+     * thread type or an error end the fused run and the downchain is forked as usual.
+     * <p>
+     * As with {@link #setInlineContinuationLimit(int)}, a fused step starts ahead of tasks already waiting,
+     * so enable this only on thread types which do not promise in-order execution.
+     *
+     * @param limit the most steps run in one task after the first, or <code>0</code> to fork every step
+     */
+    public void setFusedStepLimit(int limit);
+
+    /**
+     * @return the most steps run in one task after the first, see {@link #setFusedStepLimit(int)}
+     */
+    public int getFusedStepLimit();
+
     /**
      * Halt execution of all functional and reactive subscriptions in this mThreadType.
      *
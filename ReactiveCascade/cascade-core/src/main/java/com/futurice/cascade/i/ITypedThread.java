@@ -0,0 +1,22 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.i;
+
+import android.support.annotation.NonNull;
+
+/**
+ * A {@link Thread} created by an {@link IThreadType}, so that {@link com.futurice.cascade.Async#currentThreadType()}
+ * can find it
+ * <p>
+ * Implementations hold the thread type in a final field so this costs one field read.
+ */
+public interface ITypedThread {
+    /**
+     * @return the thread type which created this thread
+     */
+    @NonNull
+    IThreadType getThreadType();
+}
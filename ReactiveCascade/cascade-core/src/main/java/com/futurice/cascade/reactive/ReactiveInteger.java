@@ -55,15 +55,16 @@ public class ReactiveInteger extends ReactiveValue<Integer> {
      * Add two integers in a thread-safe manner
      *
      * @param i
-     * @return
+     * @return the value after the add
      */
     @CallSuper
     public int addAndGet(final int i) {
         while (true) {
-            final int currentValue = get();
+            final Integer currentValue = get(); // Keep the reference, compareAndSet() compares references not values
+            final int newValue = currentValue + i;
 
-            if (compareAndSet(currentValue, currentValue + i)) {
-                return currentValue;
+            if (compareAndSet(currentValue, newValue)) {
+                return newValue;
             }
             RCLog.d(this, "Collision concurrent add, will try again: " + currentValue);
         }
@@ -73,15 +74,16 @@ public class ReactiveInteger extends ReactiveValue<Integer> {
      * Multiply two integers in a thread-safe manner
      *
      * @param i
-     * @return
+     * @return the value after the multiply
      */
     @CallSuper
     public int multiplyAndGet(final int i) {
         while (true) {
-            final int currentValue = get();
+            final Integer currentValue = get(); // Keep the reference, compareAndSet() compares references not values
+            final int newValue = currentValue * i;
 
-            if (compareAndSet(currentValue, currentValue * i)) {
-                return currentValue;
+            if (compareAndSet(currentValue, newValue)) {
+                return newValue;
             }
             RCLog.d(this, "Collision concurrent add, will try again: " + currentValue);
         }
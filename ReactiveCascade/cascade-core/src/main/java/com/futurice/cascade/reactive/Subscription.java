@@ -13,6 +13,7 @@ import com.futurice.cascade.i.IActionOne;
 import com.futurice.cascade.i.IActionOneR;
 import com.futurice.cascade.i.IActionR;
 import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IPrioritized;
 import com.futurice.cascade.i.IReactiveSource;
 import com.futurice.cascade.i.IReactiveTarget;
 import com.futurice.cascade.i.IThreadType;
@@ -45,7 +46,7 @@ import static com.futurice.cascade.Async.UI;
  * @param <IN>  the type of the second link in the active chain
  */
 @NotCallOrigin
-public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>, IReactiveSource<OUT> {
+public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>, IReactiveSource<OUT>, IPrioritized {
     //FIXME Replace these values with changing lastFireInIsFireNext to be volatile boolean needToQueue to simplify logic
     private static final Object FIRE_ACTION_NOT_QUEUED = new Object(); // A marker state for fireAction to indicate the need to mQueue on next fire
 
@@ -67,6 +68,7 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     private final AtomicBoolean mLatestFireInIsFireNext = new AtomicBoolean(false); // Signals high priority re-execution if still processing the previous from
     @NonNull
     private final Runnable mFireRunnable;
+    private volatile int mPriority = PRIORITY_UNSET;
 
     //TODO Use to unsubcribe from mTail when IBindingContext is implemented
     @Nullable
@@ -109,7 +111,7 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
           *
           * Re-mQueue if the input from changes before exiting
          */
-        mFireRunnable = this.mThreadType.wrapActionWithErrorProtection(new IAction<Object>() {
+        mFireRunnable = new PrioritizedFireRunnable(this.mThreadType.wrapActionWithErrorProtection(new IAction<Object>() {
             @Override
             @NotCallOrigin
             public void call() throws Exception {
@@ -124,7 +126,7 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
                     }
                 }
             }
-        });
+        }));
     }
 
     private Runnable getFireRunnable() {
@@ -139,6 +141,37 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
         return this.mName;
     }
 
+    /**
+     * The priority with which this subscription fires on a priority-aware {@link IThreadType}. If not set,
+     * this is inherited from the upchain subscription.
+     *
+     * @return the priority level, or {@link #PRIORITY_UNSET}
+     */
+    @Override // IPrioritized
+    public int getPriority() {
+        final int priority = mPriority;
+
+        if (priority == PRIORITY_UNSET && upchainReactiveSource instanceof IPrioritized) {
+            return ((IPrioritized) upchainReactiveSource).getPriority();
+        }
+
+        return priority;
+    }
+
+    /**
+     * Set how urgently this and, unless they set their own, all downchain subscriptions fire on a
+     * priority-aware {@link IThreadType}
+     *
+     * @param priority the priority level, <code>0</code> is most urgent
+     * @return <code>this</code>
+     */
+    @NonNull
+    public Subscription<IN, OUT> setPriority(final int priority) {
+        this.mPriority = priority;
+
+        return this;
+    }
+
     @Override // IReactiveTarget
     public void subscribeSource(@NonNull final String reason, @NonNull final IReactiveSource<IN> reactiveSource) {
         if (!mReactiveSources.addIfAbsent(reactiveSource)) {
@@ -214,6 +247,9 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
     @Override // IReactiveTarget
     public void fire(@NonNull final IN in) {
         RCLog.v(this, "fire mLatestFireIn=" + in);
+        if (in == IAltFuture.VALUE_NOT_AVAILABLE) {
+            return; // Nothing to fire. Storing it in mLatestFireIn would look like a queued fire and block the next one
+        }
         mLatestFireInIsFireNext.set(false);
         /*
          There is a race at this point between mLatestFireIn and mLatestFireInIsFireNext.
@@ -223,7 +259,7 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
          This design is more efficient than the memory thrash at every reactive evaluation step that
          would explicitly atomically couple the signals into a new Pair(in, boolean) structure.
          */
-        if (mLatestFireIn.getAndSet(in) == FIRE_ACTION_NOT_QUEUED && in != IAltFuture.VALUE_NOT_AVAILABLE) {
+        if (mLatestFireIn.getAndSet(in) == FIRE_ACTION_NOT_QUEUED) {
             // Only mQueue for execution if not already queued
             mThreadType.run(getFireRunnable());
         }
@@ -421,4 +457,28 @@ public class Subscription<IN, OUT> extends Origin implements IReactiveTarget<IN>
 
         return subscription;
     }
+
+    /**
+     * The fire action. This reports the current priority of the subscription to a priority-aware {@link IThreadType}.
+     */
+    @NotCallOrigin
+    private final class PrioritizedFireRunnable implements Runnable, IPrioritized {
+        @NonNull
+        private final Runnable mRunnable;
+
+        PrioritizedFireRunnable(@NonNull final Runnable runnable) {
+            this.mRunnable = runnable;
+        }
+
+        @Override // Runnable
+        @NotCallOrigin
+        public void run() {
+            mRunnable.run();
+        }
+
+        @Override // IPrioritized
+        public int getPriority() {
+            return Subscription.this.getPriority();
+        }
+    }
 }
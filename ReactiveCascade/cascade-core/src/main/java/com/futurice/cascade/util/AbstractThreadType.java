@@ -0,0 +1,751 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.CheckResult;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.core.BuildConfig;
+import com.futurice.cascade.functional.ActionAltFuture;
+import com.futurice.cascade.functional.ActionOneAltFuture;
+import com.futurice.cascade.functional.ActionOneRAltFuture;
+import com.futurice.cascade.functional.ActionRAltFuture;
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IAction;
+import com.futurice.cascade.i.IActionOne;
+import com.futurice.cascade.i.IActionOneR;
+import com.futurice.cascade.i.IActionR;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.IOverflowAware;
+import com.futurice.cascade.i.IRunnableAltFuture;
+import com.futurice.cascade.i.ISettableAltFuture;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The baseline implementation of ThreadType convenience classes. It provides functional interfaces
+ * (lambda-friendly if you are using the RetroLambda library or similar) to execRunnable code in a background
+ * WORKER thread pool.
+ * <p>
+ * For more specialized behaviour a class may choose to replace this.
+ * <p>
+ */
+public abstract class AbstractThreadType extends Origin implements IThreadType {
+    private static final ThreadLocal<Trampoline> sTrampoline = new ThreadLocal<Trampoline>() {
+        @Override
+        protected Trampoline initialValue() {
+            return new Trampoline();
+        }
+    };
+    @NonNull
+    protected final ExecutorService executorService;
+    @Nullable
+    protected final BlockingQueue<Runnable> mQueue;
+    @NonNull
+    protected final ThreadTypeMetrics mMetrics;
+    @NonNull
+    private final String name;
+    @Nullable
+    private volatile QueueCapacity mQueueCapacity; // null when there is no limit
+    private volatile int mInlineContinuationLimit = 0; // 0 when chain steps are always queued
+    private volatile int mFusedStepLimit = 0; // 0 when each chain step is forked separately
+
+    /**
+     * Create an asynchronous mOnFireAction handler that embodies certain rules for threading split concurrency
+     * in a set of lambda-friendly methods
+     *
+     * @param executorService the thread or thread pool for this thread type. Threads and thread pools may be
+     *                        shared with other thread types, however note that though this this cooperative execution
+     *                        reduces mContext switching and peak memory load it may delay the start of execution
+     *                        of tasks in one thread type by tasks in another thread type
+     * @param queue           the mQueue from which the executor pulls work, or <code>null</code> if the
+     *                        executor does not expose one. Re-ordering such as {@link #moveToHeadOfQueue(Runnable)}
+     *                        is not possible without a visible {@link Deque}
+     */
+    public AbstractThreadType(
+            @NonNull final String name,
+            @NonNull final ExecutorService executorService,
+            @Nullable final BlockingQueue<Runnable> queue) {
+        this.name = name;
+        this.executorService = executorService;
+        this.mQueue = queue;
+        this.mMetrics = new ThreadTypeMetrics(name);
+    }
+
+//============================= Internal Utility Methods =========================================
+
+    private static boolean isMistakenlyCalledDirectlyFromOutsideTheCascadeLibrary() {
+        //TODO This check doesn't really allow 3rd party implementations. Not testing would mean unsafe/less obvious problems can come later. Package hiding would disallow replacement implementations that follow the interface contracts. What we have here is a half measure to guide people since currently there are no alternate implementations.
+        final StackTraceElement[] ste = Thread.currentThread().getStackTrace();
+        int i = 0;
+
+        // Android has an extra VMStack frame above Thread.getStackTrace() which a JVM does not
+        while (!ste[i].getMethodName().equals("isMistakenlyCalledDirectlyFromOutsideTheCascadeLibrary")) {
+            i++;
+        }
+        AssertUtil.assertTrue("Stack trace[" + (i + 1) + "] is AbstractThreadType.fork(IRunnableAltFuture)", ste[i + 1].getMethodName().contains("fork"));
+        return !ste[i + 2].getClassName().startsWith("com.futurice.cascade");
+    }
+
+    /**
+     * Check if an item in a mQueue is the given task, or one of the wrappers added as that task was queued.
+     * Use this when searching the mQueue, for example in {@link #moveToHeadOfQueue(Runnable)}.
+     *
+     * @param queued   an item in the mQueue
+     * @param runnable the task as it was originally submitted
+     * @return <code>true</code> if they match
+     */
+    public static boolean isTaskFor(
+            @NonNull final Object queued,
+            @NonNull final Object runnable) {
+        return unwrapTask(queued).equals(runnable);
+    }
+
+    @NonNull
+    static Object unwrapTask(@NonNull final Object queued) {
+        return QueueCapacity.unwrap(ThreadTypeMetrics.unwrap(queued));
+    }
+
+    /**
+     * Apply the limit set by {@link #setCapacity(int, OverflowPolicy)} to a task about to be queued.
+     * Implementations call this once for each task before {@link ThreadTypeMetrics#wrap(Runnable)}.
+     *
+     * @param runnable the task
+     * @return the task to queue, or <code>null</code> if the {@link OverflowPolicy} has already dealt with it
+     */
+    @Nullable
+    @NotCallOrigin
+    protected final Runnable admit(@NonNull final Runnable runnable) {
+        final QueueCapacity queueCapacity = mQueueCapacity;
+
+        if (queueCapacity == null || runnable instanceof QueueCapacity.Exempt) {
+            return runnable;
+        }
+        if (queueCapacity.mPermits.tryAcquire()) {
+            return new QueueCapacity.PermitRunnable(queueCapacity, runnable);
+        }
+
+        switch (queueCapacity.mOverflowPolicy) {
+            case BLOCK:
+                if (Async.currentThreadType() == this) {
+                    runnable.run(); // Our own threads would wait for themselves
+                    return null;
+                }
+                try {
+                    queueCapacity.mPermits.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    overflow(runnable, queueCapacity, true);
+                    return null;
+                }
+                return new QueueCapacity.PermitRunnable(queueCapacity, runnable);
+
+            case DROP_OLDEST:
+                final Runnable oldest = mQueue != null ? mQueue.poll() : null;
+                if (oldest != null && ThreadTypeMetrics.unwrap(oldest) instanceof QueueCapacity.Exempt) {
+                    mQueue.offer(oldest); // Holds no permit, so dropping it would not make space
+                } else if (oldest != null) {
+                    final Object task = ThreadTypeMetrics.unwrap(oldest);
+                    mMetrics.recordDropped(oldest);
+                    if (task instanceof QueueCapacity.PermitRunnable && ((QueueCapacity.PermitRunnable) task).mQueueCapacity == queueCapacity) {
+                        overflow(((QueueCapacity.PermitRunnable) task).mRunnable, queueCapacity, true);
+                        return new QueueCapacity.PermitRunnable(queueCapacity, runnable); // Take over the permit of the dropped task
+                    }
+                    overflow(QueueCapacity.unwrap(task), queueCapacity, true);
+                    if (queueCapacity.mPermits.tryAcquire()) {
+                        return new QueueCapacity.PermitRunnable(queueCapacity, runnable);
+                    }
+                }
+                mMetrics.recordFailure();
+                overflow(runnable, queueCapacity, true);
+                return null;
+
+            case RUN_ON_CALLER:
+                runnable.run();
+                return null;
+
+            case DROP_NEWEST:
+                mMetrics.recordFailure();
+                overflow(runnable, queueCapacity, true);
+                return null;
+
+            case FAIL:
+            default:
+                mMetrics.recordFailure();
+                overflow(runnable, queueCapacity, false);
+                return null;
+        }
+    }
+
+    /**
+     * A task will not run because the mQueue is full
+     *
+     * @param task          the task as it was originally submitted
+     * @param queueCapacity the limit which was reached
+     * @param drop          <code>true</code> to cancel an {@link IAltFuture}, <code>false</code> to move it to an error state
+     */
+    @NotCallOrigin
+    private void overflow(
+            @NonNull final Object task,
+            @NonNull final QueueCapacity queueCapacity,
+            final boolean drop) {
+        final QueueOverflowStateError stateError = new QueueOverflowStateError(this, queueCapacity.mCapacity);
+
+        if (task instanceof IOverflowAware) {
+            try {
+                ((IOverflowAware) task).onOverflow(stateError);
+            } catch (Exception e) {
+                RCLog.e(this, "Problem notifying " + task + " of " + stateError, e);
+            }
+            return;
+        }
+        if (!(task instanceof IAltFuture)) {
+            if (drop) {
+                RCLog.i(this, "Dropped task " + task + ": " + stateError);
+                return;
+            }
+            throw (RejectedExecutionException) stateError.getException();
+        }
+
+        final IAltFuture<?, ?> altFuture = (IAltFuture<?, ?>) task;
+        try {
+            if (drop) {
+                altFuture.cancel(stateError);
+            } else {
+                altFuture.doOnError(stateError);
+            }
+        } catch (Exception e) {
+            RCLog.e(this, "Problem notifying " + altFuture + " of " + stateError, e);
+        }
+    }
+
+    @NotCallOrigin
+    public abstract void run(@NonNull Runnable runnable);
+
+    private <IN, OUT> IAltFuture<IN, OUT> runAltFuture(@NonNull final IRunnableAltFuture<IN, OUT> altFuture) {
+        run(altFuture);
+
+        return altFuture;
+    }
+
+    @Override
+    @NonNull
+    @NotCallOrigin
+    public <IN> Runnable wrapActionWithErrorProtection(@NonNull final IAction<IN> action) {
+        return new Runnable() {
+            @Override
+            @NotCallOrigin
+            public void run() {
+                try {
+                    action.call();
+                } catch (Exception e) {
+                    mMetrics.recordFailure();
+                    RCLog.e(this, "run(IAction) problem", e);
+                }
+            }
+        };
+    }
+
+    @Override
+    @NonNull
+    @NotCallOrigin
+    public <IN> Runnable wrapActionWithErrorProtection(
+            @NonNull final IAction<IN> action,
+            @NonNull final IActionOne<Exception> onErrorAction) {
+        return new Runnable() {
+            @Override
+            @NotCallOrigin
+            public void run() {
+                try {
+                    action.call();
+                } catch (Exception e) {
+                    mMetrics.recordFailure();
+                    RCLog.e(this, "run(Runnable) problem", e);
+                    try {
+                        onErrorAction.call(e);
+                    } catch (Exception e1) {
+                        RCLog.e(this, "run(Runnable) problem " + e + " lead to another problem in onErrorAction", e1);
+                    }
+                }
+            }
+        };
+    }
+
+//========================== .subscribe() and .run() Methods ================================
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public <IN> void execute(@NonNull final IAction<IN> action) {
+        run(wrapActionWithErrorProtection(action));
+    }
+
+    @Override // IThreadType
+    @NonNull
+    public <IN> ICancellable schedule(
+            final long delay,
+            @NonNull final TimeUnit timeUnit,
+            @NonNull final IAction<IN> action) {
+        return HashedWheelTimer.getDefault().schedule(this, wrapActionWithErrorProtection(action), timeUnit.toNanos(delay), 0);
+    }
+
+    @Override // IThreadType
+    @NonNull
+    public <IN> ICancellable scheduleAtFixedRate(
+            final long initialDelay,
+            final long period,
+            @NonNull final TimeUnit timeUnit,
+            @NonNull final IAction<IN> action) {
+        if (period < 1) {
+            RCLog.throwIllegalArgumentException(this, "scheduleAtFixedRate() period=" + period + " is illegal, must be > 0");
+        }
+
+        return HashedWheelTimer.getDefault().schedule(this, wrapActionWithErrorProtection(action), timeUnit.toNanos(initialDelay), timeUnit.toNanos(period));
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public <IN> void run(
+            @NonNull final IAction<IN> action,
+            @NonNull final IActionOne<Exception> onErrorAction) {
+        run(wrapActionWithErrorProtection(action, onErrorAction));
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public <IN> void runNext(@NonNull final IAction<IN> action) {
+        runNext(wrapActionWithErrorProtection(action));
+    }
+
+    @Override // IThreadType
+    @SuppressWarnings("unchecked")
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        //TODO Analyze if this non-atomic operation is a risk for closing a ThreadType and moving all pending actions to a new thread type as we would like to do for NET_READ when the available bandwdith changes
+
+        if (mQueue instanceof IndexedBlockingDeque) {
+            final boolean moved = ((IndexedBlockingDeque<Runnable>) mQueue).moveToHead(runnable); // O(1)
+
+            RCLog.v(this, "moveToHeadOfQueue() moved=" + moved);
+
+            return moved;
+        }
+
+        if (mQueue instanceof Deque) {
+            boolean moved = false;
+
+            for (final Runnable queued : mQueue) {
+                if (isTaskFor(queued, runnable)) {
+                    moved = ((Deque<Runnable>) mQueue).removeFirstOccurrence(queued);
+                    if (moved) {
+                        ((Deque<Runnable>) mQueue).addFirst(queued);
+                    }
+                    break;
+                }
+            }
+            RCLog.v(this, "moveToHeadOfQueue() moved=" + moved);
+
+            return moved;
+        }
+
+        return false; // The UI thread does not have a visible mQueue, and some queues choose not to support re-ordering
+    }
+
+    @Override // IThreadType
+    @SuppressWarnings("unchecked")
+    public boolean removeFromQueue(@NonNull final Runnable runnable) {
+        Runnable removed = null;
+
+        if (mQueue instanceof IndexedBlockingDeque) {
+            removed = ((IndexedBlockingDeque<Runnable>) mQueue).removeTask(runnable); // O(1)
+        } else if (mQueue != null) {
+            for (final Runnable queued : mQueue) {
+                if (isTaskFor(queued, runnable)) {
+                    if (mQueue.remove(queued)) {
+                        removed = queued;
+                    }
+                    break;
+                }
+            }
+        }
+        RCLog.v(this, "removeFromQueue() removed=" + (removed != null));
+        if (removed == null) {
+            return false; // Already started, or the executor does not expose a mQueue
+        }
+        releaseRemovedTask(removed);
+
+        return true;
+    }
+
+    /**
+     * Update the metrics and free the capacity held by a task which was removed from the mQueue without running
+     *
+     * @param queued the item removed from the mQueue
+     */
+    protected final void releaseRemovedTask(@NonNull final Runnable queued) {
+        final Object task = ThreadTypeMetrics.unwrap(queued);
+
+        mMetrics.recordRemoved(queued);
+        if (task instanceof QueueCapacity.PermitRunnable) {
+            ((QueueCapacity.PermitRunnable) task).mQueueCapacity.mPermits.release();
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public <IN> void runNext(
+            @NonNull final IAction<IN> action,
+            @NonNull final IActionOne<Exception> onErrorAction) {
+    RCLog.v(this, "runNext()");
+        runNext(wrapActionWithErrorProtection(action, onErrorAction));
+    }
+
+    @Override // IThreadType
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <IN> IAltFuture<IN, IN> then(@NonNull final IAction<IN> action) {
+        return runAltFuture(new ActionAltFuture<>(this, action));
+    }
+
+    @Override // IThreadType
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <IN> IAltFuture<IN, IN> then(@NonNull final IActionOne<IN> action) {
+        return runAltFuture(new ActionOneAltFuture<IN, IN>(this, action));
+    }
+
+    @Override // IThreadType
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <IN, OUT> IAltFuture<IN, OUT> map(@NonNull final IActionOneR<IN, OUT> action) {
+        return runAltFuture(new ActionOneRAltFuture<>(this, action));
+    }
+
+    @Override // IThreadType
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <IN, OUT> IAltFuture<IN, OUT> then(@NonNull final IActionR<OUT> action) {
+        return runAltFuture(new ActionRAltFuture<>(this, action));
+    }
+
+    @Override // IThreadType
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <OUT> ISettableAltFuture<OUT> from(@NonNull final OUT value) {
+        return new SettableAltFuture<>(this, value);
+    }
+
+    @Override // IThreadType
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public <OUT> ISettableAltFuture<OUT> from() {
+        return new SettableAltFuture<>(this);
+    }
+
+    //======================= .subscribe() List Operations =========================================
+
+    @Override // IThreadType
+    @SafeVarargs
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public final <IN> List<IAltFuture<IN, IN>> then(@NonNull final IAction<IN>... actions) {
+        final List<IAltFuture<IN, IN>> altFutures = new ArrayList<>(actions.length);
+
+        RCLog.v(this, "map(List[" + actions.length + "])");
+        for (final IAction<IN> action : actions) {
+            altFutures.add(then(action));
+        }
+
+        return altFutures;
+    }
+
+    @Override // IThreadType
+    @SafeVarargs
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public final <IN, OUT> List<IAltFuture<IN, OUT>> then(@NonNull final IActionR<OUT>... actions) {
+        RCLog.v(this, "map(List[" + actions.length + "])");
+        final List<IAltFuture<IN, OUT>> altFutures = new ArrayList<>(actions.length);
+
+        for (final IActionR<OUT> action : actions) {
+            altFutures.add(then(action));
+        }
+
+        return altFutures;
+    }
+
+    @Override // IThreadType
+    @SafeVarargs
+    @NonNull
+    @CheckResult(suggest = IAltFuture.CHECK_RESULT_SUGGESTION)
+    public final <IN, OUT> List<IAltFuture<IN, OUT>> map(@NonNull final IActionOneR<IN, OUT>... actions) {
+        final List<IAltFuture<IN, OUT>> altFutures = new ArrayList<>(actions.length);
+
+        for (final IActionOneR<IN, OUT> action : actions) {
+            altFutures.add(map(action));
+        }
+
+        return altFutures;
+    }
+
+    //TODO add mapEach(IActionOneR) from list to list
+    //TODO add thenEach(IActionOne) from list
+
+//=============================== Public Utility Methods ======================================
+
+    //TODO public <A> RunnableAltFuture<A> flush()  - current thread type - wait for everything forked before this point and their side effects queued before other things to complete before next step on the specified threadtype
+
+    @Override // IThreadType
+    public <IN, OUT> void fork(@NonNull final IRunnableAltFuture<IN, OUT> runnableAltFuture) {
+        AssertUtil.assertTrue("Call runnableAltFuture().fork() instead. AbstractThreadType.fork() expected the IRunnableAltFuture should return isForked() and !isDone()", runnableAltFuture.isForked());
+        if (BuildConfig.DEBUG) {
+            if (isMistakenlyCalledDirectlyFromOutsideTheCascadeLibrary()) {
+                throw new UnsupportedOperationException("Method for internal use only. Call " + runnableAltFuture + ".fork() instead. If you are implementing your own IAltFuture, do so in " + Async.class.getPackage());
+            }
+            if (runnableAltFuture.isDone()) {
+                RCLog.v(this, "Warning: fork() called multiple times");
+            }
+        }
+
+        if (mInlineContinuationLimit > 0 && runInline(runnableAltFuture)) {
+            return;
+        }
+        run(runnableAltFuture); // Atomic state checks must be completed later in the .run() method
+    }
+
+    /**
+     * Run a chain step on the current thread if this thread already belongs to this thread type.
+     * <p>
+     * The first step runs at once. Steps it forks in turn are held by a per-thread {@link Trampoline}
+     * and run one after another as each returns, so the stack does not grow with the length of the chain.
+     * After {@link #mInlineContinuationLimit} steps the rest are queued as usual so other waiting tasks
+     * get their turn.
+     *
+     * @param runnable the chain step
+     * @return <code>false</code> if the step must be queued instead
+     */
+    @NotCallOrigin
+    private boolean runInline(@NonNull final Runnable runnable) {
+        if (executorService.isShutdown() || Async.currentThreadType() != this) {
+            return false;
+        }
+
+        final Trampoline trampoline = sTrampoline.get();
+        if (trampoline.mActive) {
+            if (trampoline.mInlineRunCount >= mInlineContinuationLimit) {
+                return false;
+            }
+            trampoline.mInlineRunCount++;
+            trampoline.mPending.addLast(runnable);
+            return true;
+        }
+
+        trampoline.mActive = true;
+        trampoline.mInlineRunCount = 1;
+        try {
+            Runnable next = runnable;
+            do {
+                mMetrics.wrap(next).run();
+            } while ((next = trampoline.mPending.pollFirst()) != null);
+        } finally {
+            trampoline.mActive = false;
+            Runnable pending;
+            while ((pending = trampoline.mPending.pollFirst()) != null) {
+                run(pending); // Only after an unexpected exception
+            }
+        }
+
+        return true;
+    }
+
+    @Override // IThreadType
+    public boolean isShutdown() {
+        return executorService.isShutdown();
+    }
+
+    @Override // IThreadType
+    @NonNull
+    public ThreadTypeMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    @Override // IThreadType
+    public void setCapacity(
+            final int capacity,
+            @NonNull final OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            RCLog.throwIllegalArgumentException(this, "setCapacity(" + capacity + ") is illegal, must be > 0");
+        }
+        RCLog.v(this, "setCapacity(" + capacity + ", " + overflowPolicy + ")");
+        mQueueCapacity = capacity == Integer.MAX_VALUE ? null : new QueueCapacity(capacity, overflowPolicy);
+    }
+
+    @Override // IThreadType
+    public void setInlineContinuationLimit(final int limit) {
+        if (limit < 0) {
+            RCLog.throwIllegalArgumentException(this, "setInlineContinuationLimit(" + limit + ") is illegal, must be >= 0");
+        }
+        RCLog.v(this, "setInlineContinuationLimit(" + limit + ")");
+        mInlineContinuationLimit = limit;
+    }
+
+    @Override // IThreadType
+    public void setFusedStepLimit(final int limit) {
+        if (limit < 0) {
+            RCLog.throwIllegalArgumentException(this, "setFusedStepLimit(" + limit + ") is illegal, must be >= 0");
+        }
+        RCLog.v(this, "setFusedStepLimit(" + limit + ")");
+        mFusedStepLimit = limit;
+    }
+
+    @Override // IThreadType
+    public int getFusedStepLimit() {
+        return mFusedStepLimit;
+    }
+
+    /**
+     * Change how many tasks may run at the same time. Tasks already running are not interrupted; the
+     * number of threads adjusts as they finish or as new tasks arrive.
+     *
+     * @param maximumConcurrency the number of threads, at least 1
+     * @return <code>true</code> if the executor supports resizing. Only a {@link ThreadPoolExecutor} does.
+     */
+    public boolean setMaximumConcurrency(final int maximumConcurrency) {
+        if (maximumConcurrency < 1) {
+            RCLog.throwIllegalArgumentException(this, "setMaximumConcurrency(" + maximumConcurrency + ") is illegal, must be > 0");
+        }
+        if (!(executorService instanceof ThreadPoolExecutor)) {
+            return false;
+        }
+
+        final ThreadPoolExecutor threadPoolExecutor = (ThreadPoolExecutor) executorService;
+        synchronized (threadPoolExecutor) {
+            // The core size may never exceed the maximum size, so the order of change depends on the direction
+            if (maximumConcurrency > threadPoolExecutor.getMaximumPoolSize()) {
+                threadPoolExecutor.setMaximumPoolSize(maximumConcurrency);
+                threadPoolExecutor.setCorePoolSize(maximumConcurrency);
+            } else {
+                threadPoolExecutor.setCorePoolSize(maximumConcurrency);
+                threadPoolExecutor.setMaximumPoolSize(maximumConcurrency);
+            }
+        }
+        RCLog.v(this, "setMaximumConcurrency(" + maximumConcurrency + ")");
+
+        return true;
+    }
+
+    @Override // IThreadType
+    @NonNull
+    public <IN> Future<Boolean> shutdown(
+            final long timeout,
+            @Nullable final IAction<IN> afterShutdownAction) {
+        if (timeout < 1) {
+            RCLog.throwIllegalArgumentException(this, "shutdown(" + timeout + ") is illegal, time must be > 0");
+        }
+        if (timeout == 0 && afterShutdownAction != null) {
+            RCLog.throwIllegalArgumentException(this, "shutdown(0) is legal, but do not supply a afterShutdownAction() as it would run immediately which is probably an error");
+        }
+        final ImmutableValue<String> origin = RCLog.originAsync()
+                .then(o -> {
+                    RCLog.i(this, "shutdown " + timeout + " mOrigin=" + o + " ThreadType");
+                    executorService.shutdown();
+                });
+        final FutureTask<Boolean> futureTask = new FutureTask<>(() -> {
+            boolean terminated = timeout == 0;
+
+            try {
+                if (!terminated) {
+                    terminated = executorService.awaitTermination(timeout, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                PlatformLog.e(AbstractThreadType.class.getSimpleName(), "Could not shutdown. afterShutdownAction will not be called: " + origin, e);
+                terminated = false;
+            } catch (Exception e) {
+                RCLog.e(this, "Could not shutdown. afterShutdownAction will not be called: " + origin, e);
+                terminated = false;
+            } finally {
+                if (terminated && afterShutdownAction != null) {
+                    try {
+                        afterShutdownAction.call();
+                    } catch (Exception e) {
+                        RCLog.e(this, "Problem during afterShutdownAction after successful workerExecutorService.shutdown: " + origin, e);
+                        terminated = false;
+                    }
+                }
+            }
+            return terminated;
+        });
+        (new Thread(futureTask, "Shutdown ThreadType " + getName())).start();
+
+        return futureTask;
+    }
+
+    @Override // IThreadType
+    @NonNull
+    public <IN> List<Runnable> shutdownNow(
+            @NonNull final String reason,
+            @Nullable final IAction<IN> actionOnDedicatedThreadAfterAlreadyStartedTasksComplete,
+            @Nullable final IAction<IN> actionOnDedicatedThreadIfTimeout,
+            long timeoutMillis) {
+        RCLog.i(this, "shutdownNow: reason=" + reason);
+        final List<Runnable> pendingActions = executorService.shutdownNow();
+
+        if (actionOnDedicatedThreadAfterAlreadyStartedTasksComplete != null) {
+            new Thread(() -> {
+                try {
+                    if (executorService.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                        actionOnDedicatedThreadAfterAlreadyStartedTasksComplete.call();
+                    } else {
+                        if (actionOnDedicatedThreadIfTimeout != null) {
+                            actionOnDedicatedThreadIfTimeout.call();
+                        } else {
+                            PlatformLog.i(AbstractThreadType.class.getSimpleName(), "Timeout in shutdownNow, reason=" + reason + " for ThreadType " + getName() + ". Consider providing a non-null actionOnDedicatedThreadIfTimeout");
+                        }
+                    }
+                } catch (Exception e) {
+                    PlatformLog.e(AbstractThreadType.class.getSimpleName(), "Problem in awaitTermination for ServiceExecutor, reason=" + reason + ", ThreadType " + getName(), e);
+                }
+            }, "shutdownNow" + reason)
+                    .start();
+        }
+
+        return pendingActions;
+    }
+
+    @Override // INamed
+    @NonNull
+    public String getName() {
+        return name;
+    }
+
+    @Override // Object
+    public String toString() {
+        return getName();
+    }
+
+    /**
+     * Chain steps waiting to run inline on one thread. Accessed only from that thread.
+     */
+    private static final class Trampoline {
+        final ArrayDeque<Runnable> mPending = new ArrayDeque<>();
+        boolean mActive = false;
+        int mInlineRunCount = 0;
+    }
+}
@@ -0,0 +1,422 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.i.IPrioritized;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link BlockingQueue} with a fixed number of FIFO priority levels. Level <code>0</code> is the most urgent.
+ * <p>
+ * Items which implement {@link IPrioritized} go to the level they report. All others, and those reporting
+ * {@link IPrioritized#PRIORITY_UNSET}, go to the default level.
+ * <p>
+ * Aging keeps low levels from starving: an item waiting at level <code>n</code> is treated as one level more
+ * urgent for each <code>agingMillis</code> it has waited. The heads of each level are compared by
+ * <code>enqueue time + n * agingMillis</code>, so no item is ever passed over by an item which arrives more than
+ * <code>n * agingMillis</code> after it. Each {@link #poll()} compares only the head of each level.
+ *
+ * @param <E>
+ */
+public class AgingPriorityQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private final ArrayDeque<Node<E>>[] mLevels;
+    private final int mDefaultPriority;
+    private final long mAgingNanos;
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private int mCount = 0;
+
+    /**
+     * Create a new mQueue
+     *
+     * @param numberOfLevels  the number of priority levels, at least 1
+     * @param defaultPriority the level used for items which do not have a priority
+     * @param agingMillis     the time after which a waiting item is treated as one level more urgent
+     */
+    public AgingPriorityQueue(
+            final int numberOfLevels,
+            final int defaultPriority,
+            final long agingMillis) {
+        if (numberOfLevels < 1 || defaultPriority < 0 || defaultPriority >= numberOfLevels || agingMillis < 1) {
+            throw new IllegalArgumentException("numberOfLevels=" + numberOfLevels + " defaultPriority=" + defaultPriority + " agingMillis=" + agingMillis);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"}) // A generic array can only be created raw
+        final ArrayDeque<Node<E>>[] levels = (ArrayDeque<Node<E>>[]) new ArrayDeque[numberOfLevels];
+        for (int i = 0; i < numberOfLevels; i++) {
+            levels[i] = new ArrayDeque<>();
+        }
+        mLevels = levels;
+        mDefaultPriority = defaultPriority;
+        mAgingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+    }
+
+    public int getNumberOfLevels() {
+        return mLevels.length;
+    }
+
+    public int getDefaultPriority() {
+        return mDefaultPriority;
+    }
+
+    /**
+     * @param e the item
+     * @return the level at which this item will be queued
+     */
+    public int priorityOf(@NonNull final Object e) {
+        if (e instanceof IPrioritized) {
+            return clamp(((IPrioritized) e).getPriority());
+        }
+
+        return mDefaultPriority;
+    }
+
+    private int clamp(final int priority) {
+        if (priority == IPrioritized.PRIORITY_UNSET) {
+            return mDefaultPriority;
+        }
+
+        return Math.max(0, Math.min(priority, mLevels.length - 1));
+    }
+
+    /**
+     * Add an item at the specified priority
+     *
+     * @param priority the priority level, or {@link IPrioritized#PRIORITY_UNSET} for the default
+     * @param e        the item
+     * @param first    <code>true</code> to run before other items already waiting at this level
+     */
+    public void offer(
+            final int priority,
+            @NonNull final E e,
+            final boolean first) {
+        final ArrayDeque<Node<E>> level = mLevels[clamp(priority)];
+
+        mLock.lock();
+        try {
+            final long now = System.nanoTime();
+
+            if (first) {
+                final Node<E> head = level.peekFirst();
+                // Jumping the line also takes the age of the line, so the level does not starve longer than it would have
+                level.addFirst(new Node<>(e, head != null && head.mEnqueuedNanos - now < 0 ? head.mEnqueuedNanos : now));
+            } else {
+                level.addLast(new Node<>(e, now));
+            }
+            mCount++;
+            mNotEmpty.signal();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Move an item already in this mQueue to the front of its priority level
+     *
+     * @param o the item
+     * @return <code>true</code> if the item was found and moved
+     */
+    public boolean moveToHead(@NonNull final Object o) {
+        mLock.lock();
+        try {
+            for (final ArrayDeque<Node<E>> level : mLevels) {
+                final Iterator<Node<E>> iterator = level.iterator();
+
+                while (iterator.hasNext()) {
+                    final Node<E> node = iterator.next();
+
+                    if (AbstractThreadType.isTaskFor(node.mItem, o)) {
+                        iterator.remove();
+                        final Node<E> head = level.peekFirst();
+                        if (head != null && head.mEnqueuedNanos - node.mEnqueuedNanos < 0) {
+                            node.mEnqueuedNanos = head.mEnqueuedNanos;
+                        }
+                        level.addFirst(node);
+                        return true;
+                    }
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+
+        return false;
+    }
+
+    /**
+     * Call only while holding {@link #mLock}
+     *
+     * @return the index of the level with the most urgent head item after aging, or <code>-1</code> if empty
+     */
+    private int selectLevel() {
+        if (mCount == 0) {
+            return -1;
+        }
+
+        int bestLevel = -1;
+        long bestDeadline = 0;
+
+        for (int i = 0; i < mLevels.length; i++) {
+            final Node<E> head = mLevels[i].peekFirst();
+
+            if (head != null) {
+                final long deadline = head.mEnqueuedNanos + i * mAgingNanos;
+
+                if (bestLevel < 0 || deadline - bestDeadline < 0) {
+                    bestLevel = i;
+                    bestDeadline = deadline;
+                }
+            }
+        }
+
+        return bestLevel;
+    }
+
+    /**
+     * Call only while holding {@link #mLock}
+     *
+     * @return the most urgent item after aging, or <code>null</code> if empty
+     */
+    @Nullable
+    private E dequeue() {
+        final int level = selectLevel();
+
+        if (level < 0) {
+            return null;
+        }
+        mCount--;
+
+        return mLevels[level].pollFirst().mItem;
+    }
+
+    @Override // BlockingQueue
+    public boolean offer(@NonNull final E e) {
+        offer(priorityOf(e), e, false);
+
+        return true;
+    }
+
+    @Override // BlockingQueue
+    public void put(@NonNull final E e) throws InterruptedException {
+        offer(e);
+    }
+
+    @Override // BlockingQueue
+    public boolean offer(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        return offer(e);
+    }
+
+    @Nullable
+    @Override // Queue
+    public E poll() {
+        mLock.lock();
+        try {
+            return dequeue();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @NonNull
+    @Override // BlockingQueue
+    public E take() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            E e;
+
+            while ((e = dequeue()) == null) {
+                mNotEmpty.await();
+            }
+
+            return e;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Nullable
+    @Override // BlockingQueue
+    public E poll(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        mLock.lockInterruptibly();
+        try {
+            E e;
+
+            while ((e = dequeue()) == null && nanos > 0) {
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+
+            return e;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * The item which would be returned by {@link #poll()} if it were called now
+     *
+     * @return the most urgent item, or <code>null</code> if empty
+     */
+    @Nullable
+    @Override // Queue
+    public E peek() {
+        mLock.lock();
+        try {
+            final int level = selectLevel();
+
+            return level < 0 ? null : mLevels[level].peekFirst().mItem;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // Collection
+    public boolean remove(@Nullable final Object o) {
+        if (o == null) {
+            return false;
+        }
+
+        mLock.lock();
+        try {
+            for (final ArrayDeque<Node<E>> level : mLevels) {
+                final Iterator<Node<E>> iterator = level.iterator();
+
+                while (iterator.hasNext()) {
+                    if (iterator.next().mItem.equals(o)) {
+                        iterator.remove();
+                        mCount--;
+                        return true;
+                    }
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+
+        return false;
+    }
+
+    @Override // Collection
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override // BlockingQueue
+    public int drainTo(@NonNull final Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override // BlockingQueue
+    public int drainTo(
+            @NonNull final Collection<? super E> c,
+            final int maxElements) {
+        int n = 0;
+
+        mLock.lock();
+        try {
+            for (final ArrayDeque<Node<E>> level : mLevels) {
+                Node<E> node;
+
+                while (n < maxElements && (node = level.pollFirst()) != null) {
+                    c.add(node.mItem);
+                    mCount--;
+                    n++;
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+
+        return n;
+    }
+
+    /**
+     * A snapshot of all items at the time of this call, most urgent level first, without aging
+     *
+     * @return iterator
+     */
+    @NonNull
+    @Override // Collection
+    public Iterator<E> iterator() {
+        final List<E> snapshot;
+
+        mLock.lock();
+        try {
+            snapshot = new ArrayList<>(mCount);
+            for (final ArrayDeque<Node<E>> level : mLevels) {
+                for (final Node<E> node : level) {
+                    snapshot.add(node.mItem);
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+        final Iterator<E> iterator = snapshot.iterator();
+
+        return new Iterator<E>() {
+            private E mLast;
+
+            @Override // Iterator
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override // Iterator
+            public E next() {
+                return mLast = iterator.next();
+            }
+
+            @Override // Iterator
+            public void remove() {
+                if (mLast == null) {
+                    throw new IllegalStateException();
+                }
+                AgingPriorityQueue.this.remove(mLast);
+                mLast = null;
+            }
+        };
+    }
+
+    private static final class Node<E> {
+        @NonNull
+        final E mItem;
+        long mEnqueuedNanos;
+
+        Node(@NonNull final E item, final long enqueuedNanos) {
+            mItem = item;
+            mEnqueuedNanos = enqueuedNanos;
+        }
+    }
+}
@@ -6,12 +6,12 @@ This is open source for the common good. Please contribute improvements by pull
 package com.futurice.cascade.util;
 
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 
-import com.futurice.cascade.Async;
+import com.futurice.cascade.functional.AbstractAltFuture;
 import com.futurice.cascade.i.IAltFuture;
 import com.futurice.cascade.i.IGettable;
 
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -34,8 +34,7 @@ import static com.futurice.cascade.Async.currentThreadType;
  * @param <OUT>
  */
 public class AltFutureFuture<IN, OUT> extends Origin implements Future<OUT>, IGettable<OUT> {
-    private static final long DEFAULT_GET_TIMEOUT = 5000;
-    private static final long CHECK_INTERVAL = 50; // This is a fallback in case you for example have an error and fail to altFuture.notifyAll() when finished
+    private static final long CHECK_INTERVAL = 50; // Only for IAltFuture implementations which are not an AbstractAltFuture and do not notify when finished
     private final IAltFuture<IN, OUT> altFuture;
     private final Object mutex = new Object();
 
@@ -68,16 +67,29 @@ public class AltFutureFuture<IN, OUT> extends Origin implements Future<OUT>, IGe
         return altFuture.isDone();
     }
 
+    /**
+     * Block the current thread until the associated IAltFuture completes, errors out or is cancelled
+     * <p>
+     * {@link IGettable#get()} can not throw checked exceptions, so an error state or an interrupt is
+     * thrown as an {@link IllegalStateException} with the cause attached. Use {@link #get(long, TimeUnit)}
+     * for an {@link ExecutionException}.
+     *
+     * @return the value
+     * @throws CancellationException if the IAltFuture was cancelled
+     */
     @Override // Future
     @NonNull
     public OUT get() {
         try {
-            return get(DEFAULT_GET_TIMEOUT, TimeUnit.MILLISECONDS);
-        } catch (Exception e) {
-            RCLog.throwRuntimeException(this, "Timeout waiting for RunnableAltFuture to complete. Did you remember to .fork()?, new RuntimeException", e);
+            return get(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + altFuture, e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("IAltFuture ended in an error state: " + altFuture, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Waiting forever should not time out", e);
         }
-
-        return null; //FIXME null return
     }
 
     /**
@@ -91,49 +103,73 @@ public class AltFutureFuture<IN, OUT> extends Origin implements Future<OUT>, IGe
     }
 
     /**
-     * Block the current thread until the associated IAltFuture completes or errors out
+     * Block the current thread until the associated IAltFuture completes, errors out or is cancelled
+     * <p>
+     * An {@link AbstractAltFuture} wakes this thread directly when its state changes. Other {@link IAltFuture}
+     * implementations are checked every {@link #CHECK_INTERVAL} milliseconds.
      *
      * @param timeout max time to wait for the RunnableAltFuture to complete
      * @param unit    timeout units
-     * @return null if there was an exception during execution
+     * @return the value
      * @throws InterruptedException
-     * @throws ExecutionException
-     * @throws TimeoutException
+     * @throws ExecutionException    if the IAltFuture ended in an error state
+     * @throws CancellationException if the IAltFuture was cancelled
+     * @throws TimeoutException      if the IAltFuture was not done before the timeout
      */
     @Override // Future
-    @Nullable
+    @NonNull
     public OUT get(
             final long timeout,
             @NonNull final TimeUnit unit)
             throws InterruptedException, ExecutionException, TimeoutException {
         if (!isDone()) {
             assertThreadSafe();
+            if (!awaitDone(timeout, unit)) {
+                throw new TimeoutException("Waited " + unit.toMillis(timeout) + "ms for RunnableAltFuture to end: " + altFuture);
+            }
+        }
+
+        if (altFuture instanceof AbstractAltFuture) {
+            final AbstractAltFuture<IN, OUT> abstractAltFuture = (AbstractAltFuture<IN, OUT>) altFuture;
+            final IAltFuture.StateCancelled stateCancelled = abstractAltFuture.getStateCancelled();
+            if (stateCancelled != null) {
+                throw new CancellationException(stateCancelled.getReason());
+            }
+            final IAltFuture.StateError stateError = abstractAltFuture.getStateError();
+            if (stateError != null) {
+                throw new ExecutionException(stateError.getException());
+            }
+        } else if (altFuture.isCancelled()) {
+            throw new CancellationException("IAltFuture was cancelled: " + altFuture);
         }
 
-        final long t = System.currentTimeMillis();
-        final long endTime = t + unit.toMillis(timeout);
+        return altFuture.get();
+    }
 
-        if (!isDone()) {
-            final IAltFuture<OUT, OUT> iaf = altFuture.then(() -> {
-                // Attach this to speed up and notify to continue the Future when the RunnableAltFuture finishes
-                // For speed, we don't normally notify after RunnableAltFuture end
-                synchronized (mutex) {
-                    mutex.notifyAll();
-                }
-            });
+    private boolean awaitDone(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        if (altFuture instanceof AbstractAltFuture) {
+            return ((AbstractAltFuture<IN, OUT>) altFuture).blockUntilDone(timeout, unit);
         }
+
+        final long endTime = System.nanoTime() + unit.toNanos(timeout);
+        final IAltFuture<OUT, OUT> iaf = altFuture.then(() -> {
+            // Attach this to speed up and notify to continue the Future when the RunnableAltFuture finishes
+            synchronized (mutex) {
+                mutex.notifyAll();
+            }
+        });
         while (!isDone()) {
-            if (System.currentTimeMillis() >= endTime) {
-                RCLog.throwTimeoutException(this, "Waited " + (System.currentTimeMillis() - t) + "ms for RunnableAltFuture to end: " + altFuture);
+            final long remaining = TimeUnit.NANOSECONDS.toMillis(endTime - System.nanoTime());
+            if (remaining <= 0) {
+                return false;
             }
             synchronized (mutex) {
-                final long t2 = Math.min(CHECK_INTERVAL, endTime - System.currentTimeMillis());
-                if (t2 > 0) {
-                    mutex.wait(t2);
-                }
+                mutex.wait(Math.min(CHECK_INTERVAL, remaining));
             }
         }
 
-        return altFuture.safeGet();
+        return true;
     }
 }
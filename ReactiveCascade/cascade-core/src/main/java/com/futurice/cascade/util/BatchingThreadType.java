@@ -0,0 +1,373 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.i.IAction;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An {@link IThreadType} for many tiny tasks, such as short <code>.then()</code> and <code>.map()</code> chain
+ * steps, which amortizes the cost of handing each task between threads
+ * <p>
+ * {@link DefaultThreadType} submits every task separately to a {@link java.util.concurrent.ThreadPoolExecutor},
+ * which allocates a {@link java.util.concurrent.FutureTask} and takes the mQueue lock for each. Here each
+ * thread runs a loop which takes up to <code>maxBatchSize</code> tasks per lock. Tasks submitted from within
+ * a running batch collect in a list on the submitting thread and are added to the shared mQueue together,
+ * under one lock, when that batch finishes. No per-task wrapper is allocated, so {@link #getMetrics()} records
+ * run times and counts but not wait times or mQueue depth.
+ * <p>
+ * A task submitted from within a batch therefore does not start until the rest of the batch has run. Long
+ * running tasks delay the others in their batch, so use this only for short non-blocking work.
+ */
+@NotCallOrigin
+public class BatchingThreadType extends AbstractThreadType {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 16;
+    private static final AtomicInteger sThreadNumber = new AtomicInteger();
+    @NonNull
+    private final TaskQueue mTaskQueue;
+    private final int mMaxBatchSize;
+
+    /**
+     * Create a new batching thread type with its own threads
+     *
+     * @param name            of the thread type, for debugging
+     * @param numberOfThreads the number of threads
+     * @param maxBatchSize    the most tasks each thread takes from the shared mQueue at one time, for example
+     *                        {@link #DEFAULT_MAX_BATCH_SIZE}
+     */
+    public BatchingThreadType(
+            @NonNull final String name,
+            final int numberOfThreads,
+            final int maxBatchSize) {
+        this(name, numberOfThreads, maxBatchSize, new TaskQueue(), new ImmutableValue<>());
+    }
+
+    private BatchingThreadType(
+            @NonNull final String name,
+            final int numberOfThreads,
+            final int maxBatchSize,
+            @NonNull final TaskQueue taskQueue,
+            @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
+        super(name, new ThreadPoolExecutor(numberOfThreads, numberOfThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> new BatchingThread(threadTypeImmutableValue.get(), runnable, name + "Thread" + sThreadNumber.getAndIncrement())) {
+            @Override // ExecutorService
+            public void shutdown() {
+                super.shutdown();
+                taskQueue.wakeAll(); // Idle threads finish once the mQueue is empty
+            }
+        }, null);
+
+        if (maxBatchSize < 1) {
+            RCLog.throwIllegalArgumentException(this, "maxBatchSize=" + maxBatchSize + " is illegal, must be > 0");
+        }
+        this.mTaskQueue = taskQueue;
+        this.mMaxBatchSize = maxBatchSize;
+        threadTypeImmutableValue.set(this);
+        for (int i = 0; i < numberOfThreads; i++) {
+            executorService.execute(this::runBatches);
+        }
+    }
+
+    /**
+     * The loop each thread runs until shutdown. If it ends any other way it is started again, so the number
+     * of threads taking batches stays the same.
+     */
+    @NotCallOrigin
+    private void runBatches() {
+        final BatchingThread thread = (BatchingThread) Thread.currentThread();
+        final Runnable[] batch = new Runnable[mMaxBatchSize];
+        boolean restart = true;
+
+        try {
+            int n;
+
+            while ((n = mTaskQueue.take(batch, executorService)) > 0) {
+                thread.mBatchOwner = this;
+                try {
+                    for (int i = 0; i < n; i++) {
+                        final Runnable runnable = batch[i];
+
+                        batch[i] = null;
+                        runTask(runnable);
+                    }
+                } finally {
+                    thread.mBatchOwner = null;
+                    if (!thread.mProducerBatch.isEmpty()) {
+                        mTaskQueue.addAll(thread.mProducerBatch);
+                        thread.mProducerBatch.clear();
+                    }
+                }
+            }
+            restart = false;
+        } catch (InterruptedException e) {
+            restart = false;
+            RCLog.v(this, "Batching thread interrupted, probably by shutdownNow()");
+        } finally {
+            if (restart && !executorService.isShutdown()) {
+                executorService.execute(this::runBatches);
+            }
+        }
+    }
+
+    /**
+     * Run one task of a batch. Tasks are queued without a {@link ThreadTypeMetrics#wrap(Runnable)} wrapper,
+     * so when metrics are enabled the run time is recorded here.
+     *
+     * @param runnable the task
+     */
+    @NotCallOrigin
+    private void runTask(@NonNull final Runnable runnable) {
+        final boolean measured = mMetrics.isEnabled();
+        final long startNanos = measured ? System.nanoTime() : 0;
+        boolean failed = true;
+
+        try {
+            runnable.run();
+            failed = false;
+        } catch (Throwable t) {
+            RCLog.e(this, "Problem running batched task " + runnable, t); // An Error in one task must not lose the rest of the batch
+        } finally {
+            if (measured) {
+                mMetrics.recordRun(startNanos, failed);
+            }
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void run(@NonNull final Runnable runnable) {
+        if (executorService.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted == null) {
+            return;
+        }
+
+        final Thread thread = Thread.currentThread();
+        if (thread instanceof BatchingThread && ((BatchingThread) thread).mBatchOwner == this) {
+            ((BatchingThread) thread).mProducerBatch.add(admitted); // Added to the shared mQueue when the current batch ends
+        } else {
+            mTaskQueue.add(admitted, false);
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void runNext(@NonNull final Runnable runnable) {
+        if (executorService.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted != null) {
+            mTaskQueue.add(admitted, true);
+        }
+    }
+
+    @Override // IThreadType
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        return mTaskQueue.moveToHead(runnable);
+    }
+
+    @Override // IThreadType
+    public boolean removeFromQueue(@NonNull final Runnable runnable) {
+        final Runnable removed = mTaskQueue.remove(runnable);
+
+        if (removed == null) {
+            return false; // Already taken into a batch
+        }
+        releaseRemovedTask(removed);
+
+        return true;
+    }
+
+    @Override // IThreadType
+    public boolean isInOrderExecutor() {
+        return false;
+    }
+
+    @Override // IThreadType
+    @NonNull
+    public <IN> List<Runnable> shutdownNow(
+            @NonNull final String reason,
+            @Nullable final IAction<IN> actionOnDedicatedThreadAfterAlreadyStartedTasksComplete,
+            @Nullable final IAction<IN> actionOnDedicatedThreadIfTimeout,
+            final long timeoutMillis) {
+        final List<Runnable> pendingActions = new ArrayList<>(super.shutdownNow(reason, actionOnDedicatedThreadAfterAlreadyStartedTasksComplete, actionOnDedicatedThreadIfTimeout, timeoutMillis));
+
+        mTaskQueue.drainTo(pendingActions);
+
+        return pendingActions;
+    }
+
+    /**
+     * A thread which collects the tasks it submits while running a batch
+     */
+    @NotCallOrigin
+    static final class BatchingThread extends TypedThread {
+        final ArrayList<Runnable> mProducerBatch = new ArrayList<>();
+        @Nullable
+        BatchingThreadType mBatchOwner; // Set only while this thread is running a batch for that thread type
+
+        BatchingThread(
+                @NonNull final IThreadType threadType,
+                @NonNull final Runnable runnable,
+                @NonNull final String threadName) {
+            super(threadType, runnable, threadName);
+        }
+    }
+
+    /**
+     * The shared mQueue. Every operation takes the lock once, however many tasks it moves.
+     */
+    private static final class TaskQueue {
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+        private final ReentrantLock mLock = new ReentrantLock();
+        private final Condition mNotEmpty = mLock.newCondition();
+        private int mWaitingCount = 0;
+
+        void add(
+                @NonNull final Runnable runnable,
+                final boolean first) {
+            mLock.lock();
+            try {
+                if (first) {
+                    mTasks.addFirst(runnable);
+                } else {
+                    mTasks.addLast(runnable);
+                }
+                if (mWaitingCount > 0) {
+                    mNotEmpty.signal();
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        void addAll(@NonNull final List<Runnable> runnables) {
+            mLock.lock();
+            try {
+                mTasks.addAll(runnables);
+                for (int i = Math.min(mWaitingCount, runnables.size()); i > 0; i--) {
+                    mNotEmpty.signal();
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        /**
+         * Wait for at least one task, then take as many as are waiting up to the size of the batch
+         *
+         * @param batch           filled from index 0
+         * @param executorService when this is shut down and the mQueue is empty, return 0
+         * @return the number of tasks taken, or 0 at shutdown
+         * @throws InterruptedException
+         */
+        int take(
+                @NonNull final Runnable[] batch,
+                @NonNull final ExecutorService executorService) throws InterruptedException {
+            mLock.lockInterruptibly();
+            try {
+                while (mTasks.isEmpty()) {
+                    if (executorService.isShutdown()) {
+                        return 0;
+                    }
+                    mWaitingCount++;
+                    try {
+                        mNotEmpty.await();
+                    } finally {
+                        mWaitingCount--;
+                    }
+                }
+                int n = 0;
+                Runnable runnable;
+                while (n < batch.length && (runnable = mTasks.pollFirst()) != null) {
+                    batch[n++] = runnable;
+                }
+                if (!mTasks.isEmpty() && mWaitingCount > 0) {
+                    mNotEmpty.signal(); // There is enough work for another thread too
+                }
+
+                return n;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        boolean moveToHead(@NonNull final Runnable runnable) {
+            mLock.lock();
+            try {
+                for (final Runnable queued : mTasks) {
+                    if (AbstractThreadType.isTaskFor(queued, runnable)) {
+                        mTasks.removeFirstOccurrence(queued);
+                        mTasks.addFirst(queued);
+                        return true;
+                    }
+                }
+
+                return false;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Nullable
+        Runnable remove(@NonNull final Runnable runnable) {
+            mLock.lock();
+            try {
+                for (final Runnable queued : mTasks) {
+                    if (AbstractThreadType.isTaskFor(queued, runnable)) {
+                        mTasks.removeFirstOccurrence(queued);
+                        return queued;
+                    }
+                }
+
+                return null;
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        void drainTo(@NonNull final List<Runnable> runnables) {
+            mLock.lock();
+            try {
+                runnables.addAll(mTasks);
+                mTasks.clear();
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        void wakeAll() {
+            mLock.lock();
+            try {
+                mNotEmpty.signalAll();
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+}
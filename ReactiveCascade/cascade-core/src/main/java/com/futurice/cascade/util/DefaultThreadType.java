@@ -53,7 +53,11 @@ public class DefaultThreadType extends AbstractThreadType {
             return;
         }
 
-        executorService.submit(runnable);
+        final Runnable admitted = admit(runnable);
+
+        if (admitted != null) {
+            executorService.execute(mMetrics.wrap(admitted)); // Not submit(), a FutureTask would hide the task from the mQueue
+        }
     }
 
     @Override // IThreadType
@@ -70,12 +74,17 @@ public class DefaultThreadType extends AbstractThreadType {
             return;
         }
 
+        final Runnable admitted = admit(runnable);
+        if (admitted == null) {
+            return;
+        }
+
         // Out of order execution is permitted and desirable to finish functional chains we have started before clouding memory and execution queues by starting more
         if (isInOrderExecutor()) {
             RCLog.v(this, "WARNING: runNext() on single threaded IThreadType. This will be run FIFO only after previously queued tasks");
-            mQueue.add(runnable);
+            mQueue.add(mMetrics.wrap(admitted));
         } else {
-            ((BlockingDeque) mQueue).addFirst(runnable);
+            ((BlockingDeque) mQueue).addFirst(mMetrics.wrap(admitted));
         }
         if (!wakeUpIsPending && ++n != mQueue.size()) {
             // The mQueue changed during submit- just be sure something is submitted to wake the executor right now to pull from the mQueue
@@ -0,0 +1,347 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link BlockingQueue} which, if empty, pulls information from a second lower absolute priority
+ * {@link java.util.concurrent.BlockingQueue}.
+ * <p>
+ * This is designed for allowing one of the {@link com.futurice.cascade.Async#WORKER} threads to
+ * operate as an in-order single threaded executor which reverts to help with the common
+ * {@link com.futurice.cascade.AsyncBuilder#getWorkerQueue()} tasks when no in-order tasks are pending.
+ * <p>
+ * Note clearly there is an upside and downside to this design vs making your own {@link com.futurice.cascade.i.IThreadType}.
+ * The upside is performance and lower peak memory usage. We have fewer threads contending for background work so less resources
+ * and less and faster mContext switches (mContext switches tend to cost marginally more as thread count
+ * increases). The downside is delays fom other background tasks unrelated to this may slow the start
+ * of execution. A very slow task pulled from the {@link com.futurice.cascade.Async#WORKER}
+ * mQueue and perhaps unrelated to the current focus of your attention will, once started, block the
+ * next {@link DoubleQueue} item from
+ * starting until it completes.
+ * <p>
+ * In practice this performs well for most uses since everything is best effort anyway and the single
+ * thread has absolute priority. If starting as soon as possible is absolutely critical, use a dedicated {@link com.futurice.cascade.i.IThreadType}.
+ * <p>
+ * Both levels share a single lock {@link Condition}. A waiting {@link #take()} wakes as soon as an item is
+ * added to this mQueue. If the low priority mQueue is a {@link SignallingBlockingDeque} or
+ * {@link IndexedBlockingDeque} it also wakes as
+ * soon as an item is added there. Any other low priority mQueue is checked at {@link #TAKE_POLL_INTERVAL}.
+ * <p>
+ * {@link #size()}, {@link #iterator()} and {@link #drainTo(Collection)} see only the high priority items
+ * held in this mQueue.
+ *
+ * @param <E>
+ */
+public class DoubleQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+    private static final long TAKE_POLL_INTERVAL = 50; //ms polling a low priority mQueue which can not signal
+    @NonNull
+    final BlockingQueue<E> lowPriorityQueue;
+    private final ArrayDeque<E> mHighPriorityQueue = new ArrayDeque<>();
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final boolean mLowPriorityQueueSignals;
+    private volatile int mWaitingCount = 0; // Written only while holding mLock
+
+    public DoubleQueue(@NonNull final BlockingQueue<E> lowPriorityQueue) {
+        super();
+
+        this.lowPriorityQueue = lowPriorityQueue;
+        if (lowPriorityQueue instanceof IndexedBlockingDeque) {
+            ((IndexedBlockingDeque<E>) lowPriorityQueue).addListener(this::signalNotEmpty);
+            this.mLowPriorityQueueSignals = true;
+        } else if (lowPriorityQueue instanceof SignallingBlockingDeque) {
+            ((SignallingBlockingDeque<E>) lowPriorityQueue).addListener(this::signalNotEmpty);
+            this.mLowPriorityQueueSignals = true;
+        } else {
+            this.mLowPriorityQueueSignals = false;
+        }
+    }
+
+    /**
+     * Wake a thread waiting in {@link #take()} or {@link #poll(long, TimeUnit)}.
+     * <p>
+     * This is nearly free when no thread is waiting, which is the common case when the low priority mQueue
+     * is busy.
+     */
+    private void signalNotEmpty() {
+        if (mWaitingCount == 0) {
+            return;
+        }
+
+        mLock.lock();
+        try {
+            mNotEmpty.signal();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Call only while holding {@link #mLock}
+     *
+     * @return the next item, high priority first, or <code>null</code> if both are empty
+     */
+    @Nullable
+    private E pollBoth() {
+        final E e = mHighPriorityQueue.poll();
+
+        if (e != null) {
+            return e;
+        }
+
+        return lowPriorityQueue.poll();
+    }
+
+    @Override // BlockingQueue
+    public boolean offer(@NonNull final E e) {
+        mLock.lock();
+        try {
+            mHighPriorityQueue.addLast(e);
+            mNotEmpty.signal();
+        } finally {
+            mLock.unlock();
+        }
+
+        return true;
+    }
+
+    @Override // BlockingQueue
+    public void put(@NonNull final E e) throws InterruptedException {
+        offer(e);
+    }
+
+    @Override // BlockingQueue
+    public boolean offer(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        return offer(e);
+    }
+
+    @Nullable
+    @Override // Queue
+    public E peek() {
+        E e;
+
+        mLock.lock();
+        try {
+            e = mHighPriorityQueue.peek();
+        } finally {
+            mLock.unlock();
+        }
+        if (e == null) {
+            e = lowPriorityQueue.peek();
+        }
+
+        return e;
+    }
+
+    @Nullable
+    @Override // Queue
+    public E poll() {
+        mLock.lock();
+        try {
+            return pollBoth();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Take from this mQueue or, if empty, the low priority mQueue. The calling thread sleeps until there
+     * is work in either.
+     *
+     * @return the next item
+     * @throws InterruptedException
+     */
+    @NonNull
+    @Override // BlockingQueue
+    public E take() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            E e;
+
+            while ((e = mHighPriorityQueue.poll()) == null) {
+                mWaitingCount++; // Before checking the low priority mQueue so that no signal can be missed
+                try {
+                    e = lowPriorityQueue.poll();
+                    if (e != null) {
+                        break;
+                    }
+                    if (mLowPriorityQueueSignals) {
+                        mNotEmpty.await();
+                    } else {
+                        mNotEmpty.await(TAKE_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    }
+                } finally {
+                    mWaitingCount--;
+                }
+            }
+
+            return e;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Nullable
+    @Override // BlockingQueue
+    public E poll(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        mLock.lockInterruptibly();
+        try {
+            E e;
+
+            while ((e = mHighPriorityQueue.poll()) == null) {
+                mWaitingCount++;
+                try {
+                    e = lowPriorityQueue.poll();
+                    if (e != null || nanos <= 0) {
+                        break;
+                    }
+                    if (mLowPriorityQueueSignals) {
+                        nanos = mNotEmpty.awaitNanos(nanos);
+                    } else {
+                        final long waitNanos = Math.min(nanos, TimeUnit.MILLISECONDS.toNanos(TAKE_POLL_INTERVAL));
+                        nanos -= waitNanos - mNotEmpty.awaitNanos(waitNanos);
+                    }
+                } finally {
+                    mWaitingCount--;
+                }
+            }
+
+            return e;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // Collection
+    public boolean remove(@Nullable final Object o) {
+        boolean removed;
+
+        mLock.lock();
+        try {
+            removed = mHighPriorityQueue.remove(o);
+        } finally {
+            mLock.unlock();
+        }
+
+        return removed || lowPriorityQueue.remove(o);
+    }
+
+    @Override // Collection
+    public boolean contains(@Nullable final Object o) {
+        mLock.lock();
+        try {
+            return mHighPriorityQueue.contains(o);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // Collection
+    public int size() {
+        mLock.lock();
+        try {
+            return mHighPriorityQueue.size();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override // BlockingQueue
+    public int drainTo(@NonNull final Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override // BlockingQueue
+    public int drainTo(
+            @NonNull final Collection<? super E> c,
+            final int maxElements) {
+        int n = 0;
+
+        mLock.lock();
+        try {
+            E e;
+
+            while (n < maxElements && (e = mHighPriorityQueue.poll()) != null) {
+                c.add(e);
+                n++;
+            }
+        } finally {
+            mLock.unlock();
+        }
+
+        return n;
+    }
+
+    /**
+     * A snapshot of the high priority items at the time of this call
+     *
+     * @return iterator
+     */
+    @NonNull
+    @Override // Collection
+    @SuppressWarnings("unchecked")
+    public Iterator<E> iterator() {
+        final Object[] snapshot;
+
+        mLock.lock();
+        try {
+            snapshot = mHighPriorityQueue.toArray();
+        } finally {
+            mLock.unlock();
+        }
+
+        return new Iterator<E>() {
+            private int mIndex = 0;
+
+            @Override // Iterator
+            public boolean hasNext() {
+                return mIndex < snapshot.length;
+            }
+
+            @Override // Iterator
+            public E next() {
+                if (mIndex >= snapshot.length) {
+                    throw new NoSuchElementException();
+                }
+
+                return (E) snapshot[mIndex++];
+            }
+
+            @Override // Iterator
+            public void remove() {
+                if (mIndex == 0) {
+                    throw new IllegalStateException();
+                }
+                DoubleQueue.this.remove(snapshot[mIndex - 1]);
+            }
+        };
+    }
+}
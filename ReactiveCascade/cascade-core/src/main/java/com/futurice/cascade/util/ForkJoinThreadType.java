@@ -0,0 +1,154 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.ITypedThread;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A work-stealing implementation of {@link com.futurice.cascade.i.IThreadType} backed by a {@link ForkJoinPool}
+ * <p>
+ * Each thread has its own double-ended work queue. Idle threads steal from the tail of busy threads'
+ * queues, so there is no single lock shared by all cores as with the default {@link DefaultThreadType}
+ * over one {@link java.util.concurrent.LinkedBlockingDeque}. This scales better for heavy
+ * {@link com.futurice.cascade.Async#WORKER} fan-out on devices with many cores.
+ * <p>
+ * {@link #run(Runnable)} submits to the pool's shared submission queues. {@link #runNext(Runnable)} called
+ * from one of this pool's own threads pushes to the local LIFO end of that thread's deque, so a chain
+ * which has already started continues depth-first on a warm cache. Called from any other thread it is
+ * the same as {@link #run(Runnable)}.
+ * <p>
+ * Tasks can not be re-ordered once submitted, so {@link #moveToHeadOfQueue(Runnable)} always returns
+ * <code>false</code>.
+ * <p>
+ * Select this for {@link com.futurice.cascade.Async#WORKER} with
+ * {@link com.futurice.cascade.AsyncBuilder#setUseForkJoinWorker(boolean)}. Requires API 21 or higher.
+ */
+@NotCallOrigin
+public class ForkJoinThreadType extends AbstractThreadType {
+    private static final AtomicInteger sThreadNumber = new AtomicInteger();
+    @NonNull
+    private final ForkJoinPool mForkJoinPool;
+
+    /**
+     * Create a new work-stealing thread type with a dedicated pool
+     *
+     * @param name        of the thread type, for debugging
+     * @param parallelism the number of threads, usually {@link com.futurice.cascade.AsyncBuilder#NUMBER_OF_CORES}
+     */
+    public ForkJoinThreadType(
+            @NonNull final String name,
+            final int parallelism) {
+        this(name, parallelism, new ImmutableValue<>());
+    }
+
+    private ForkJoinThreadType(
+            @NonNull final String name,
+            final int parallelism,
+            @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
+        this(name, new ForkJoinPool(parallelism,
+                pool -> new ForkJoinTypedThread(pool, threadTypeImmutableValue.get(), name + "Thread" + sThreadNumber.getAndIncrement()),
+                (thread, throwable) -> RCLog.e(name, "uncaughtException in " + thread, throwable),
+                false));
+        threadTypeImmutableValue.set(this); // Threads are started only when the first task is submitted
+    }
+
+    /**
+     * Create a new work-stealing thread type
+     * <p>
+     * {@link com.futurice.cascade.Async#currentThreadType()} finds this thread type only on threads which
+     * implement {@link ITypedThread}. The threads of a pool from the default factory do not.
+     *
+     * @param name         of the thread type, for debugging
+     * @param forkJoinPool the pool. This should be in the default LIFO (<code>asyncMode=false</code>) mode for
+     *                     {@link #runNext(Runnable)} to run depth-first
+     */
+    public ForkJoinThreadType(
+            @NonNull final String name,
+            @NonNull final ForkJoinPool forkJoinPool) {
+        super(name, forkJoinPool, null);
+
+        this.mForkJoinPool = forkJoinPool;
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void run(@NonNull final Runnable runnable) {
+        if (mForkJoinPool.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted != null) {
+            mForkJoinPool.execute(mMetrics.wrap(admitted));
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void runNext(@NonNull final Runnable runnable) {
+        if (mForkJoinPool.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted == null) {
+            return;
+        }
+
+        if (ForkJoinTask.getPool() == mForkJoinPool) {
+            // We are on one of our own threads- push to the local LIFO end of this thread's deque
+            ForkJoinTask.adapt(mMetrics.wrap(admitted)).fork();
+        } else {
+            mForkJoinPool.execute(mMetrics.wrap(admitted));
+        }
+    }
+
+    @Override // IThreadType
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        return false; // ForkJoinPool work queues are not visible and can not be re-ordered
+    }
+
+    @Override // IThreadType
+    public boolean isInOrderExecutor() {
+        return false;
+    }
+
+    /**
+     * A {@link ForkJoinWorkerThread} with a descriptive name to assist debugging, which reports its
+     * {@link IThreadType} as a {@link TypedThread} does
+     */
+    @NotCallOrigin
+    static final class ForkJoinTypedThread extends ForkJoinWorkerThread implements ITypedThread {
+        @NonNull
+        private final IThreadType mThreadType;
+
+        ForkJoinTypedThread(
+                @NonNull final ForkJoinPool pool,
+                @NonNull final IThreadType threadType,
+                @NonNull final String threadName) {
+            super(pool);
+
+            this.mThreadType = threadType;
+            setName(threadName);
+        }
+
+        @NonNull
+        @Override // ITypedThread
+        public IThreadType getThreadType() {
+            return mThreadType;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A timer for very many delays and timeouts at once, used by {@link IThreadType#schedule(long, TimeUnit, com.futurice.cascade.i.IAction)}
+ * <p>
+ * Time is divided into ticks. A ring of buckets holds the waiting tasks, each in the bucket of the tick
+ * when it is due, so adding or cancelling is O(1) however many tasks are waiting. A task due more than
+ * one turn of the ring later counts down the turns as the ring passes. The price is precision: a task
+ * runs up to about two ticks late.
+ * <p>
+ * One timer thread turns the ring. When a task is due it is handed directly to the {@link IThreadType}
+ * it was scheduled on. The timer thread parks when nothing is waiting. A timer created with the constructor
+ * keeps its thread until {@link #stop()}.
+ */
+@NotCallOrigin
+public final class HashedWheelTimer {
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+    private static volatile HashedWheelTimer sDefaultTimer;
+
+    private final long mTickNanos;
+    private final int mMask;
+    @NonNull
+    private final Timeout[] mWheel; // Accessed only from the timer thread
+    private final ConcurrentLinkedQueue<Timeout> mPendingTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mStarted = new AtomicBoolean(false);
+    private volatile boolean mStopped = false;
+    @NonNull
+    private final Thread mTimerThread;
+    private final long mStartNanos = System.nanoTime();
+    private long mTick = 0; // Accessed only from the timer thread
+    private int mTimeoutCount = 0; // Timeouts in the wheel. Accessed only from the timer thread
+
+    /**
+     * Create a new timer. Most applications use {@link #getDefault()} instead. Call {@link #stop()} when
+     * done to end the timer thread.
+     *
+     * @param tickMillis the precision of the timer
+     * @param wheelSize  the number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(
+            final long tickMillis,
+            final int wheelSize) {
+        if (tickMillis < 1 || wheelSize < 1) {
+            throw new IllegalArgumentException("tickMillis=" + tickMillis + " and wheelSize=" + wheelSize + " must be > 0");
+        }
+        final int size = Integer.highestOneBit(wheelSize - 1 > 0 ? wheelSize - 1 : 1) << 1;
+
+        this.mTickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.mMask = size - 1;
+        this.mWheel = new Timeout[size];
+        this.mTimerThread = new Thread(this::turnWheel, "HashedWheelTimer");
+        this.mTimerThread.setDaemon(true);
+    }
+
+    /**
+     * @return the timer shared by all thread types
+     */
+    @NonNull
+    public static HashedWheelTimer getDefault() {
+        HashedWheelTimer timer = sDefaultTimer;
+
+        if (timer == null) {
+            synchronized (HashedWheelTimer.class) {
+                timer = sDefaultTimer;
+                if (timer == null) {
+                    timer = new HashedWheelTimer(DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+                    sDefaultTimer = timer;
+                }
+            }
+        }
+
+        return timer;
+    }
+
+    /**
+     * Run a task on a thread type after a delay, and optionally repeat it
+     *
+     * @param threadType  where the task will run
+     * @param runnable    the task, usually already wrapped for error protection
+     * @param delayNanos  time until the first run
+     * @param periodNanos time between the start of each run, or <code>0</code> to run once
+     * @return a handle to cancel the task
+     */
+    @NonNull
+    public ICancellable schedule(
+            @NonNull final IThreadType threadType,
+            @NonNull final Runnable runnable,
+            final long delayNanos,
+            final long periodNanos) {
+        if (periodNanos < 0) {
+            throw new IllegalArgumentException("periodNanos=" + periodNanos + " must be >= 0");
+        }
+        if (mStopped) {
+            throw new IllegalStateException("Can not schedule on a stopped timer: " + runnable);
+        }
+        final Timeout timeout = new Timeout(threadType, runnable, System.nanoTime() + Math.max(0, delayNanos), periodNanos);
+
+        if (delayNanos <= 0 && periodNanos == 0) {
+            threadType.run(runnable); // Nothing to wait for
+            return timeout;
+        }
+        mPendingTimeouts.add(timeout);
+        if (mStarted.compareAndSet(false, true)) {
+            mTimerThread.start();
+        } else {
+            LockSupport.unpark(mTimerThread);
+        }
+
+        return timeout;
+    }
+
+    /**
+     * End the timer thread and cancel the tasks which have not yet run. The timer can not be used after this.
+     * <p>
+     * The {@link #getDefault()} timer is shared by all thread types and can not be stopped.
+     *
+     * @return the tasks which were cancelled
+     */
+    @NonNull
+    public List<ICancellable> stop() {
+        if (this == sDefaultTimer) {
+            throw new IllegalStateException("The default timer is shared by all thread types and can not be stopped");
+        }
+        mStopped = true;
+        if (!mStarted.compareAndSet(false, true)) {
+            LockSupport.unpark(mTimerThread);
+            try {
+                mTimerThread.join(); // The timer thread moves the waiting tasks back to mPendingTimeouts as it ends
+            } catch (InterruptedException e) {
+                RCLog.i(this, "Interrupted while stopping the timer thread, not all waiting tasks may be cancelled");
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        final List<ICancellable> cancelled = new ArrayList<>();
+        Timeout timeout;
+        while ((timeout = mPendingTimeouts.poll()) != null) {
+            if (timeout.cancel("Timer stopped")) {
+                cancelled.add(timeout);
+            }
+        }
+
+        return cancelled;
+    }
+
+    @NotCallOrigin
+    private void turnWheel() {
+        while (!mStopped) {
+            if (mTimeoutCount == 0 && mPendingTimeouts.isEmpty()) {
+                LockSupport.park(this);
+                mTick = Math.max(mTick, (System.nanoTime() - mStartNanos) / mTickNanos); // Nothing waited while parked, so skip the idle ticks
+                continue;
+            }
+
+            final long tickEndNanos = mStartNanos + (mTick + 1) * mTickNanos;
+            long sleepNanos;
+            while ((sleepNanos = tickEndNanos - System.nanoTime()) > 0 && !mStopped) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            if (mStopped) {
+                break;
+            }
+
+            Timeout timeout;
+            while ((timeout = mPendingTimeouts.poll()) != null) {
+                if (!timeout.mCancelled) {
+                    addToWheel(timeout);
+                }
+            }
+            expireBucket((int) (mTick & mMask));
+            mTick++;
+        }
+
+        for (int i = 0; i < mWheel.length; i++) {
+            for (Timeout timeout = mWheel[i]; timeout != null; timeout = timeout.mNext) {
+                mPendingTimeouts.add(timeout);
+            }
+            mWheel[i] = null;
+        }
+        mTimeoutCount = 0;
+    }
+
+    /**
+     * Call only from the timer thread
+     */
+    private void addToWheel(@NonNull final Timeout timeout) {
+        final long dueTick = Math.max(mTick, (timeout.mDeadlineNanos - mStartNanos + mTickNanos - 1) / mTickNanos);
+        final int bucket = (int) (dueTick & mMask);
+
+        timeout.mRemainingRounds = (dueTick - mTick) / mWheel.length;
+        timeout.mNext = mWheel[bucket];
+        mWheel[bucket] = timeout;
+        mTimeoutCount++;
+    }
+
+    /**
+     * Call only from the timer thread
+     */
+    @NotCallOrigin
+    private void expireBucket(final int i) {
+        Timeout timeout = mWheel[i];
+        Timeout previous = null;
+
+        while (timeout != null) {
+            final Timeout next = timeout.mNext;
+
+            if (timeout.mCancelled || timeout.mRemainingRounds <= 0) {
+                if (previous == null) {
+                    mWheel[i] = next;
+                } else {
+                    previous.mNext = next;
+                }
+                timeout.mNext = null;
+                mTimeoutCount--;
+                if (!timeout.mCancelled) {
+                    dispatch(timeout);
+                }
+            } else {
+                timeout.mRemainingRounds--;
+                previous = timeout;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * Call only from the timer thread
+     */
+    @NotCallOrigin
+    private void dispatch(@NonNull final Timeout timeout) {
+        if (timeout.mThreadType.isShutdown()) {
+            timeout.mCancelled = true;
+            return;
+        }
+        try {
+            timeout.mThreadType.run(timeout.mRunnable);
+        } catch (Exception e) {
+            RCLog.e(this, "Can not dispatch scheduled task to " + timeout.mThreadType.getName(), e);
+        }
+        if (timeout.mPeriodNanos > 0 && !timeout.mCancelled) {
+            timeout.mDeadlineNanos += timeout.mPeriodNanos; // Fixed rate
+            mPendingTimeouts.add(timeout); // Not into the bucket now being expired
+        }
+    }
+
+    /**
+     * A task waiting in the timer
+     */
+    private static final class Timeout implements ICancellable {
+        @NonNull
+        final IThreadType mThreadType;
+        @NonNull
+        final Runnable mRunnable;
+        final long mPeriodNanos;
+        long mDeadlineNanos; // Changed only on the timer thread after the first run
+        long mRemainingRounds; // Accessed only from the timer thread
+        @Nullable
+        Timeout mNext; // Accessed only from the timer thread
+        volatile boolean mCancelled = false;
+
+        Timeout(
+                @NonNull final IThreadType threadType,
+                @NonNull final Runnable runnable,
+                final long deadlineNanos,
+                final long periodNanos) {
+            this.mThreadType = threadType;
+            this.mRunnable = runnable;
+            this.mDeadlineNanos = deadlineNanos;
+            this.mPeriodNanos = periodNanos;
+        }
+
+        @Override // ICancellable
+        public boolean cancel(@NonNull final String reason) {
+            if (mCancelled) {
+                return false;
+            }
+            RCLog.v(this, "Cancel scheduled task: " + reason);
+            mCancelled = true; // Removed from the wheel when its bucket is next reached
+
+            return true;
+        }
+
+        @Override // ICancellable
+        public boolean cancel(@NonNull final StateError stateError) {
+            return cancel(stateError.toString());
+        }
+
+        @Override // ICancellable
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override // Object
+        public String toString() {
+            return "Scheduled " + mRunnable + " on " + mThreadType.getName();
+        }
+    }
+}
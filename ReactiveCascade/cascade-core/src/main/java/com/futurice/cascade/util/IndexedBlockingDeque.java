@@ -0,0 +1,779 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.AbstractQueue;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An unbounded {@link BlockingDeque} which can find any queued task and move it to the head in O(1)
+ * <p>
+ * Each item is held in its own node of a doubly linked list. A hash index from each task to its node
+ * makes {@link #moveToHead(Object)} and {@link #containsTask(Object)} constant time, where a
+ * {@link java.util.concurrent.LinkedBlockingDeque} must scan the whole mQueue while holding its lock. The
+ * index is by the task as it was originally submitted, looking through the wrappers a thread type adds as
+ * it queues the task. See {@link AbstractThreadType#isTaskFor(Object, Object)}.
+ * <p>
+ * This is the default {@link com.futurice.cascade.AsyncBuilder#getWorkerQueue()}. Like {@link SignallingBlockingDeque}
+ * it can signal listeners each time an item is added, so a {@link DoubleQueue} using this as the low priority
+ * mQueue can sleep until there is work.
+ * <p>
+ * Other operations such as {@link #remove(Object)} keep the usual linear time.
+ *
+ * @param <E>
+ */
+public class IndexedBlockingDeque<E> extends AbstractQueue<E> implements BlockingDeque<E> {
+    private static final Runnable[] NO_LISTENERS = new Runnable[0];
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private final HashMap<Object, Node<E>> mIndex = new HashMap<>(); // Guarded by mLock
+    @Nullable
+    private Node<E> mHead; // Guarded by mLock
+    @Nullable
+    private Node<E> mTail; // Guarded by mLock
+    private int mCount = 0; // Guarded by mLock
+    private volatile Runnable[] mListeners = NO_LISTENERS; // Copy on write, read once per insert without allocation
+
+    public IndexedBlockingDeque() {
+        super();
+    }
+
+    /**
+     * Add an action to be performed on the inserting thread after each item is added. This should
+     * be very fast and never block for long.
+     *
+     * @param listener
+     */
+    public synchronized void addListener(@NonNull final Runnable listener) {
+        final Runnable[] listeners = new Runnable[mListeners.length + 1];
+
+        System.arraycopy(mListeners, 0, listeners, 0, mListeners.length);
+        listeners[mListeners.length] = listener;
+        mListeners = listeners;
+    }
+
+    private void signal() {
+        for (final Runnable listener : mListeners) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Move a waiting task to the head of the mQueue so it is the next to be taken
+     *
+     * @param task the task as it was originally submitted
+     * @return <code>true</code> if the task was waiting in the mQueue
+     */
+    public boolean moveToHead(@NonNull final Object task) {
+        mLock.lock();
+        try {
+            final Node<E> node = mIndex.get(task);
+
+            if (node == null) {
+                return false;
+            }
+            if (node != mHead) {
+                detach(node);
+                attachFirst(node);
+            }
+
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * Remove a waiting task from the mQueue
+     *
+     * @param task the task as it was originally submitted
+     * @return the item removed from the mQueue, which may be a wrapper around the task, or <code>null</code> if the task was not waiting
+     */
+    @Nullable
+    public E removeTask(@NonNull final Object task) {
+        mLock.lock();
+        try {
+            final Node<E> node = mIndex.get(task);
+
+            return node == null ? null : unlink(node);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * @param task the task as it was originally submitted
+     * @return <code>true</code> if the task is waiting in the mQueue
+     */
+    public boolean containsTask(@NonNull final Object task) {
+        mLock.lock();
+        try {
+            return mIndex.containsKey(task);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+//============================= Internal list operations, call only while holding mLock ======================
+
+    private void link(
+            @NonNull final E e,
+            final boolean first) {
+        final Node<E> node = new Node<>(e, AbstractThreadType.unwrapTask(e));
+        final Node<E> sameKey = mIndex.get(node.mKey);
+
+        if (sameKey == null) {
+            mIndex.put(node.mKey, node);
+        } else {
+            node.mNextSameKey = sameKey.mNextSameKey; // The same task is queued more than once
+            sameKey.mNextSameKey = node;
+        }
+        if (first) {
+            attachFirst(node);
+        } else {
+            attachLast(node);
+        }
+        mCount++;
+        mNotEmpty.signal();
+    }
+
+    private void attachFirst(@NonNull final Node<E> node) {
+        node.mPrevious = null;
+        node.mNext = mHead;
+        if (mHead == null) {
+            mTail = node;
+        } else {
+            mHead.mPrevious = node;
+        }
+        mHead = node;
+    }
+
+    private void attachLast(@NonNull final Node<E> node) {
+        node.mNext = null;
+        node.mPrevious = mTail;
+        if (mTail == null) {
+            mHead = node;
+        } else {
+            mTail.mNext = node;
+        }
+        mTail = node;
+    }
+
+    private void detach(@NonNull final Node<E> node) {
+        final Node<E> previous = node.mPrevious;
+        final Node<E> next = node.mNext;
+
+        if (previous == null) {
+            mHead = next;
+        } else {
+            previous.mNext = next;
+        }
+        if (next == null) {
+            mTail = previous;
+        } else {
+            next.mPrevious = previous;
+        }
+        node.mPrevious = null;
+        node.mNext = null;
+    }
+
+    @NonNull
+    private E unlink(@NonNull final Node<E> node) {
+        final E e = node.mItem;
+        final Node<E> sameKey = mIndex.get(node.mKey);
+
+        detach(node);
+        if (sameKey == node) {
+            if (node.mNextSameKey == null) {
+                mIndex.remove(node.mKey);
+            } else {
+                mIndex.put(node.mKey, node.mNextSameKey);
+            }
+        } else if (sameKey != null) {
+            Node<E> n = sameKey;
+            while (n.mNextSameKey != null && n.mNextSameKey != node) {
+                n = n.mNextSameKey;
+            }
+            n.mNextSameKey = node.mNextSameKey;
+        }
+        node.mNextSameKey = null;
+        node.mItem = null; // Marks the node as no longer in the mQueue
+        mCount--;
+
+        return e;
+    }
+
+    @Nullable
+    private Node<E> findFirst(@NonNull final Object o) {
+        for (Node<E> node = mHead; node != null; node = node.mNext) {
+            if (o.equals(node.mItem)) {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    @Nullable
+    private Node<E> findLast(@NonNull final Object o) {
+        for (Node<E> node = mTail; node != null; node = node.mPrevious) {
+            if (o.equals(node.mItem)) {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    @NonNull
+    private Object[] snapshotNodes(final boolean descending) {
+        mLock.lock();
+        try {
+            final Object[] nodes = new Object[mCount];
+            int i = 0;
+
+            for (Node<E> node = descending ? mTail : mHead; node != null; node = descending ? node.mPrevious : node.mNext) {
+                nodes[i++] = node;
+            }
+
+            return nodes;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+//============================= Insert ======================================================================
+
+    @Override // BlockingDeque
+    public void addFirst(@NonNull final E e) {
+        offerFirst(e);
+    }
+
+    @Override // BlockingDeque
+    public void addLast(@NonNull final E e) {
+        offerLast(e);
+    }
+
+    @Override // BlockingDeque
+    public boolean offerFirst(@NonNull final E e) {
+        mLock.lock();
+        try {
+            link(e, true);
+        } finally {
+            mLock.unlock();
+        }
+        signal();
+
+        return true;
+    }
+
+    @Override // BlockingDeque
+    public boolean offerLast(@NonNull final E e) {
+        mLock.lock();
+        try {
+            link(e, false);
+        } finally {
+            mLock.unlock();
+        }
+        signal();
+
+        return true;
+    }
+
+    @Override // BlockingDeque
+    public void putFirst(@NonNull final E e) {
+        offerFirst(e); // Unbounded, never waits
+    }
+
+    @Override // BlockingDeque
+    public void putLast(@NonNull final E e) {
+        offerLast(e);
+    }
+
+    @Override // BlockingDeque
+    public boolean offerFirst(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) {
+        return offerFirst(e);
+    }
+
+    @Override // BlockingDeque
+    public boolean offerLast(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) {
+        return offerLast(e);
+    }
+
+    @Override // BlockingQueue
+    public boolean add(@NonNull final E e) {
+        return offerLast(e);
+    }
+
+    @Override // BlockingQueue
+    public boolean offer(@NonNull final E e) {
+        return offerLast(e);
+    }
+
+    @Override // BlockingQueue
+    public void put(@NonNull final E e) {
+        offerLast(e);
+    }
+
+    @Override // BlockingQueue
+    public boolean offer(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) {
+        return offerLast(e);
+    }
+
+    @Override // BlockingDeque
+    public void push(@NonNull final E e) {
+        addFirst(e);
+    }
+
+//============================= Remove ======================================================================
+
+    @Override // Deque
+    @NonNull
+    public E removeFirst() {
+        final E e = pollFirst();
+
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+
+        return e;
+    }
+
+    @Override // Deque
+    @NonNull
+    public E removeLast() {
+        final E e = pollLast();
+
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+
+        return e;
+    }
+
+    @Override // Deque
+    @Nullable
+    public E pollFirst() {
+        mLock.lock();
+        try {
+            return mHead == null ? null : unlink(mHead);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // Deque
+    @Nullable
+    public E pollLast() {
+        mLock.lock();
+        try {
+            return mTail == null ? null : unlink(mTail);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingDeque
+    @NonNull
+    public E takeFirst() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (mHead == null) {
+                mNotEmpty.await();
+            }
+
+            return unlink(mHead);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingDeque
+    @NonNull
+    public E takeLast() throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            while (mTail == null) {
+                mNotEmpty.await();
+            }
+
+            return unlink(mTail);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingDeque
+    @Nullable
+    public E pollFirst(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        mLock.lockInterruptibly();
+        try {
+            while (mHead == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+
+            return unlink(mHead);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingDeque
+    @Nullable
+    public E pollLast(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+
+        mLock.lockInterruptibly();
+        try {
+            while (mTail == null) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = mNotEmpty.awaitNanos(nanos);
+            }
+
+            return unlink(mTail);
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    @Nullable
+    public E poll() {
+        return pollFirst();
+    }
+
+    @Override // BlockingQueue
+    @NonNull
+    public E take() throws InterruptedException {
+        return takeFirst();
+    }
+
+    @Override // BlockingQueue
+    @Nullable
+    public E poll(
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        return pollFirst(timeout, unit);
+    }
+
+    @Override // BlockingQueue
+    @NonNull
+    public E remove() {
+        return removeFirst();
+    }
+
+    @Override // BlockingDeque
+    @NonNull
+    public E pop() {
+        return removeFirst();
+    }
+
+    @Override // BlockingDeque
+    public boolean removeFirstOccurrence(@Nullable final Object o) {
+        if (o == null) {
+            return false;
+        }
+        mLock.lock();
+        try {
+            final Node<E> node = findFirst(o);
+
+            if (node == null) {
+                return false;
+            }
+            unlink(node);
+
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingDeque
+    public boolean removeLastOccurrence(@Nullable final Object o) {
+        if (o == null) {
+            return false;
+        }
+        mLock.lock();
+        try {
+            final Node<E> node = findLast(o);
+
+            if (node == null) {
+                return false;
+            }
+            unlink(node);
+
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    public boolean remove(@Nullable final Object o) {
+        return removeFirstOccurrence(o);
+    }
+
+    @Override // Collection
+    public void clear() {
+        mLock.lock();
+        try {
+            while (mHead != null) {
+                unlink(mHead);
+            }
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    public int drainTo(@NonNull final Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override // BlockingQueue
+    public int drainTo(
+            @NonNull final Collection<? super E> c,
+            final int maxElements) {
+        if (c == this) {
+            throw new IllegalArgumentException("Can not drainTo() self");
+        }
+        mLock.lock();
+        try {
+            int n = 0;
+
+            while (n < maxElements && mHead != null) {
+                c.add(unlink(mHead));
+                n++;
+            }
+
+            return n;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+//============================= Examine =====================================================================
+
+    @Override // Deque
+    @NonNull
+    public E getFirst() {
+        final E e = peekFirst();
+
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+
+        return e;
+    }
+
+    @Override // Deque
+    @NonNull
+    public E getLast() {
+        final E e = peekLast();
+
+        if (e == null) {
+            throw new NoSuchElementException();
+        }
+
+        return e;
+    }
+
+    @Override // Deque
+    @Nullable
+    public E peekFirst() {
+        mLock.lock();
+        try {
+            return mHead == null ? null : mHead.mItem;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // Deque
+    @Nullable
+    public E peekLast() {
+        mLock.lock();
+        try {
+            return mTail == null ? null : mTail.mItem;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    @NonNull
+    public E element() {
+        return getFirst();
+    }
+
+    @Override // BlockingQueue
+    @Nullable
+    public E peek() {
+        return peekFirst();
+    }
+
+    @Override // BlockingQueue
+    public boolean contains(@Nullable final Object o) {
+        if (o == null) {
+            return false;
+        }
+        mLock.lock();
+        try {
+            return findFirst(o) != null;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    @Override // BlockingQueue
+    public int remainingCapacity() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override // Collection
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * A snapshot iterator. It does not see changes made after it is created, but {@link Iterator#remove()}
+     * removes the item from this mQueue if it is still waiting.
+     *
+     * @return
+     */
+    @Override // BlockingDeque
+    @NonNull
+    public Iterator<E> iterator() {
+        return new SnapshotIterator(snapshotNodes(false));
+    }
+
+    @Override // Deque
+    @NonNull
+    public Iterator<E> descendingIterator() {
+        return new SnapshotIterator(snapshotNodes(true));
+    }
+
+    private static final class Node<E> {
+        @Nullable
+        E mItem; // null once removed from the mQueue
+        @NonNull
+        final Object mKey;
+        @Nullable
+        Node<E> mPrevious;
+        @Nullable
+        Node<E> mNext;
+        @Nullable
+        Node<E> mNextSameKey;
+
+        Node(
+                @NonNull final E item,
+                @NonNull final Object key) {
+            this.mItem = item;
+            this.mKey = key;
+        }
+    }
+
+    private final class SnapshotIterator implements Iterator<E> {
+        @NonNull
+        private final Object[] mNodes;
+        private int mNextIndex = 0;
+        @Nullable
+        private Node<E> mLastReturned;
+        @Nullable
+        private E mNextItem;
+
+        SnapshotIterator(@NonNull final Object[] nodes) {
+            this.mNodes = nodes;
+            advance();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void advance() {
+            mNextItem = null;
+            mLock.lock();
+            try {
+                while (mNextIndex < mNodes.length && mNextItem == null) {
+                    mNextItem = ((Node<E>) mNodes[mNextIndex++]).mItem; // Skip items taken since the snapshot
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+
+        @Override // Iterator
+        public boolean hasNext() {
+            return mNextItem != null;
+        }
+
+        @Override // Iterator
+        @NonNull
+        @SuppressWarnings("unchecked")
+        public E next() {
+            final E e = mNextItem;
+
+            if (e == null) {
+                throw new NoSuchElementException();
+            }
+            mLastReturned = (Node<E>) mNodes[mNextIndex - 1];
+            advance();
+
+            return e;
+        }
+
+        @Override // Iterator
+        public void remove() {
+            final Node<E> node = mLastReturned;
+
+            if (node == null) {
+                throw new IllegalStateException();
+            }
+            mLastReturned = null;
+            mLock.lock();
+            try {
+                if (node.mItem != null) {
+                    unlink(node);
+                }
+            } finally {
+                mLock.unlock();
+            }
+        }
+    }
+}
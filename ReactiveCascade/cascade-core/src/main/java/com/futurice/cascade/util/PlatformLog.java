@@ -0,0 +1,126 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.ILog;
+
+/**
+ * The low level log used by {@link RCLog} and during startup before {@link com.futurice.cascade.Async} is ready
+ * <p>
+ * By default log lines go to {@link System#out} and {@link System#err}, which is what a JVM server or
+ * benchmark wants. The Android binding replaces this with the system log in
+ * <code>AndroidAsyncBuilder</code>.
+ */
+public final class PlatformLog {
+    private static volatile ILog sLog = new SystemLog();
+
+    private PlatformLog() {
+    }
+
+    /**
+     * Replace where log lines are written. Call this before building {@link com.futurice.cascade.AsyncBuilder}.
+     *
+     * @param log the new destination
+     */
+    public static void setLog(@NonNull final ILog log) {
+        sLog = log;
+    }
+
+    @NonNull
+    public static ILog getLog() {
+        return sLog;
+    }
+
+    public static void v(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        sLog.v(tag, message);
+    }
+
+    public static void d(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        sLog.d(tag, message);
+    }
+
+    public static void d(
+            @NonNull final String tag,
+            @NonNull final String message,
+            @NonNull final Throwable t) {
+        sLog.d(tag, message, t);
+    }
+
+    public static void i(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        sLog.i(tag, message);
+    }
+
+    public static void e(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        sLog.e(tag, message);
+    }
+
+    public static void e(
+            @NonNull final String tag,
+            @NonNull final String message,
+            @NonNull final Throwable t) {
+        sLog.e(tag, message, t);
+    }
+
+    /**
+     * Write to the console
+     */
+    private static final class SystemLog implements ILog {
+        @Override // ILog
+        public void v(
+                @NonNull final String tag,
+                @NonNull final String message) {
+            System.out.println("V/" + tag + ": " + message);
+        }
+
+        @Override // ILog
+        public void d(
+                @NonNull final String tag,
+                @NonNull final String message) {
+            System.out.println("D/" + tag + ": " + message);
+        }
+
+        @Override // ILog
+        public void d(
+                @NonNull final String tag,
+                @NonNull final String message,
+                @NonNull final Throwable t) {
+            System.out.println("D/" + tag + ": " + message + " : " + t);
+        }
+
+        @Override // ILog
+        public void i(
+                @NonNull final String tag,
+                @NonNull final String message) {
+            System.out.println("I/" + tag + ": " + message);
+        }
+
+        @Override // ILog
+        public void e(
+                @NonNull final String tag,
+                @NonNull final String message) {
+            System.err.println("E/" + tag + ": " + message);
+        }
+
+        @Override // ILog
+        public void e(
+                @NonNull final String tag,
+                @NonNull final String message,
+                @NonNull final Throwable t) {
+            System.err.println("E/" + tag + ": " + message);
+            t.printStackTrace();
+        }
+    }
+}
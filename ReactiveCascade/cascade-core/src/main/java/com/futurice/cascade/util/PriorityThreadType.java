@@ -0,0 +1,148 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@link IThreadType} with several priority levels, so for example prefetch work does not delay
+ * user-visible work queued after it.
+ * <p>
+ * Level <code>0</code> is the most urgent. {@link #run(Runnable)} uses the priority of a
+ * {@link com.futurice.cascade.i.IPrioritized} task such as a {@link com.futurice.cascade.functional.RunnableAltFuture}
+ * or a {@link com.futurice.cascade.reactive.Subscription}, and the default level for all others.
+ * Priority set at the head of a chain is inherited by the downchain steps.
+ * <p>
+ * Waiting tasks age toward the most urgent level as described in {@link AgingPriorityQueue} so a
+ * steady stream of urgent work can not starve the lower levels.
+ */
+@NotCallOrigin
+public class PriorityThreadType extends AbstractThreadType {
+    private static final AtomicInteger sThreadNumber = new AtomicInteger();
+    @NonNull
+    private final AgingPriorityQueue<Runnable> mPriorityQueue;
+
+    /**
+     * Create a new priority thread type with its own threads
+     *
+     * @param name            of the thread type, for debugging
+     * @param numberOfThreads the number of threads
+     * @param numberOfLevels  the number of priority levels
+     * @param defaultPriority the level for tasks which do not have a priority
+     * @param agingMillis     the time after which a waiting task is treated as one level more urgent
+     */
+    public PriorityThreadType(
+            @NonNull final String name,
+            final int numberOfThreads,
+            final int numberOfLevels,
+            final int defaultPriority,
+            final long agingMillis) {
+        this(name, numberOfThreads, new AgingPriorityQueue<>(numberOfLevels, defaultPriority, agingMillis), new ImmutableValue<>());
+    }
+
+    private PriorityThreadType(
+            @NonNull final String name,
+            final int numberOfThreads,
+            @NonNull final AgingPriorityQueue<Runnable> queue,
+            @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
+        super(name, new ThreadPoolExecutor(
+                numberOfThreads,
+                numberOfThreads,
+                1000,
+                TimeUnit.MILLISECONDS,
+                queue,
+                runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, name + "Thread" + sThreadNumber.getAndIncrement())
+        ), queue);
+
+        this.mPriorityQueue = queue;
+        threadTypeImmutableValue.set(this);
+        // All threads wait on the mQueue, so tasks can be added to it directly at any level
+        ((ThreadPoolExecutor) executorService).prestartAllCoreThreads();
+    }
+
+    /**
+     * @return the number of priority levels
+     */
+    public int getNumberOfLevels() {
+        return mPriorityQueue.getNumberOfLevels();
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void run(@NonNull final Runnable runnable) {
+        run(mPriorityQueue.priorityOf(runnable), runnable);
+    }
+
+    /**
+     * Run after other waiting tasks of the same or more urgent priority
+     *
+     * @param priority the priority level, <code>0</code> is most urgent
+     * @param runnable the task
+     */
+    @NotCallOrigin
+    public void run(
+            final int priority,
+            @NonNull final Runnable runnable) {
+        if (executorService.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted != null) {
+            mPriorityQueue.offer(priority, mMetrics.wrap(admitted), false);
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void runNext(@NonNull final Runnable runnable) {
+        runNext(mPriorityQueue.priorityOf(runnable), runnable);
+    }
+
+    /**
+     * Run before other waiting tasks of the same priority
+     *
+     * @param priority the priority level, <code>0</code> is most urgent
+     * @param runnable the task
+     */
+    @NotCallOrigin
+    public void runNext(
+            final int priority,
+            @NonNull final Runnable runnable) {
+        if (executorService.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted != null) {
+            mPriorityQueue.offer(priority, mMetrics.wrap(admitted), true);
+        }
+    }
+
+    /**
+     * Move a waiting task to the front of its priority level. It does not change level.
+     *
+     * @param runnable the task
+     * @return <code>true</code> if the task was still waiting
+     */
+    @Override // IThreadType
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        return mPriorityQueue.moveToHead(runnable);
+    }
+
+    @Override // IThreadType
+    public boolean isInOrderExecutor() {
+        return false;
+    }
+}
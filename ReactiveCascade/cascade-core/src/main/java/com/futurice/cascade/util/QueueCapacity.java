@@ -0,0 +1,85 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * The limit on waiting tasks set by {@link IThreadType#setCapacity(int, IThreadType.OverflowPolicy)}
+ * <p>
+ * One permit is taken as each task is queued and given back as it starts to run, so a
+ * {@link IThreadType.OverflowPolicy#BLOCK}ed producer wakes as soon as there is space.
+ */
+final class QueueCapacity {
+    final int mCapacity;
+    @NonNull
+    final IThreadType.OverflowPolicy mOverflowPolicy;
+    @NonNull
+    final Semaphore mPermits;
+
+    QueueCapacity(
+            final int capacity,
+            @NonNull final IThreadType.OverflowPolicy overflowPolicy) {
+        this.mCapacity = capacity;
+        this.mOverflowPolicy = overflowPolicy;
+        this.mPermits = new Semaphore(capacity);
+    }
+
+    /**
+     * @param queued an item in the mQueue
+     * @return the task inside if this is a {@link PermitRunnable}, otherwise the same item
+     */
+    @NonNull
+    static Object unwrap(@NonNull final Object queued) {
+        if (queued instanceof PermitRunnable) {
+            return ((PermitRunnable) queued).mRunnable;
+        }
+
+        return queued;
+    }
+
+    /**
+     * A task which is always queued whatever the limit, and is never dropped to make space. Use this only
+     * for a task whose loss would stall other work, such as the hand-off between tasks of a {@link SerialThreadType}.
+     */
+    interface Exempt extends Runnable {
+    }
+
+    /**
+     * A queued task holding one permit
+     */
+    @NotCallOrigin
+    static final class PermitRunnable implements Runnable {
+        @NonNull
+        final QueueCapacity mQueueCapacity;
+        @NonNull
+        final Runnable mRunnable;
+
+        PermitRunnable(
+                @NonNull final QueueCapacity queueCapacity,
+                @NonNull final Runnable runnable) {
+            this.mQueueCapacity = queueCapacity;
+            this.mRunnable = runnable;
+        }
+
+        @Override // Runnable
+        @NotCallOrigin
+        public void run() {
+            mQueueCapacity.mPermits.release(); // The task has left the mQueue
+            mRunnable.run();
+        }
+
+        @Override // Object
+        public String toString() {
+            return mRunnable.toString();
+        }
+    }
+}
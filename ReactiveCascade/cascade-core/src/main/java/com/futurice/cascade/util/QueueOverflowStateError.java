@@ -0,0 +1,66 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The error state of an {@link com.futurice.cascade.i.IAltFuture} which was not run because the mQueue of
+ * its {@link IThreadType} was full
+ * <p>
+ * With {@link IThreadType.OverflowPolicy#FAIL} the task moves to this state and <code>.onError()</code> is
+ * called downchain. With {@link IThreadType.OverflowPolicy#DROP_OLDEST} or {@link IThreadType.OverflowPolicy#DROP_NEWEST}
+ * the dropped task is cancelled, and this is the {@link ICancellable.StateCancelled#getStateError()} of that cancellation.
+ */
+@NotCallOrigin
+public class QueueOverflowStateError extends Origin implements ICancellable.StateError {
+    @NonNull
+    private final String mThreadTypeName;
+    private final int mCapacity;
+    @NonNull
+    private final RejectedExecutionException mException;
+
+    public QueueOverflowStateError(
+            @NonNull final IThreadType threadType,
+            final int capacity) {
+        this.mThreadTypeName = threadType.getName();
+        this.mCapacity = capacity;
+        this.mException = new RejectedExecutionException(mThreadTypeName + " mQueue is full, capacity=" + capacity);
+    }
+
+    /**
+     * @return the name of the thread type which was full
+     */
+    @NonNull
+    public String getThreadTypeName() {
+        return mThreadTypeName;
+    }
+
+    /**
+     * @return the capacity of the mQueue when the task overflowed
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    @Override // StateError
+    @NonNull
+    public Exception getException() {
+        return mException;
+    }
+
+    @Override // Object
+    @NonNull
+    public String toString() {
+        return "QUEUE OVERFLOW: threadType=" + mThreadTypeName + " capacity=" + mCapacity;
+    }
+}
@@ -2,10 +2,10 @@ package com.futurice.cascade.util;
 
 import android.support.annotation.CheckResult;
 import android.support.annotation.NonNull;
-import android.util.Log;
+import android.support.annotation.VisibleForTesting;
 
 import com.futurice.cascade.Async;
-import com.futurice.cascade.BuildConfig;
+import com.futurice.cascade.core.BuildConfig;
 import com.futurice.cascade.functional.ImmutableValue;
 import com.futurice.cascade.i.CallOrigin;
 import com.futurice.cascade.i.IActionOne;
@@ -44,6 +44,14 @@ public class RCLog {
     public static final ImmutableValue<String> DEFAULT_ORIGIN = new ImmutableValue<>("No Origin provided in production builds");
     private static final ConcurrentHashMap<String, Class> sClassNameMap = new ConcurrentHashMap<>(); // "classname" -> Class. Used by DEBUG builds to more quickly trace mOrigin of a log message back into your code
     private static final ConcurrentHashMap<String, Method> sMethodNameMap = new ConcurrentHashMap<>(); // "classname-methodname" -> Method. Used by DEBUG builds to more quickly trace mOrigin of a log message back into your code
+    /**
+     * A null object for objects skipped by {@link com.futurice.cascade.AsyncBuilder#setOriginSampleRate(int)}
+     */
+    public static final ImmutableValue<String> UNSAMPLED_ORIGIN = new ImmutableValue<>("Origin not sampled, see AsyncBuilder.setOriginSampleRate()");
+    @VisibleForTesting
+    static final int MAX_CACHED_CALL_SITES = 4096; // Deep recursion may create endless unique call stacks. Past this they are resolved each time
+    private static final ConcurrentHashMap<CallSite, ImmutableValue<String>> sCallSiteOriginMap = new ConcurrentHashMap<>(); // Call stack -> resolved origin, shared by all objects created there
+    private static int sOriginSampleCount = 0; // Not synchronized. A lost increment only changes which object is sampled
 
     @NonNull
     private static String tagWithAspectAndThreadName(@NonNull final String message) {
@@ -107,9 +115,9 @@ public class RCLog {
             } else {
                 log(tag, message, (ta, m) -> {
                     if (Async.SHOW_ERROR_STACK_TRACES) {
-                        Log.e(ta, m, t);
+                        PlatformLog.e(ta, m, t);
                     } else {
-                        Log.d(ta, m + " : " + t);
+                        PlatformLog.d(ta, m + " : " + t);
                     }
                     if (Async.FAIL_FAST && !((t instanceof InterruptedException) || (t instanceof CancellationException))) {
                         Async.exitWithErrorCode(getTag(ta), m, t);
@@ -129,12 +137,12 @@ public class RCLog {
             origin.then(o -> {
                 if (Async.SHOW_ERROR_STACK_TRACES) {
                     try {
-                        Log.e(getTag(tag), tagWithAspectAndThreadName(message), t);
+                        PlatformLog.e(getTag(tag), tagWithAspectAndThreadName(message), t);
                     } catch (Exception e) {
-                        Log.e("Async", "Problem with logging: " + tag + " : " + message, e);
+                        PlatformLog.e("Async", "Problem with logging: " + tag + " : " + message, e);
                     }
                 } else {
-                    log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message + " " + t), Log::e);
+                    log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message + " " + t), PlatformLog::e);
                 }
                 if (Async.FAIL_FAST && !((t instanceof InterruptedException) || (t instanceof CancellationException))) {
                     Async.exitWithErrorCode(getTag(tag), message, t);
@@ -157,7 +165,7 @@ public class RCLog {
             if (tag instanceof IAsyncOrigin) {
                 v(tag, ((IAsyncOrigin) tag).getOrigin(), message);
             } else {
-                log(tag, message, Log::v);
+                log(tag, message, PlatformLog::v);
             }
         }
     }
@@ -169,7 +177,7 @@ public class RCLog {
 
         debugOriginThen(ccOrigin -> {
             origin.then(o -> {
-                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log::v);
+                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), PlatformLog::v);
             });
         });
     }
@@ -188,7 +196,7 @@ public class RCLog {
             if (tag instanceof IAsyncOrigin) {
                 d(tag, ((IAsyncOrigin) tag).getOrigin(), message);
             } else {
-                log(tag, message, Log::d);
+                log(tag, message, PlatformLog::d);
             }
         }
     }
@@ -200,7 +208,7 @@ public class RCLog {
 
         debugOriginThen(ccOrigin -> {
             origin.then(o -> {
-                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log::d);
+                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), PlatformLog::d);
             });
         });
     }
@@ -219,7 +227,7 @@ public class RCLog {
             if (tag instanceof IAsyncOrigin) {
                 i(tag, ((IAsyncOrigin) tag).getOrigin(), message);
             } else {
-                log(tag, message, Log::i);
+                log(tag, message, PlatformLog::i);
             }
         }
     }
@@ -231,7 +239,7 @@ public class RCLog {
 
         debugOriginThen(ccOrigin -> {
             origin.then(o -> {
-                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), Log::i);
+                log(tag, combineOriginStringsRemoveDuplicates(o, ccOrigin, message), PlatformLog::i);
             });
         });
     }
@@ -245,7 +253,7 @@ public class RCLog {
         try {
             action.call(getTag(tag), tagWithAspectAndThreadName(message));
         } catch (Exception e) {
-            Log.e("Async", "Problem with logging: " + tag + " : " + message, e);
+            PlatformLog.e("Async", "Problem with logging: " + tag + " : " + message, e);
         }
     }
 
@@ -414,6 +422,12 @@ public class RCLog {
      * manifests itself. First look at what when wrong at that point, subscribe work backwards to how you
      * created the mess. Yes, it is always your fault. Or my fault. Nah.
      *
+     * <p>
+     * Each unique call stack is resolved once. Later objects created from the same call stack share the
+     * same result, so they skip the reflection and the WORKER task. With
+     * {@link com.futurice.cascade.AsyncBuilder#setOriginSampleRate(int)} most objects also skip reading
+     * the call stack and receive {@link #UNSAMPLED_ORIGIN}.
+     *
      * @return a string holder that will be populated in the background on a WORKER thread (only in <code>{@link BuildConfig#DEBUG}=true</code> builds)
      */
     @NonNull
@@ -423,8 +437,47 @@ public class RCLog {
             return DEFAULT_ORIGIN;
         }
 
-        final StackTraceElement[] traceElementsArray = Thread.currentThread().getStackTrace();
+        return originAsync(Async.ORIGIN_SAMPLE_RATE);
+    }
+
+    /**
+     * {@link #originAsync()} with the sample rate as a parameter
+     *
+     * @param originSampleRate read the call stack of only one in this many objects
+     * @return a string holder, or {@link #UNSAMPLED_ORIGIN}
+     */
+    @NonNull
+    @VisibleForTesting
+    static ImmutableValue<String> originAsync(final int originSampleRate) {
+        if (originSampleRate > 1 && ++sOriginSampleCount % originSampleRate != 0) {
+            return UNSAMPLED_ORIGIN;
+        }
+
+        return originAsync(Thread.currentThread().getStackTrace());
+    }
+
+    /**
+     * Find or start resolving the origin of a call stack
+     *
+     * @param traceElementsArray from {@link Thread#getStackTrace()} in {@link #originAsync(int)}
+     * @return a string holder shared by all objects created from the same call stack, if it is cached
+     */
+    @NonNull
+    @VisibleForTesting
+    static ImmutableValue<String> originAsync(@NonNull final StackTraceElement[] traceElementsArray) {
+        final CallSite callSite = new CallSite(traceElementsArray);
+        final ImmutableValue<String> cachedOrigin = sCallSiteOriginMap.get(callSite);
+        if (cachedOrigin != null) {
+            return cachedOrigin;
+        }
+
         final ImmutableValue<String> immutableValue = new ImmutableValue<>();
+        if (sCallSiteOriginMap.size() < MAX_CACHED_CALL_SITES) {
+            final ImmutableValue<String> racingOrigin = sCallSiteOriginMap.putIfAbsent(callSite, immutableValue);
+            if (racingOrigin != null) {
+                return racingOrigin;
+            }
+        }
 
         if (Async.WORKER != null) {
             Async.WORKER.run(() -> {
@@ -449,6 +502,14 @@ public class RCLog {
      *
      * @param action to be performed when the current stack trace is resolved asynchronously
      */
+    /**
+     * @return the number of call stacks whose origin is shared, at most {@link #MAX_CACHED_CALL_SITES}
+     */
+    @VisibleForTesting
+    static int getCachedCallSiteCount() {
+        return sCallSiteOriginMap.size();
+    }
+
     @NotCallOrigin
     private static void debugOriginThen(@NonNull final IActionOne<String> action) {
         try {
@@ -458,15 +519,16 @@ public class RCLog {
                 action.call("");
             }
         } catch (Exception e) {
-            Log.e(Async.class.getSimpleName(), "Problem in debugOriginThen()", e);
+            PlatformLog.e(Async.class.getSimpleName(), "Problem in debugOriginThen()", e);
         }
     }
 
     @NonNull
     private static List<StackTraceLine> origin(@NonNull final StackTraceElement[] traceElementsArray) {
-        final List<StackTraceElement> allStackTraceElements = new ArrayList<>(traceElementsArray.length - 3);
+        final int skip = Math.min(4, traceElementsArray.length - 1); // getStackTrace(), originAsync(int), originAsync() and its caller, but keep at least one line
+        final List<StackTraceElement> allStackTraceElements = new ArrayList<>(traceElementsArray.length - skip);
 
-        allStackTraceElements.addAll(Arrays.asList(traceElementsArray).subList(3, traceElementsArray.length));
+        allStackTraceElements.addAll(Arrays.asList(traceElementsArray).subList(skip, traceElementsArray.length));
 
         // Remove uninteresting stack trace elements in least-interesting-removed-first order, but step back to the previous state if everything is removed by one of these filters
         List<StackTraceLine> previousList = findClassAndMethod(allStackTraceElements);
@@ -597,6 +659,32 @@ public class RCLog {
     }
 
 
+    /**
+     * A call stack as a map key. The hash is calculated once.
+     */
+    private static final class CallSite {
+        @NonNull
+        final StackTraceElement[] stackTraceElements;
+        final int hash;
+
+        CallSite(@NonNull final StackTraceElement[] stackTraceElements) {
+            this.stackTraceElements = stackTraceElements;
+            this.hash = Arrays.hashCode(stackTraceElements);
+        }
+
+        @Override // Object
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override // Object
+        public boolean equals(final Object o) {
+            return o instanceof CallSite
+                    && hash == ((CallSite) o).hash
+                    && Arrays.equals(stackTraceElements, ((CallSite) o).stackTraceElements);
+        }
+    }
+
     private static final class StackTraceLine {
         final Class<?> claz;
         final StackTraceElement stackTraceElement;
@@ -0,0 +1,201 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-order {@link IThreadType} which borrows threads from another {@link IThreadType}
+ * <p>
+ * Tasks run one at a time in FIFO order, but not on a dedicated thread. Each task is handed to the
+ * underlying thread type only when the previous one has finished, so many of these can share the
+ * {@link com.futurice.cascade.Async#WORKER} threads and run in parallel with each other. This is the
+ * basis of {@link com.futurice.cascade.AsyncBuilder#getKeyedSerialThreadType(Object)}.
+ * <p>
+ * Shutting this down does not shut down the underlying thread type.
+ */
+@NotCallOrigin
+public class SerialThreadType extends AbstractThreadType {
+    /**
+     * Create a new in-order thread type
+     *
+     * @param name       of the thread type, for debugging
+     * @param threadType the thread type which runs the tasks, usually {@link com.futurice.cascade.Async#WORKER}
+     */
+    public SerialThreadType(
+            @NonNull final String name,
+            @NonNull final IThreadType threadType) {
+        super(name, new SerialExecutorService(threadType), null);
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void run(@NonNull final Runnable runnable) {
+        if (executorService.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted != null) {
+            executorService.execute(mMetrics.wrap(admitted));
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void runNext(@NonNull final Runnable runnable) {
+        RCLog.v(this, "WARNING: runNext() on in-order IThreadType. This will be run FIFO only after previously queued tasks");
+        run(runnable);
+    }
+
+    @Override // IThreadType
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        return false; // In-order tasks may not be re-ordered
+    }
+
+    @Override // IThreadType
+    public boolean isInOrderExecutor() {
+        return true;
+    }
+
+    /**
+     * Run one task at a time on another {@link IThreadType}
+     */
+    @NotCallOrigin
+    private static final class SerialExecutorService extends AbstractExecutorService {
+        @NonNull
+        private final IThreadType mThreadType;
+        private final ArrayDeque<Runnable> mTasks = new ArrayDeque<>(); // Guarded by this
+        private boolean mActive = false; // A task is queued or running on mThreadType. Guarded by this
+        private boolean mShutdown = false; // Guarded by this
+        private final QueueCapacity.Exempt mRunNext = this::runNext; // Exempt from the capacity limit of mThreadType, a refused or dropped hand-off would stall all later tasks
+
+        SerialExecutorService(@NonNull final IThreadType threadType) {
+            this.mThreadType = threadType;
+        }
+
+        @Override // Executor
+        public void execute(@NonNull final Runnable runnable) {
+            synchronized (this) {
+                if (mShutdown) {
+                    throw new RejectedExecutionException("SerialThreadType is shut down");
+                }
+                mTasks.addLast(runnable);
+                if (mActive) {
+                    return; // It will be run after the tasks ahead of it
+                }
+                mActive = true;
+            }
+            handOff();
+        }
+
+        /**
+         * Queue {@link #runNext()} on the underlying thread type. If that refuses it, for example because it
+         * is shut down, the next {@link #execute(Runnable)} tries again.
+         */
+        private void handOff() {
+            try {
+                mThreadType.run(mRunNext);
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    mActive = false;
+                    notifyAll();
+                }
+                throw e;
+            }
+        }
+
+        @NotCallOrigin
+        private void runNext() {
+            final Runnable runnable;
+
+            synchronized (this) {
+                runnable = mTasks.pollFirst();
+                if (runnable == null) {
+                    mActive = false;
+                    notifyAll(); // Wake awaitTermination()
+                    return;
+                }
+            }
+            try {
+                runnable.run();
+            } finally {
+                scheduleNext();
+            }
+        }
+
+        private void scheduleNext() {
+            synchronized (this) {
+                if (mTasks.isEmpty()) {
+                    mActive = false;
+                    notifyAll();
+                    return;
+                }
+            }
+            try {
+                handOff(); // Hand back the thread between tasks so other work can interleave
+            } catch (RuntimeException e) {
+                RCLog.e(this, "Problem handing off to " + mThreadType + ", the remaining tasks wait for the next execute()", e);
+            }
+        }
+
+        @Override // ExecutorService
+        public synchronized void shutdown() {
+            mShutdown = true;
+            notifyAll();
+        }
+
+        @NonNull
+        @Override // ExecutorService
+        public synchronized List<Runnable> shutdownNow() {
+            final List<Runnable> pending = new ArrayList<>(mTasks);
+
+            mShutdown = true;
+            mTasks.clear();
+            notifyAll();
+
+            return pending;
+        }
+
+        @Override // ExecutorService
+        public synchronized boolean isShutdown() {
+            return mShutdown;
+        }
+
+        @Override // ExecutorService
+        public synchronized boolean isTerminated() {
+            return mShutdown && !mActive;
+        }
+
+        @Override // ExecutorService
+        public synchronized boolean awaitTermination(
+                final long timeout,
+                @NonNull final TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+            while (!isTerminated()) {
+                final long remaining = deadline - System.nanoTime();
+
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+
+            return true;
+        }
+    }
+}
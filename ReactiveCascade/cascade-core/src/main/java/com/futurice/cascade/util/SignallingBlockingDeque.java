@@ -0,0 +1,131 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link LinkedBlockingDeque} which signals listeners each time an item is added.
+ * <p>
+ * This allows a {@link DoubleQueue} using this as the low priority mQueue to sleep until there is
+ * work, rather than polling for it. The default {@link com.futurice.cascade.AsyncBuilder#getWorkerQueue()}
+ * is now an {@link IndexedBlockingDeque}, which does the same and can also re-order in O(1).
+ * <p>
+ * The other single item insert methods of {@link LinkedBlockingDeque} delegate to the ones overridden here.
+ * {@link #addAll(Collection)} is also overridden, since from Java 9 it links the items directly.
+ *
+ * @param <E>
+ */
+public class SignallingBlockingDeque<E> extends LinkedBlockingDeque<E> {
+    private static final long serialVersionUID = 1L;
+    private static final Runnable[] NO_LISTENERS = new Runnable[0];
+    private volatile Runnable[] mListeners = NO_LISTENERS; // Copy on write, read once per insert without allocation
+
+    public SignallingBlockingDeque() {
+        super();
+    }
+
+    /**
+     * Add an action to be performed on the inserting thread after each item is added. This should
+     * be very fast and never block for long.
+     *
+     * @param listener
+     */
+    public synchronized void addListener(@NonNull final Runnable listener) {
+        final Runnable[] listeners = new Runnable[mListeners.length + 1];
+
+        System.arraycopy(mListeners, 0, listeners, 0, mListeners.length);
+        listeners[mListeners.length] = listener;
+        mListeners = listeners;
+    }
+
+    private void signal() {
+        for (final Runnable listener : mListeners) {
+            listener.run();
+        }
+    }
+
+    @Override // LinkedBlockingDeque
+    public boolean offerFirst(@NonNull final E e) {
+        final boolean added = super.offerFirst(e);
+
+        if (added) {
+            signal();
+        }
+
+        return added;
+    }
+
+    @Override // LinkedBlockingDeque
+    public boolean offerLast(@NonNull final E e) {
+        final boolean added = super.offerLast(e);
+
+        if (added) {
+            signal();
+        }
+
+        return added;
+    }
+
+    @Override // LinkedBlockingDeque
+    public void putFirst(@NonNull final E e) throws InterruptedException {
+        super.putFirst(e);
+        signal();
+    }
+
+    @Override // LinkedBlockingDeque
+    public void putLast(@NonNull final E e) throws InterruptedException {
+        super.putLast(e);
+        signal();
+    }
+
+    @Override // LinkedBlockingDeque
+    public boolean offerFirst(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        final boolean added = super.offerFirst(e, timeout, unit);
+
+        if (added) {
+            signal();
+        }
+
+        return added;
+    }
+
+    @Override // LinkedBlockingDeque
+    public boolean offerLast(
+            @NonNull final E e,
+            final long timeout,
+            @NonNull final TimeUnit unit) throws InterruptedException {
+        final boolean added = super.offerLast(e, timeout, unit);
+
+        if (added) {
+            signal();
+        }
+
+        return added;
+    }
+
+    @Override // LinkedBlockingDeque
+    public boolean addAll(@NonNull final Collection<? extends E> c) {
+        if (c == this) {
+            throw new IllegalArgumentException("Can not addAll() a deque to itself");
+        }
+        boolean modified = false;
+
+        for (final E e : c) {
+            addLast(e); // Signals once per item, as on Java 8
+            modified = true;
+        }
+
+        return modified;
+    }
+}
@@ -0,0 +1,465 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.i.ICancellable;
+import com.futurice.cascade.i.INamed;
+import com.futurice.cascade.i.NotCallOrigin;
+import com.futurice.cascade.reactive.ReactiveValue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Runtime measurements for one {@link com.futurice.cascade.i.IThreadType}
+ * <p>
+ * Each task is wrapped when it is queued to record how long it waited in the mQueue and how long it ran.
+ * Times are kept in fixed power-of-two microsecond buckets, so recording is a few atomic increments with
+ * no locks or allocation beyond the wrapper. Read the current values with {@link #getSnapshot()}, or
+ * receive them periodically with {@link #startPublishing(long)}.
+ * <p>
+ * Collection is off by default, so queueing a task allocates nothing here. Turn it on with
+ * {@link #setEnabled(boolean)} while profiling a thread type.
+ * <p>
+ * A task is counted once however many chain steps it runs. Steps run in the same task by
+ * {@link com.futurice.cascade.i.IThreadType#setFusedStepLimit(int)} or started at once by
+ * {@link com.futurice.cascade.i.IThreadType#setInlineContinuationLimit(int)} are not queued, so they are
+ * included in the run time of the task which ran them and are not counted separately.
+ */
+public final class ThreadTypeMetrics implements INamed {
+    /**
+     * The number of histogram buckets. Bucket <code>i</code> counts durations of at least
+     * <code>2^(i-1)</code> and less than <code>2^i</code> microseconds. The last bucket also holds
+     * everything longer.
+     */
+    public static final int NUMBER_OF_BUCKETS = 32;
+
+    @NonNull
+    private final String mName;
+    private volatile boolean mEnabled = false;
+    private final AtomicLong mCompletedCount = new AtomicLong();
+    private final AtomicLong mFailedCount = new AtomicLong();
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+    private final AtomicInteger mPeakQueueDepth = new AtomicInteger();
+    private final Histogram mWaitTime = new Histogram();
+    private final Histogram mRunTime = new Histogram();
+    @Nullable
+    private ReactiveValue<Snapshot> mReactiveSnapshot; // Guarded by this
+    @Nullable
+    private ICancellable mPublishTimeout; // Guarded by this
+
+    /**
+     * @param name of the thread type, for debugging
+     */
+    public ThreadTypeMetrics(@NonNull final String name) {
+        this.mName = name;
+    }
+
+    /**
+     * @param enabled <code>true</code> to measure tasks queued from now on, <code>false</code> to stop
+     */
+    public void setEnabled(final boolean enabled) {
+        this.mEnabled = enabled;
+    }
+
+    /**
+     * @return <code>true</code> if tasks are being measured
+     */
+    public boolean isEnabled() {
+        return mEnabled;
+    }
+
+    /**
+     * Wrap a task as it is added to the mQueue. Thread types call this once for each task they queue.
+     *
+     * @param runnable the task
+     * @return the measured task to queue in its place, or the same task if collection is disabled
+     */
+    @NonNull
+    public Runnable wrap(@NonNull final Runnable runnable) {
+        if (!mEnabled) {
+            return runnable;
+        }
+
+        final int depth = mQueueDepth.incrementAndGet();
+        int peak;
+        while (depth > (peak = mPeakQueueDepth.get()) && !mPeakQueueDepth.compareAndSet(peak, depth)) {
+            // Another thread raised the peak, check again
+        }
+
+        return new MeasuredRunnable(this, runnable, System.nanoTime());
+    }
+
+    /**
+     * Count a task which a thread type ran from its own loop without {@link #wrap(Runnable)}. The wait time
+     * and queue depth of such tasks are not measured.
+     *
+     * @param startNanos {@link System#nanoTime()} when the task started
+     * @param failed     <code>true</code> if the task ended with an error
+     */
+    void recordRun(
+            final long startNanos,
+            final boolean failed) {
+        mRunTime.record(System.nanoTime() - startNanos);
+        mCompletedCount.incrementAndGet();
+        if (failed) {
+            mFailedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count a task which finished with an error that was caught before it reached the executor, for
+     * example by {@link com.futurice.cascade.i.IThreadType#wrapActionWithErrorProtection(com.futurice.cascade.i.IAction)}
+     */
+    public void recordFailure() {
+        if (mEnabled) {
+            mFailedCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Count a task which was removed from the mQueue without running
+     *
+     * @param queued the item removed from the mQueue
+     */
+    void recordDropped(@NonNull final Object queued) {
+        recordRemoved(queued);
+        recordFailure();
+    }
+
+    /**
+     * Count a task which was removed from the mQueue because it is no longer needed
+     *
+     * @param queued the item removed from the mQueue
+     */
+    void recordRemoved(@NonNull final Object queued) {
+        if (queued instanceof MeasuredRunnable) {
+            mQueueDepth.decrementAndGet();
+        }
+    }
+
+    /**
+     * @param queued an item in the mQueue
+     * @return the task inside if this is a measured wrapper, otherwise the same item
+     */
+    @NonNull
+    static Object unwrap(@NonNull final Object queued) {
+        if (queued instanceof MeasuredRunnable) {
+            return ((MeasuredRunnable) queued).mRunnable;
+        }
+
+        return queued;
+    }
+
+    /**
+     * @return the current values
+     */
+    @NonNull
+    public Snapshot getSnapshot() {
+        return new Snapshot(mName, System.nanoTime(), mCompletedCount.get(), mFailedCount.get(),
+                mQueueDepth.get(), mPeakQueueDepth.get(), mWaitTime.snapshot(), mRunTime.snapshot());
+    }
+
+    /**
+     * Publish a new {@link Snapshot} at a regular interval. Calling this again changes the interval.
+     *
+     * @param periodMillis time between snapshots
+     * @return a reactive value which fires each new snapshot
+     */
+    @NonNull
+    public synchronized ReactiveValue<Snapshot> startPublishing(final long periodMillis) {
+        if (periodMillis < 1) {
+            throw new IllegalArgumentException("startPublishing(" + periodMillis + ") is illegal, period must be > 0");
+        }
+        if (mReactiveSnapshot == null) {
+            mReactiveSnapshot = new ReactiveValue<>(mName + "Metrics");
+        }
+        if (mPublishTimeout != null) {
+            mPublishTimeout.cancel("Publishing period changed");
+        }
+        final ReactiveValue<Snapshot> reactiveSnapshot = mReactiveSnapshot;
+        mPublishTimeout = Async.WORKER.scheduleAtFixedRate(0, periodMillis, TimeUnit.MILLISECONDS, () -> reactiveSnapshot.set(getSnapshot()));
+
+        return reactiveSnapshot;
+    }
+
+    /**
+     * Stop publishing snapshots started by {@link #startPublishing(long)}
+     */
+    public synchronized void stopPublishing() {
+        if (mPublishTimeout != null) {
+            mPublishTimeout.cancel("stopPublishing()");
+            mPublishTimeout = null;
+        }
+    }
+
+    @Override // INamed
+    @NonNull
+    public String getName() {
+        return mName;
+    }
+
+    @Override // Object
+    public String toString() {
+        return getSnapshot().toString();
+    }
+
+    private static int bucketOf(final long nanos) {
+        final long micros = nanos / 1000;
+
+        return Math.min(NUMBER_OF_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * A lock-free histogram of durations
+     */
+    private static final class Histogram {
+        private final AtomicLongArray mBuckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+        private final AtomicLong mTotalNanos = new AtomicLong();
+
+        void record(final long nanos) {
+            mBuckets.incrementAndGet(bucketOf(nanos));
+            mTotalNanos.addAndGet(nanos);
+        }
+
+        @NonNull
+        HistogramSnapshot snapshot() {
+            final long[] counts = new long[NUMBER_OF_BUCKETS];
+
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = mBuckets.get(i);
+            }
+
+            return new HistogramSnapshot(counts, mTotalNanos.get());
+        }
+    }
+
+    /**
+     * A task as it waits in the mQueue
+     */
+    @NotCallOrigin
+    private static final class MeasuredRunnable implements Runnable {
+        @NonNull
+        private final ThreadTypeMetrics mMetrics;
+        @NonNull
+        private final Runnable mRunnable;
+        private final long mEnqueuedNanos;
+
+        MeasuredRunnable(
+                @NonNull final ThreadTypeMetrics metrics,
+                @NonNull final Runnable runnable,
+                final long enqueuedNanos) {
+            this.mMetrics = metrics;
+            this.mRunnable = runnable;
+            this.mEnqueuedNanos = enqueuedNanos;
+        }
+
+        @Override // Runnable
+        @NotCallOrigin
+        public void run() {
+            final long startNanos = System.nanoTime();
+            boolean failed = true;
+
+            mMetrics.mQueueDepth.decrementAndGet();
+            mMetrics.mWaitTime.record(startNanos - mEnqueuedNanos);
+            try {
+                mRunnable.run();
+                failed = false;
+            } finally {
+                mMetrics.recordRun(startNanos, failed);
+            }
+        }
+
+        @Override // Object
+        public String toString() {
+            return mRunnable.toString();
+        }
+    }
+
+    /**
+     * Durations at one moment. Values are approximate to within a factor of two.
+     */
+    public static final class HistogramSnapshot {
+        @NonNull
+        private final long[] mCounts;
+        private final long mCount;
+        private final long mTotalNanos;
+
+        HistogramSnapshot(
+                @NonNull final long[] counts,
+                final long totalNanos) {
+            long count = 0;
+
+            for (final long c : counts) {
+                count += c;
+            }
+            this.mCounts = counts;
+            this.mCount = count;
+            this.mTotalNanos = totalNanos;
+        }
+
+        /**
+         * @return the number of durations recorded
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return the average duration, or <code>0</code> if none are recorded
+         */
+        public long getMeanMicros() {
+            return mCount == 0 ? 0 : mTotalNanos / mCount / 1000;
+        }
+
+        /**
+         * @param percentile for example <code>0.99</code>
+         * @return the upper limit of the bucket which holds this percentile, or <code>0</code> if none are recorded
+         */
+        public long getPercentileMicros(final double percentile) {
+            if (percentile < 0 || percentile > 1) {
+                throw new IllegalArgumentException("getPercentileMicros(" + percentile + ") is illegal, must be between 0 and 1");
+            }
+            final long target = (long) Math.ceil(percentile * mCount);
+            long seen = 0;
+
+            for (int i = 0; i < mCounts.length; i++) {
+                seen += mCounts[i];
+                if (seen >= target && seen > 0) {
+                    return 1L << i;
+                }
+            }
+
+            return 0;
+        }
+
+        /**
+         * @param bucket from <code>0</code> to {@link #NUMBER_OF_BUCKETS} - 1
+         * @return the number of durations in this bucket
+         */
+        public long getBucketCount(final int bucket) {
+            return mCounts[bucket];
+        }
+
+        @Override // Object
+        public String toString() {
+            return "count=" + mCount + " meanMicros=" + getMeanMicros() + " p50Micros=" + getPercentileMicros(0.5) + " p99Micros=" + getPercentileMicros(0.99);
+        }
+    }
+
+    /**
+     * The values of {@link ThreadTypeMetrics} at one moment
+     */
+    public static final class Snapshot implements INamed {
+        @NonNull
+        private final String mName;
+        private final long mTimeNanos;
+        private final long mCompletedCount;
+        private final long mFailedCount;
+        private final int mQueueDepth;
+        private final int mPeakQueueDepth;
+        @NonNull
+        private final HistogramSnapshot mWaitTime;
+        @NonNull
+        private final HistogramSnapshot mRunTime;
+
+        Snapshot(
+                @NonNull final String name,
+                final long timeNanos,
+                final long completedCount,
+                final long failedCount,
+                final int queueDepth,
+                final int peakQueueDepth,
+                @NonNull final HistogramSnapshot waitTime,
+                @NonNull final HistogramSnapshot runTime) {
+            this.mName = name;
+            this.mTimeNanos = timeNanos;
+            this.mCompletedCount = completedCount;
+            this.mFailedCount = failedCount;
+            this.mQueueDepth = queueDepth;
+            this.mPeakQueueDepth = peakQueueDepth;
+            this.mWaitTime = waitTime;
+            this.mRunTime = runTime;
+        }
+
+        /**
+         * @return the number of tasks which have finished running, including those which failed. Fused and
+         * inline chain steps are part of the task which ran them.
+         */
+        public long getCompletedCount() {
+            return mCompletedCount;
+        }
+
+        /**
+         * @return the number of tasks which ended with an error
+         */
+        public long getFailedCount() {
+            return mFailedCount;
+        }
+
+        /**
+         * @return the number of tasks waiting in the mQueue
+         */
+        public int getQueueDepth() {
+            return mQueueDepth;
+        }
+
+        /**
+         * @return the most tasks which have waited in the mQueue at one time
+         */
+        public int getPeakQueueDepth() {
+            return mPeakQueueDepth;
+        }
+
+        /**
+         * @return time from when each task was queued until it started
+         */
+        @NonNull
+        public HistogramSnapshot getWaitTime() {
+            return mWaitTime;
+        }
+
+        /**
+         * @return time each task took to run
+         */
+        @NonNull
+        public HistogramSnapshot getRunTime() {
+            return mRunTime;
+        }
+
+        /**
+         * @param previous an earlier snapshot of the same thread type
+         * @return tasks completed per second between the two snapshots
+         */
+        public double getThroughputPerSecond(@NonNull final Snapshot previous) {
+            final long elapsedNanos = mTimeNanos - previous.mTimeNanos;
+
+            if (elapsedNanos <= 0) {
+                return 0;
+            }
+
+            return (mCompletedCount - previous.mCompletedCount) * 1000000000.0 / elapsedNanos;
+        }
+
+        @Override // INamed
+        @NonNull
+        public String getName() {
+            return mName;
+        }
+
+        @Override // Object
+        public String toString() {
+            return mName + " completed=" + mCompletedCount + " failed=" + mFailedCount + " queueDepth=" + mQueueDepth
+                    + " peakQueueDepth=" + mPeakQueueDepth + "\n  wait: " + mWaitTime + "\n  run: " + mRunTime;
+        }
+    }
+}
@@ -6,21 +6,20 @@ This is open source for the common good. Please contribute improvements by pull
 package com.futurice.cascade.util;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
-import com.futurice.cascade.Async;
 import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.ITypedThread;
 import com.futurice.cascade.i.NotCallOrigin;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This is a marker class to aid in runtime tests.
  */
 @NotCallOrigin
-public class TypedThread extends Thread {
+public class TypedThread extends Thread implements ITypedThread {
     public static final ThreadGroup THREAD_GROUP = new ThreadGroup("ThreadTypeThreadGroup") {
         @Override
         public void uncaughtException(@NonNull final Thread t, @NonNull final Throwable throwable) {
@@ -28,20 +27,26 @@ public class TypedThread extends Thread {
         }
     };
     /*
-     * Each thread may belong to multiple threadTypes. At the moment we only track the
-     * first ThreadType which created it. But since the Thread may outlive the ThreadType
-     * (if used by other ThreadTypes) we use a WeakReference to allow the original
-     * ThreadType to be garbage collected.
+     * The ThreadType which created this thread. A thread may also run tasks for other ThreadTypes which
+     * share its executor, but it reports only this one.
      *
-     * TODO A better solution would be to track ThreadTypes split Threads without this potential for confusion. To be determined.
+     * This is a final field rather than a list of WeakReferences so that Async.currentThreadType() costs one
+     * field read and can be used freely on hot paths. The ThreadType owns the executor which owns this
+     * thread, so holding it strongly does not extend its life.
      */
-    private final CopyOnWriteArrayList<AltWeakReference<IThreadType>> threadTypes = new CopyOnWriteArrayList<>();
+    @NonNull
+    private final IThreadType mThreadType;
+    /*
+     * The ThreadType of a thread which can not be a TypedThread, such as a JVM virtual thread. It is set once
+     * when the thread starts, and read by Async.currentThreadType() only for threads which are not an ITypedThread.
+     */
+    private static final ThreadLocal<IThreadType> sCurrentThreadType = new ThreadLocal<>();
 
     public TypedThread(@NonNull final IThreadType threadType,
                        @NonNull final Runnable runnable) {
         super(THREAD_GROUP, runnable);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
     public TypedThread(@NonNull final IThreadType threadType,
@@ -49,14 +54,14 @@ public class TypedThread extends Thread {
                        @NonNull final String threadName) {
         super(THREAD_GROUP, runnable, threadName);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
     public TypedThread(@NonNull final IThreadType threadType,
                        @NonNull final String threadName) {
         super(THREAD_GROUP, threadName);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
     public TypedThread(@NonNull final IThreadType threadType,
@@ -64,7 +69,7 @@ public class TypedThread extends Thread {
                        @NonNull final Runnable runnable) {
         super(group, runnable);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
     public TypedThread(@NonNull final IThreadType threadType,
@@ -73,7 +78,7 @@ public class TypedThread extends Thread {
                        @NonNull final String threadName) {
         super(group, runnable, threadName);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
     public TypedThread(@NonNull final IThreadType threadType,
@@ -81,7 +86,7 @@ public class TypedThread extends Thread {
                        @NonNull final String threadName) {
         super(group, threadName);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
     public TypedThread(@NonNull final IThreadType threadType,
@@ -91,39 +96,47 @@ public class TypedThread extends Thread {
                        final long stackSize) {
         super(group, runnable, threadName, stackSize);
 
-        this.threadTypes.add(new AltWeakReference<>(threadType));
+        this.mThreadType = threadType;
     }
 
+    /**
+     * Wrap the task of a new thread which can not be a <code>TypedThread</code>, so that
+     * {@link com.futurice.cascade.Async#currentThreadType()} finds its thread type
+     *
+     * @param threadType which created the thread
+     * @param runnable   the task of the thread
+     * @return the task to start the thread with
+     */
     @NonNull
-    public List<IThreadType> getThreadTypes() {
-        final Iterator<AltWeakReference<IThreadType>> iterator = threadTypes.iterator();
-        final ArrayList<IThreadType> currenThreadTypes = new ArrayList<>(threadTypes.size());
-
-        while (iterator.hasNext()) {
-            final AltWeakReference<IThreadType> wr = iterator.next();
-            final IThreadType threadType = wr.get();
-
-            if (threadType != null) {
-                currenThreadTypes.add(threadType);
-            } else {
-                threadTypes.remove(wr);
-            }
-        }
+    static Runnable typedRunnable(
+            @NonNull final IThreadType threadType,
+            @NonNull final Runnable runnable) {
+        return () -> {
+            sCurrentThreadType.set(threadType); // The thread ends with the task, so this is never removed
+            runnable.run();
+        };
+    }
 
-        return currenThreadTypes;
+    /**
+     * @return the thread type of the current thread if it was started with {@link #typedRunnable(IThreadType, Runnable)},
+     * otherwise <code>null</code>
+     */
+    @Nullable
+    public static IThreadType getCurrentThreadType() {
+        return sCurrentThreadType.get();
     }
 
     @NonNull
-    public IThreadType getThreadType() {
-        final List<IThreadType> currentThreadTypes = getThreadTypes();
-        IThreadType currentThreadType = Async.NON_CASCADE_THREAD;
-
-        if (currentThreadTypes.size() == 1) {
-            currentThreadType = currentThreadTypes.get(0);
-        } else {
-            RCLog.v(this, currentThreadTypes.size() + " threadTypes for this Thread, can not disambiguate");
-        }
+    public List<IThreadType> getThreadTypes() {
+        return Collections.singletonList(mThreadType);
+    }
 
-        return currentThreadType;
+    /**
+     * @return the thread type which created this thread
+     */
+    @NonNull
+    @Override // ITypedThread
+    public IThreadType getThreadType() {
+        return mThreadType;
     }
 }
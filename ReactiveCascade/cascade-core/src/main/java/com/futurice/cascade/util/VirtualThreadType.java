@@ -0,0 +1,176 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link com.futurice.cascade.i.IThreadType} for blocking I/O which runs each task on a JVM virtual thread
+ * <p>
+ * A virtual thread which blocks on I/O releases its carrier OS thread, so thousands of concurrent blocking
+ * calls such as <code>NetUtil.get()</code> do not exhaust a pool. This is for use when the library runs on a
+ * Java 21 or later JVM, for example in server-side reuse and tests. Check {@link #isSupported()} first;
+ * Android does not have virtual threads.
+ * <p>
+ * If <code>inOrderExecution</code> is <code>false</code>, every task starts at once on its own virtual thread and
+ * there is no mQueue to re-order. If <code>true</code>, a single virtual thread at a time runs tasks
+ * one after another in the order they are queued, as {@link #isInOrderExecutor()} requires.
+ * <p>
+ * The JVM API is called by reflection since the library is compiled for older targets. Virtual threads
+ * can not be {@link TypedThread}s, so each one records its thread type in a {@link ThreadLocal} when it starts.
+ * {@link com.futurice.cascade.Async#currentThreadType()} reads it, so blocking and inline checks work as on
+ * other thread types.
+ */
+@NotCallOrigin
+public class VirtualThreadType extends AbstractThreadType {
+    private static final boolean sSupported = createVirtualThreadFactory("VirtualThreadProbe") != null;
+    private final boolean mInOrderExecution;
+
+    /**
+     * Create a new virtual thread type. Call only if {@link #isSupported()}.
+     *
+     * @param name             of the thread type, also used to name the threads, for debugging
+     * @param inOrderExecution <code>true</code> to run one task at a time in order
+     */
+    public VirtualThreadType(
+            @NonNull final String name,
+            final boolean inOrderExecution) {
+        this(name, inOrderExecution, new ImmutableValue<>());
+    }
+
+    private VirtualThreadType(
+            @NonNull final String name,
+            final boolean inOrderExecution,
+            @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
+        this(name, inOrderExecution, typedThreadFactory(requireVirtualThreadFactory(name + "Thread"), threadTypeImmutableValue));
+        threadTypeImmutableValue.set(this); // Threads are started only when the first task is submitted
+    }
+
+    private VirtualThreadType(
+            @NonNull final String name,
+            final boolean inOrderExecution,
+            @NonNull final ThreadFactory threadFactory) {
+        this(name, inOrderExecution, threadFactory, inOrderExecution ? new LinkedBlockingDeque<>() : null);
+    }
+
+    private VirtualThreadType(
+            @NonNull final String name,
+            final boolean inOrderExecution,
+            @NonNull final ThreadFactory threadFactory,
+            @Nullable final LinkedBlockingDeque<Runnable> queue) {
+        super(name, queue != null
+                ? new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, queue, threadFactory)
+                : newThreadPerTaskExecutor(threadFactory), queue);
+
+        this.mInOrderExecution = inOrderExecution;
+    }
+
+    /**
+     * @return <code>true</code> if the current JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return sSupported;
+    }
+
+    @NonNull
+    private static ThreadFactory requireVirtualThreadFactory(@NonNull final String threadNamePrefix) {
+        final ThreadFactory threadFactory = createVirtualThreadFactory(threadNamePrefix);
+
+        if (threadFactory == null) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later. Check VirtualThreadType.isSupported() first");
+        }
+
+        return threadFactory;
+    }
+
+    @NonNull
+    private static ThreadFactory typedThreadFactory(
+            @NonNull final ThreadFactory threadFactory,
+            @NonNull final ImmutableValue<IThreadType> threadTypeImmutableValue) {
+        return runnable -> threadFactory.newThread(TypedThread.typedRunnable(threadTypeImmutableValue.get(), runnable));
+    }
+
+    /**
+     * <code>Thread.ofVirtual().name(threadNamePrefix, 0).factory()</code>
+     *
+     * @param threadNamePrefix
+     * @return the factory, or <code>null</code> if virtual threads are not supported
+     */
+    @Nullable
+    private static ThreadFactory createVirtualThreadFactory(@NonNull final String threadNamePrefix) {
+        try {
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(namedBuilder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * <code>Executors.newThreadPerTaskExecutor(threadFactory)</code>
+     *
+     * @param threadFactory
+     * @return an executor which starts each task at once on a new thread
+     */
+    @NonNull
+    private static ExecutorService newThreadPerTaskExecutor(@NonNull final ThreadFactory threadFactory) {
+        try {
+            final Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            return (ExecutorService) method.invoke(null, threadFactory);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later. Check VirtualThreadType.isSupported() first", e);
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void run(@NonNull final Runnable runnable) {
+        if (executorService.isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+        if (admitted != null) {
+            executorService.execute(mMetrics.wrap(admitted));
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void runNext(@NonNull final Runnable runnable) {
+        if (mInOrderExecution) {
+            RCLog.v(this, "WARNING: runNext() on in-order IThreadType. This will be run FIFO only after previously queued tasks");
+        }
+        run(runnable); // Either there is no mQueue, or the order must be kept
+    }
+
+    @Override // IThreadType
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        return false; // Concurrent tasks start immediately, in-order tasks may not be re-ordered
+    }
+
+    @Override // IThreadType
+    public boolean isInOrderExecutor() {
+        return mInOrderExecution;
+    }
+}
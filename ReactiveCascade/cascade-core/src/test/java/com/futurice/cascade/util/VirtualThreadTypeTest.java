@@ -0,0 +1,164 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.AsyncBuilder;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IThreadType;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Run on a Java 21 or later JVM for the virtual thread tests to run rather than be skipped. See build.gradle.
+ */
+public class VirtualThreadTypeTest {
+    private static final String NOT_SUPPORTED = "Virtual threads are not supported on this JVM, run the tests on Java 21 or later";
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @BeforeClass
+    public static void setUpClass() {
+        if (AsyncBuilder.sAsyncBuilder == null) {
+            new AsyncBuilder().build();
+        }
+    }
+
+    @Test
+    public void testUnsupportedConstructorThrows() throws Exception {
+        assumeFalse("Virtual threads are supported on this JVM", VirtualThreadType.isSupported());
+
+        try {
+            new VirtualThreadType("VirtualTest", false);
+            failBecauseExceptionWasNotThrown(UnsupportedOperationException.class);
+        } catch (UnsupportedOperationException e) {
+            // Expected when the JVM does not have virtual threads
+        }
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        assumeTrue(NOT_SUPPORTED, VirtualThreadType.isSupported());
+
+        final VirtualThreadType virtualThreadType = new VirtualThreadType("VirtualTest", false);
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        try {
+            virtualThreadType.run(() -> saf.set("done"));
+            assertThat(saf.blockUntilDone(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            assertThat(saf.get()).isEqualTo("done");
+            assertThat(virtualThreadType.isInOrderExecutor()).isFalse();
+        } finally {
+            virtualThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testManyBlockingTasksRunConcurrently() throws Exception {
+        assumeTrue(NOT_SUPPORTED, VirtualThreadType.isSupported());
+
+        final int numberOfTasks = 1000;
+        final VirtualThreadType virtualThreadType = new VirtualThreadType("VirtualBlockingTest", false);
+        final CountDownLatch started = new CountDownLatch(numberOfTasks);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(numberOfTasks);
+
+        try {
+            for (int i = 0; i < numberOfTasks; i++) {
+                virtualThreadType.run(() -> {
+                    started.countDown();
+                    try {
+                        release.await(); // Every task blocks until all have started
+                        finished.countDown();
+                    } catch (InterruptedException e) {
+                        // End of test
+                    }
+                });
+            }
+            assertThat(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            release.countDown();
+            assertThat(finished.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            virtualThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testInOrderExecutor() throws Exception {
+        assumeTrue(NOT_SUPPORTED, VirtualThreadType.isSupported());
+
+        final VirtualThreadType virtualThreadType = new VirtualThreadType("VirtualInOrderTest", true);
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+        final Runnable second = () -> {
+            order.append("second");
+            saf.set(order.toString());
+        };
+
+        try {
+            assertThat(virtualThreadType.isInOrderExecutor()).isTrue();
+            virtualThreadType.run(() -> order.append("first,"));
+            virtualThreadType.runNext(second);
+            assertThat(saf.blockUntilDone(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            assertThat(saf.get()).isEqualTo("first,second");
+        } finally {
+            virtualThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testCurrentThreadType() throws Exception {
+        assumeTrue(NOT_SUPPORTED, VirtualThreadType.isSupported());
+
+        for (final boolean inOrderExecution : new boolean[]{false, true}) {
+            final VirtualThreadType virtualThreadType = new VirtualThreadType("VirtualCurrentTest", inOrderExecution);
+            final SettableAltFuture<IThreadType> saf = new SettableAltFuture<>(WORKER);
+
+            try {
+                virtualThreadType.run(() -> saf.set(Async.currentThreadType()));
+                assertThat(saf.blockUntilDone(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+                assertThat(saf.get()).isSameAs(virtualThreadType);
+            } finally {
+                virtualThreadType.shutdownNow("End of test", null, null, 0);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockingCapacityOnOwnThreadRunsInline() throws Exception {
+        assumeTrue(NOT_SUPPORTED, VirtualThreadType.isSupported());
+
+        final VirtualThreadType virtualThreadType = new VirtualThreadType("VirtualBlockTest", true);
+        final StringBuffer order = new StringBuffer();
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        virtualThreadType.setCapacity(1, IThreadType.OverflowPolicy.BLOCK);
+        try {
+            virtualThreadType.run(() -> {
+                order.append("A,");
+                virtualThreadType.run(() -> {
+                    order.append("B");
+                    finished.countDown();
+                });
+                virtualThreadType.run(() -> order.append("C,")); // The queue is full, and waiting for space would wait for this thread
+            });
+            assertThat(finished.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)).isTrue();
+            assertThat(order.toString()).isEqualTo("A,C,B");
+        } finally {
+            virtualThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+}
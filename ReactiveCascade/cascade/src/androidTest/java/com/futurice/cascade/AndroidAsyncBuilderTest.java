@@ -0,0 +1,64 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade;
+
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.support.annotation.CallSuper;
+import android.support.annotation.RequiresPermission;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.reactive.ReactiveInteger;
+import com.futurice.cascade.util.NetUtil;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+@LargeTest
+public class AndroidAsyncBuilderTest extends AsyncAndroidTestCase {
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
+    public void testNetReadConcurrencyFollowsConnectivityChange() throws Exception {
+        final AndroidAsyncBuilder builder = (AndroidAsyncBuilder) AsyncBuilder.sAsyncBuilder;
+        final ReactiveInteger netReadConcurrency = builder.getReactiveNetReadConcurrency();
+        assumeTrue("NET_READ concurrency follows the connection type only with ACCESS_WIFI_STATE", netReadConcurrency != null);
+        final ThreadPoolExecutor executor = (ThreadPoolExecutor) builder.getNetReadExecutorService(new ImmutableValue<>());
+        final int expected = NetUtil.getMaxNumberOfNetConnections(mContext);
+
+        netReadConcurrency.set(1);
+        awaitMaximumPoolSize(executor, 1);
+
+        // CONNECTIVITY_ACTION is a protected broadcast which only the system may send, so deliver it to the registered receiver
+        builder.mNetReadConcurrencyReceiver.onReceive(mContext, new Intent(ConnectivityManager.CONNECTIVITY_ACTION));
+        assertThat(netReadConcurrency.get()).isEqualTo(expected);
+        awaitMaximumPoolSize(executor, expected);
+        assertThat(executor.getCorePoolSize()).isEqualTo(expected);
+    }
+
+    private void awaitMaximumPoolSize(
+            final ThreadPoolExecutor executor,
+            final int size) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + getDefaultTimeoutMillis();
+
+        while (executor.getMaximumPoolSize() != size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10); // The subscription resizes on WORKER
+        }
+        assertThat(executor.getMaximumPoolSize()).isEqualTo(size);
+    }
+}
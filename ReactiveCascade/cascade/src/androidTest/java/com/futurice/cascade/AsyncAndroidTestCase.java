@@ -58,7 +58,7 @@ public class AsyncAndroidTestCase extends ActivityInstrumentationTestCase2<Activ
         super.setUp();
 
         if (!AsyncBuilder.isInitialized()) {
-            new AsyncBuilder(mContext)
+            new AndroidAsyncBuilder(mContext)
                     .setStrictMode(false)
                     .setShowErrorStackTraces(false)
                     .build();
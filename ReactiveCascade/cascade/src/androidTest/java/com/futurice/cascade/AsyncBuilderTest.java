@@ -11,6 +11,9 @@ import android.test.suitebuilder.annotation.LargeTest;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
 @LargeTest
 public class AsyncBuilderTest extends AsyncAndroidTestCase {
 
@@ -249,4 +252,18 @@ public class AsyncBuilderTest extends AsyncAndroidTestCase {
     public void testBuild() throws Exception {
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSetOriginSampleRate() throws Exception {
+        final AsyncBuilder asyncBuilder = new AsyncBuilder();
+
+        assertThat(asyncBuilder.getOriginSampleRate()).isEqualTo(1);
+        assertThat(asyncBuilder.setOriginSampleRate(16).getOriginSampleRate()).isEqualTo(16);
+        try {
+            asyncBuilder.setOriginSampleRate(0);
+            failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(asyncBuilder.getOriginSampleRate()).isEqualTo(16);
+        }
+    }
+}
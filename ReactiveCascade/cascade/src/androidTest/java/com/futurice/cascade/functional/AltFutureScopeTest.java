@@ -0,0 +1,135 @@
+package com.futurice.cascade.functional;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.util.DefaultThreadType;
+import com.futurice.cascade.util.IndexedBlockingDeque;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class AltFutureScopeTest extends AsyncAndroidTestCase {
+    private IndexedBlockingDeque<Runnable> queue;
+    private DefaultThreadType threadType;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        queue = new IndexedBlockingDeque<>();
+        threadType = new DefaultThreadType("ScopeTest", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        threadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testCancelRemovesQueuedSteps() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final AtomicInteger runCount = new AtomicInteger();
+        final AltFutureScope scope = new AltFutureScope();
+
+        threadType.run(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                // End of test
+            }
+        });
+        final List<IAltFuture<?, Integer>> altFutures = scope.call(() -> {
+            final List<IAltFuture<?, Integer>> list = new ArrayList<>();
+
+            for (int i = 0; i < 10; i++) {
+                list.add(threadType.then(runCount::incrementAndGet));
+            }
+            return list;
+        });
+
+        assertThat(scope.size()).isEqualTo(10);
+        assertThat(scope.cancel("Screen closed")).isTrue();
+        assertThat(scope.size()).isEqualTo(0);
+        assertThat(queue).isEmpty();
+        for (final IAltFuture<?, Integer> altFuture : altFutures) {
+            assertThat(altFuture.isCancelled()).isTrue();
+        }
+        blocker.countDown();
+        assertThat(awaitDone(threadType.then(runCount::get))).isEqualTo(0);
+    }
+
+    @Test
+    public void testJoinAfterCancel() throws Exception {
+        final AltFutureScope scope = new AltFutureScope();
+
+        scope.cancel("Screen closed");
+        assertThat(scope.call(() -> new SettableAltFuture<Integer>(WORKER)).isCancelled()).isTrue();
+        assertThat(AltFutureScope.current()).isNull();
+    }
+
+    @Test
+    public void testValueAfterCancel() throws Exception {
+        final AltFutureScope scope = new AltFutureScope();
+
+        scope.cancel("Screen closed");
+        assertThat(scope.call(() -> WORKER.from(1)).isCancelled()).isTrue();
+        assertThat(scope.call(() -> WORKER.from(1).map(i -> i + 1)).isCancelled()).isTrue();
+        assertThat(scope.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testDoneStepsLeaveScope() throws Exception {
+        final AltFutureScope scope = new AltFutureScope();
+        final IAltFuture<?, Integer> altFuture = scope.call(() -> WORKER.then(() -> 1).map(i -> i + 1));
+
+        assertThat(awaitDone(altFuture)).isEqualTo(2);
+        assertThat(scope.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void testNestedWorkAndInterrupt() throws Exception {
+        final AltFutureScope scope = new AltFutureScope();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean interrupted = new AtomicBoolean();
+        final AtomicReference<IAltFuture<?, Integer>> nested = new AtomicReference<>();
+        final AtomicReference<AltFutureScope> childScope = new AtomicReference<>();
+
+        scope.run(() -> threadType.then(() -> {
+            nested.set(new SettableAltFuture<>(WORKER));
+            childScope.set(new AltFutureScope());
+            started.countDown();
+            try {
+                Thread.sleep(10000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+        }));
+        started.await();
+        scope.cancel("Screen closed", true);
+
+        assertThat(nested.get().isCancelled()).isTrue();
+        assertThat(childScope.get().isCancelled()).isTrue();
+        assertThat(awaitDone(threadType.then(() -> Thread.currentThread().isInterrupted()))).isFalse();
+        assertThat(interrupted.get()).isTrue();
+    }
+}
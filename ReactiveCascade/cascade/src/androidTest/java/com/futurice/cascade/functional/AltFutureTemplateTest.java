@@ -0,0 +1,119 @@
+package com.futurice.cascade.functional;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.util.DefaultThreadType;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.futurice.cascade.Async.NET_READ;
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+@LargeTest
+public class AltFutureTemplateTest extends AsyncAndroidTestCase {
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void testRunManyTimes() throws Exception {
+        final AltFutureTemplate<String, Integer> template = new AltFutureTemplate<String, Integer>(WORKER, Integer::parseInt)
+                .map(i -> i * 2);
+        final List<IAltFuture<Integer, Integer>> results = new ArrayList<>();
+
+        assertThat(template.size()).isEqualTo(2);
+        for (int i = 0; i < 100; i++) {
+            results.add(template.fork(Integer.toString(i)));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertThat(awaitDone(results.get(i))).isEqualTo(i * 2);
+        }
+    }
+
+    @Test
+    public void testThreadTypeChange() throws Exception {
+        final AtomicReference<IThreadType> firstThreadType = new AtomicReference<>();
+        final AtomicReference<IThreadType> lastThreadType = new AtomicReference<>();
+        final AltFutureTemplate<Integer, Integer> template = new AltFutureTemplate<Integer, Integer>(WORKER, i -> i + 1)
+                .then(i -> firstThreadType.set(Async.currentThreadType()))
+                .then(NET_READ, i -> lastThreadType.set(Async.currentThreadType()));
+
+        assertThat(awaitDone(template.fork(1))).isEqualTo(2);
+        assertThat(firstThreadType.get()).isSameAs(WORKER);
+        assertThat(lastThreadType.get()).isSameAs(NET_READ);
+    }
+
+    @Test
+    public void testErrorSkipsLaterSteps() throws Exception {
+        final AtomicReference<Integer> reached = new AtomicReference<>();
+        final SettableAltFuture<Exception> error = new SettableAltFuture<>(WORKER);
+        final AltFutureTemplate<String, Integer> template = new AltFutureTemplate<String, Integer>(WORKER, Integer::parseInt)
+                .then(reached::set);
+
+        template.run("not a number", reached::set, error::set);
+        assertThat(awaitDone(error)).isInstanceOf(NumberFormatException.class);
+        assertThat(reached.get()).isNull();
+
+        assertThat(awaitDone(template.fork("42"))).isEqualTo(42);
+    }
+
+    @Test
+    public void testFullQueueCallsOnError() throws Exception {
+        final LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>();
+        final DefaultThreadType boundedThreadType = new DefaultThreadType("TemplateCapacityTest", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch gate = new CountDownLatch(1);
+        final AltFutureTemplate<String, Integer> template = new AltFutureTemplate<String, Integer>(boundedThreadType, Integer::parseInt);
+        final SettableAltFuture<Exception> error = new SettableAltFuture<>(WORKER);
+
+        boundedThreadType.setCapacity(1, IThreadType.OverflowPolicy.DROP_NEWEST);
+        try {
+            boundedThreadType.run(() -> {
+                started.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    // End of test
+                }
+            });
+            started.await();
+            final IAltFuture<Integer, Integer> queued = template.fork("1"); // Fills the mQueue
+            final IAltFuture<Integer, Integer> dropped = template.fork("2");
+            template.run("3", i -> error.set(new IllegalStateException("Dropped run completed")), error::set);
+
+            assertThat(awaitDone(error)).isInstanceOf(RejectedExecutionException.class);
+            try {
+                awaitDoneNoErrorStackTraces(dropped);
+                failBecauseExceptionWasNotThrown(ExecutionException.class);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+            }
+            gate.countDown();
+            assertThat(awaitDone(queued)).isEqualTo(1);
+        } finally {
+            gate.countDown();
+            boundedThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+}
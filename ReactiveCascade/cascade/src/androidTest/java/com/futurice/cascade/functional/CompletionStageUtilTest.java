@@ -0,0 +1,115 @@
+package com.futurice.cascade.functional;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.i.IActionR;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.ISettableAltFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.futurice.cascade.Async.SHOW_ERROR_STACK_TRACES;
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+@LargeTest
+public class CompletionStageUtilTest extends AsyncAndroidTestCase {
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void testToCompletionStage() throws Exception {
+        final CompletableFuture<Integer> completableFuture = CompletionStageUtil.toCompletionStage(WORKER.then(() -> 21).map(i -> i * 2));
+
+        assertThat(completableFuture.get(1, TimeUnit.SECONDS)).isEqualTo(42);
+    }
+
+    @Test
+    public void testToCompletionStageError() throws Exception {
+        SHOW_ERROR_STACK_TRACES = false;
+        try {
+            final IActionR<Integer> failingAction = () -> {
+                throw new IOException("Intentional test error");
+            };
+
+            try {
+                CompletionStageUtil.toCompletionStage(WORKER.then(failingAction)).get(1, TimeUnit.SECONDS);
+                failBecauseExceptionWasNotThrown(ExecutionException.class);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IOException.class);
+            }
+        } finally {
+            SHOW_ERROR_STACK_TRACES = true;
+        }
+    }
+
+    @Test
+    public void testToCompletionStageCancel() throws Exception {
+        final SettableAltFuture<Integer> settableAltFuture = new SettableAltFuture<>(WORKER);
+        final SettableAltFuture<Integer> cancelledAltFuture = new SettableAltFuture<>(WORKER);
+        final CompletableFuture<Integer> cancelledStage = CompletionStageUtil.toCompletionStage(cancelledAltFuture);
+
+        CompletionStageUtil.toCompletionStage(settableAltFuture).cancel(false);
+        assertThat(settableAltFuture.isCancelled()).isTrue();
+
+        cancelledAltFuture.cancel("Just because");
+        try {
+            cancelledStage.get(1, TimeUnit.SECONDS);
+            failBecauseExceptionWasNotThrown(CancellationException.class);
+        } catch (CancellationException e) {
+            assertThat(e.getMessage()).contains("Just because");
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testToCompletionStageOtherImplementationThrows() throws Exception {
+        final IAltFuture<?, Integer> otherAltFuture = (IAltFuture<?, Integer>) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{IAltFuture.class}, (proxy, method, args) -> null);
+
+        try {
+            CompletionStageUtil.toCompletionStage(otherAltFuture);
+            failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            // Expected, only the implementations in the functional package can be read directly
+        }
+    }
+
+    @Test
+    public void testFrom() throws Exception {
+        final CompletableFuture<Integer> completableFuture = new CompletableFuture<>();
+        final IAltFuture<?, Integer> altFuture = CompletionStageUtil.from(WORKER, completableFuture)
+                .map(i -> i + 1);
+
+        WORKER.run(() -> completableFuture.complete(41));
+        assertThat(awaitDone(altFuture)).isEqualTo(42);
+    }
+
+    @Test
+    public void testFromCancel() throws Exception {
+        final CompletableFuture<Integer> cancelledStage = new CompletableFuture<>();
+        final ISettableAltFuture<Integer> cancelledAltFuture = CompletionStageUtil.from(WORKER, cancelledStage);
+        final CompletableFuture<Integer> completableFuture = new CompletableFuture<>();
+
+        cancelledStage.cancel(false);
+        assertThat(cancelledAltFuture.isCancelled()).isTrue();
+
+        CompletionStageUtil.from(WORKER, completableFuture).cancel("Just because");
+        assertThat(completableFuture.isCancelled()).isTrue();
+    }
+}
@@ -4,46 +4,113 @@ import android.support.annotation.CallSuper;
 import android.test.suitebuilder.annotation.SmallTest;
 
 import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.util.DoubleQueue;
+import com.futurice.cascade.util.SignallingBlockingDeque;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 @SmallTest
 public class DoubleQueueTest extends AsyncAndroidTestCase {
+    private SignallingBlockingDeque<String> lowPriorityQueue;
+    private DoubleQueue<String> doubleQueue;
 
     @Before
     @CallSuper
     public void setUp() throws Exception {
         super.setUp();
+
+        lowPriorityQueue = new SignallingBlockingDeque<>();
+        doubleQueue = new DoubleQueue<>(lowPriorityQueue);
     }
 
     @Test
     public void testPeek() throws Exception {
-
+        assertThat(doubleQueue.peek()).isNull();
+        lowPriorityQueue.add("low");
+        assertThat(doubleQueue.peek()).isEqualTo("low");
+        doubleQueue.add("high");
+        assertThat(doubleQueue.peek()).isEqualTo("high");
     }
 
     @Test
     public void testPoll() throws Exception {
-
+        lowPriorityQueue.add("low");
+        doubleQueue.add("high");
+        assertThat(doubleQueue.poll()).isEqualTo("high");
+        assertThat(doubleQueue.poll()).isEqualTo("low");
+        assertThat(doubleQueue.poll()).isNull();
     }
 
     @Test
     public void testPoll1() throws Exception {
-
+        assertThat(doubleQueue.poll(10, TimeUnit.MILLISECONDS)).isNull();
+        lowPriorityQueue.add("low");
+        assertThat(doubleQueue.poll(10, TimeUnit.MILLISECONDS)).isEqualTo("low");
     }
 
     @Test
     public void testRemove() throws Exception {
-
+        lowPriorityQueue.add("low");
+        doubleQueue.add("high");
+        assertThat(doubleQueue.remove("low")).isTrue();
+        assertThat(doubleQueue.remove("high")).isTrue();
+        assertThat(doubleQueue.remove("high")).isFalse();
+        assertThat(lowPriorityQueue).isEmpty();
     }
 
     @Test
     public void testPut() throws Exception {
-
+        doubleQueue.put("high");
+        assertThat(doubleQueue.size()).isEqualTo(1);
+        assertThat(lowPriorityQueue).isEmpty();
     }
 
     @Test
     public void testTake() throws Exception {
+        doubleQueue.put("high");
+        assertThat(doubleQueue.take()).isEqualTo("high");
+    }
+
+    @Test
+    public void testTakeWakesOnLowPriorityInsert() throws Exception {
+        final AtomicReference<String> taken = new AtomicReference<>();
+        final Thread taker = new Thread(() -> {
+            try {
+                taken.set(doubleQueue.take());
+            } catch (InterruptedException e) {
+                // Test fails below
+            }
+        });
+
+        taker.start();
+        Thread.sleep(20);
+        lowPriorityQueue.add("low");
+        taker.join(1000);
+        assertThat(taken.get()).isEqualTo("low");
+    }
 
+    @Test
+    public void testTakeWakesOnLowPriorityAddAll() throws Exception {
+        final AtomicReference<String> taken = new AtomicReference<>();
+        final Thread taker = new Thread(() -> {
+            try {
+                taken.set(doubleQueue.take());
+            } catch (InterruptedException e) {
+                // Test fails below
+            }
+        });
+
+        taker.start();
+        Thread.sleep(20);
+        lowPriorityQueue.addAll(Arrays.asList("low1", "low2"));
+        taker.join(1000);
+        assertThat(taken.get()).isEqualTo("low1");
     }
-}
\ No newline at end of file
+}
@@ -3,9 +3,15 @@ package com.futurice.cascade.functional;
 import android.test.suitebuilder.annotation.LargeTest;
 
 import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.i.IAltFuture;
 
 import org.junit.Test;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
 @LargeTest
 public class RunnableAltFutureTest extends AsyncAndroidTestCase {
 
@@ -16,6 +22,40 @@ public class RunnableAltFutureTest extends AsyncAndroidTestCase {
 
     @Test
     public void testRun() throws Exception {
+        assertThat(awaitDone(new ActionRAltFuture<>(WORKER, () -> "A").fork())).isEqualTo("A");
+    }
 
+    @Test
+    public void testActionShapes() throws Exception {
+        final AtomicInteger sideEffects = new AtomicInteger();
+
+        assertThat(WORKER.then(() -> 1)).isInstanceOf(ActionRAltFuture.class);
+        assertThat(awaitDone(WORKER
+                .then(() -> 1)
+                .map(i -> i + 1)
+                .then(i -> {
+                    sideEffects.addAndGet(i);
+                })
+                .then(() -> {
+                    sideEffects.incrementAndGet();
+                })
+                .fork())).isEqualTo(2);
+        assertThat(sideEffects.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFanOut() throws Exception {
+        final AtomicInteger sum = new AtomicInteger();
+        final IAltFuture<?, Integer> source = WORKER.then(() -> 1);
+        final IAltFuture<?, Integer> first = source.map(i -> sum.addAndGet(i));
+        final IAltFuture<?, Integer> second = source.map(i -> sum.addAndGet(i * 10));
+        final IAltFuture<?, Integer> third = source.map(i -> sum.addAndGet(i * 100));
+
+        awaitDone(first.fork());
+        awaitDone(second);
+        awaitDone(third);
+        final IAltFuture<?, Integer> fourth = source.map(i -> sum.addAndGet(i * 1000)); // Added after the source is done
+        assertThat(awaitDone(fourth)).isEqualTo(1111);
+        assertThat(sum.get()).isEqualTo(1111);
     }
-}
\ No newline at end of file
+}
@@ -10,6 +10,8 @@ import com.futurice.cascade.i.IAltFuture;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.TimeUnit;
+
 import static com.futurice.cascade.Async.SHOW_ERROR_STACK_TRACES;
 import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 
@@ -217,6 +219,21 @@ public class SettableAltFutureTest extends AsyncAndroidTestCase {
 
     }
 
+    @Test
+    public void testTimedOutWaitersAreRemoved() throws Exception {
+        final SettableAltFuture<Integer> settableAltFuture = new SettableAltFuture<>(Async.WORKER);
+        settableAltFuture.whenDone(() -> {
+        });
+
+        for (int i = 0; i < 100; i++) {
+            assertFalse(settableAltFuture.blockUntilDone(1, TimeUnit.MILLISECONDS));
+        }
+        assertEquals(1, settableAltFuture.getWaiterCount()); // Only the whenDone() action
+        settableAltFuture.set(42);
+        assertTrue(settableAltFuture.blockUntilDone(1, TimeUnit.MILLISECONDS));
+        assertEquals(0, settableAltFuture.getWaiterCount());
+    }
+
     @Test
     public void testSet1() throws Exception {
 
@@ -7,6 +7,9 @@ import com.futurice.cascade.AsyncAndroidTestCase;
 import org.junit.Before;
 import org.junit.Test;
 
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
 @LargeTest
 public class ReactiveIntegerTest extends AsyncAndroidTestCase {
 
@@ -17,17 +20,32 @@ public class ReactiveIntegerTest extends AsyncAndroidTestCase {
 
     @Test
     public void testAddAndGet() throws Exception {
+        final ReactiveInteger reactiveInteger = new ReactiveInteger(WORKER, "AddTest", null, e -> {
+        });
 
+        reactiveInteger.set(100);
+        assertThat(reactiveInteger.addAndGet(100)).isEqualTo(200);
+        assertThat(reactiveInteger.addAndGet(100)).isEqualTo(300); // Outside the Integer cache
     }
 
     @Test
     public void testMultiplyAndGet() throws Exception {
+        final ReactiveInteger reactiveInteger = new ReactiveInteger(WORKER, "MultiplyTest", null, e -> {
+        });
 
+        reactiveInteger.set(1000);
+        assertThat(reactiveInteger.multiplyAndGet(3)).isEqualTo(3000);
     }
 
     @Test
     public void testIncrementAndGet() throws Exception {
+        final ReactiveInteger reactiveInteger = new ReactiveInteger(WORKER, "IncrementTest", null, e -> {
+        });
 
+        reactiveInteger.set(0);
+        for (int i = 1; i <= 200; i++) {
+            assertThat(reactiveInteger.incrementAndGet()).isEqualTo(i);
+        }
     }
 
     @Test
@@ -4,9 +4,15 @@ import android.test.suitebuilder.annotation.LargeTest;
 
 import com.futurice.cascade.AsyncAndroidTestCase;
 
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IReactiveSource;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
 @LargeTest
 public class ReactiveValueTest extends AsyncAndroidTestCase {
 
@@ -27,7 +33,15 @@ public class ReactiveValueTest extends AsyncAndroidTestCase {
 
     @Test
     public void testSet() throws Exception {
-
+        final ReactiveValue<String> reactiveValue = new ReactiveValue<>("SetTest", WORKER, null, null);
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+        final IReactiveSource<String> subscription = reactiveValue.subscribe(value -> {
+            saf.set(value);
+        });
+
+        reactiveValue.set("A");
+        assertThat(awaitDone(saf)).isEqualTo("A");
+        subscription.unsubscribeAll("End of test"); // Also keeps the weakly held subscription alive until here
     }
 
     @Test
@@ -1,12 +1,23 @@
 package com.futurice.cascade.util;
 
+import android.support.annotation.NonNull;
 import android.test.suitebuilder.annotation.LargeTest;
 
 import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.ActionRAltFuture;
+import com.futurice.cascade.functional.ImmutableValue;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IThreadType;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
 @LargeTest
 public class AbstractThreadTypeTest extends AsyncAndroidTestCase {
 
@@ -114,4 +125,138 @@ public class AbstractThreadTypeTest extends AsyncAndroidTestCase {
     public void testGetName() throws Exception {
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testInlineContinuation() throws Exception {
+        final AtomicInteger executeCount = new AtomicInteger();
+        final DefaultThreadType threadType = createCountingThreadType(executeCount);
+
+        try {
+            threadType.setInlineContinuationLimit(100);
+            assertThat(awaitDone(chain(threadType, 10))).isEqualTo(10);
+            assertThat(executeCount.get()).isLessThan(3);
+        } finally {
+            threadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testInlineContinuationLimit() throws Exception {
+        final AtomicInteger executeCount = new AtomicInteger();
+        final DefaultThreadType threadType = createCountingThreadType(executeCount);
+
+        try {
+            threadType.setInlineContinuationLimit(3);
+            assertThat(awaitDone(chain(threadType, 10))).isEqualTo(10);
+            assertThat(executeCount.get()).isGreaterThan(2);
+            assertThat(executeCount.get()).isLessThan(11);
+        } finally {
+            threadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testNoInlineContinuationByDefault() throws Exception {
+        final AtomicInteger executeCount = new AtomicInteger();
+        final DefaultThreadType threadType = createCountingThreadType(executeCount);
+
+        try {
+            assertThat(awaitDone(chain(threadType, 10))).isEqualTo(10);
+            assertThat(executeCount.get()).isGreaterThan(10);
+        } finally {
+            threadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testFusedSteps() throws Exception {
+        final AtomicInteger executeCount = new AtomicInteger();
+        final DefaultThreadType threadType = createCountingThreadType(executeCount);
+
+        try {
+            threadType.setFusedStepLimit(100);
+            assertThat(awaitDone(unforkedChain(threadType, 10).fork())).isEqualTo(10);
+            assertThat(executeCount.get()).isEqualTo(1);
+        } finally {
+            threadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testFusedStepLimit() throws Exception {
+        final AtomicInteger executeCount = new AtomicInteger();
+        final DefaultThreadType threadType = createCountingThreadType(executeCount);
+
+        try {
+            threadType.setFusedStepLimit(3);
+            assertThat(awaitDone(unforkedChain(threadType, 10).fork())).isEqualTo(10);
+            assertThat(executeCount.get()).isEqualTo(3);
+        } finally {
+            threadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testFanOutIsNotFused() throws Exception {
+        final AtomicInteger executeCount = new AtomicInteger();
+        final DefaultThreadType threadType = createCountingThreadType(executeCount);
+
+        try {
+            threadType.setFusedStepLimit(100);
+            final IAltFuture<?, Integer> source = new ActionRAltFuture<>(threadType, () -> 1);
+            final IAltFuture<?, Integer> first = source.map(x -> x + 1);
+            final IAltFuture<?, Integer> second = source.map(x -> x + 2);
+
+            assertThat(awaitDone(first.fork())).isEqualTo(2);
+            assertThat(awaitDone(second)).isEqualTo(3);
+            assertThat(executeCount.get()).isEqualTo(3);
+        } finally {
+            threadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @NonNull
+    private IAltFuture<?, Integer> chain(
+            @NonNull final IThreadType threadType,
+            final int length) {
+        IAltFuture<?, Integer> altFuture = threadType.then(() -> 0);
+
+        for (int i = 0; i < length; i++) {
+            altFuture = altFuture.map(x -> x + 1);
+        }
+
+        return altFuture.fork();
+    }
+
+    @NonNull
+    private IAltFuture<?, Integer> unforkedChain(
+            @NonNull final IThreadType threadType,
+            final int length) {
+        IAltFuture<?, Integer> altFuture = new ActionRAltFuture<>(threadType, () -> 0);
+
+        for (int i = 0; i < length; i++) {
+            altFuture = altFuture.map(x -> x + 1);
+        }
+
+        return altFuture;
+    }
+
+    @NonNull
+    private DefaultThreadType createCountingThreadType(@NonNull final AtomicInteger executeCount) {
+        final IndexedBlockingDeque<Runnable> queue = new IndexedBlockingDeque<>();
+        final ImmutableValue<IThreadType> threadTypeImmutableValue = new ImmutableValue<>();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 2, 1000, TimeUnit.MILLISECONDS, queue,
+                runnable -> new TypedThread(threadTypeImmutableValue.get(), runnable, "InlineTestThread")) {
+            @Override // Executor
+            public void execute(@NonNull final Runnable command) {
+                executeCount.incrementAndGet();
+                super.execute(command);
+            }
+        };
+        final DefaultThreadType threadType = new DefaultThreadType("InlineTest", executor, queue);
+
+        threadTypeImmutableValue.set(threadType);
+
+        return threadType;
+    }
+}
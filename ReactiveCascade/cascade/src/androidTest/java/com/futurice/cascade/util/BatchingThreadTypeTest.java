@@ -0,0 +1,105 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class BatchingThreadTypeTest extends AsyncAndroidTestCase {
+    private BatchingThreadType batchingThreadType;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        batchingThreadType = new BatchingThreadType("BatchingTest", 2, BatchingThreadType.DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        batchingThreadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        batchingThreadType.run(() -> saf.set("done"));
+        assertThat(awaitDone(saf)).isEqualTo("done");
+    }
+
+    @Test
+    public void testRunFromWithinBatch() throws Exception {
+        final SettableAltFuture<Integer> saf = new SettableAltFuture<>(WORKER);
+        final AtomicInteger count = new AtomicInteger();
+
+        batchingThreadType.run(new Runnable() {
+            @Override
+            public void run() {
+                if (count.incrementAndGet() < 1000) {
+                    batchingThreadType.run(this);
+                } else {
+                    saf.set(count.get());
+                }
+            }
+        });
+        assertThat(awaitDone(saf)).isEqualTo(1000);
+    }
+
+    @Test
+    public void testErrorDoesNotLoseBatch() throws Exception {
+        final BatchingThreadType singleThreadType = new BatchingThreadType("SingleBatchingTest", 1, BatchingThreadType.DEFAULT_MAX_BATCH_SIZE);
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        try {
+            singleThreadType.run(() -> {
+                throw new AssertionError("Intentional test error");
+            });
+            singleThreadType.run(() -> saf.set("done"));
+            assertThat(awaitDone(saf)).isEqualTo("done");
+            assertThat(awaitDone(singleThreadType.then(() -> 42))).isEqualTo(42);
+        } finally {
+            singleThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testMetricsWithoutWrapper() throws Exception {
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        batchingThreadType.getMetrics().setEnabled(true);
+        batchingThreadType.run(() -> {
+        });
+        batchingThreadType.run(() -> saf.set("done"));
+        awaitDone(saf);
+        Thread.sleep(10); // The last task is counted after it returns
+
+        final ThreadTypeMetrics.Snapshot snapshot = batchingThreadType.getMetrics().getSnapshot();
+        assertThat(snapshot.getCompletedCount()).isEqualTo(2);
+        assertThat(snapshot.getRunTime().getCount()).isEqualTo(2);
+        assertThat(snapshot.getWaitTime().getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testThen() throws Exception {
+        assertThat(awaitDone(batchingThreadType.then(() -> 42))).isEqualTo(42);
+    }
+
+    @Test
+    public void testIsInOrderExecutor() throws Exception {
+        assertThat(batchingThreadType.isInOrderExecutor()).isFalse();
+    }
+}
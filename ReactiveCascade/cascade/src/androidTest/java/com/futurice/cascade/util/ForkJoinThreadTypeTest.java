@@ -0,0 +1,87 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.Async;
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class ForkJoinThreadTypeTest extends AsyncAndroidTestCase {
+    private ForkJoinThreadType forkJoinThreadType;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        forkJoinThreadType = new ForkJoinThreadType("ForkJoinTest", 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        forkJoinThreadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testRun() throws Exception {
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        forkJoinThreadType.run(() -> saf.set("done"));
+        assertThat(awaitDone(saf)).isEqualTo("done");
+    }
+
+    @Test
+    public void testRunNextFromPoolThreadIsLifo() throws Exception {
+        final ForkJoinThreadType singleThreadType = new ForkJoinThreadType("SingleForkJoinTest", 1);
+        final SettableAltFuture<Integer> saf = new SettableAltFuture<>(WORKER);
+        final AtomicInteger order = new AtomicInteger();
+        final Runnable first = () -> order.compareAndSet(0, 1);
+        final Runnable second = () -> {
+            order.compareAndSet(0, 2);
+            saf.set(order.get());
+        };
+
+        try {
+            singleThreadType.run(() -> {
+                singleThreadType.runNext(first);
+                singleThreadType.runNext(second);
+            });
+            assertThat(awaitDone(saf)).isEqualTo(2);
+        } finally {
+            singleThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testThen() throws Exception {
+        assertThat(awaitDone(forkJoinThreadType.then(() -> 42))).isEqualTo(42);
+    }
+
+    @Test
+    public void testCurrentThreadType() throws Exception {
+        assertThat(awaitDone(forkJoinThreadType.then(Async::currentThreadType))).isSameAs(forkJoinThreadType);
+    }
+
+    @Test
+    public void testIsInOrderExecutor() throws Exception {
+        assertThat(forkJoinThreadType.isInOrderExecutor()).isFalse();
+    }
+
+    @Test
+    public void testMoveToHeadOfQueue() throws Exception {
+        assertThat(forkJoinThreadType.moveToHeadOfQueue(() -> {
+        })).isFalse();
+    }
+}
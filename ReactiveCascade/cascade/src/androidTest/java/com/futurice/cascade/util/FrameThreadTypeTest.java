@@ -0,0 +1,157 @@
+package com.futurice.cascade.util;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class FrameThreadTypeTest extends AsyncAndroidTestCase {
+    private FrameThreadType frameThreadType;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        frameThreadType = new FrameThreadType("FrameTest", new Handler(Looper.getMainLooper()), FrameThreadType.DEFAULT_FRAME_BUDGET_MILLIS);
+    }
+
+    @Test
+    public void testRunsOnUiThread() throws Exception {
+        final SettableAltFuture<Boolean> saf = new SettableAltFuture<>(WORKER);
+
+        frameThreadType.run(() -> saf.set(Looper.myLooper() == Looper.getMainLooper()));
+
+        assertThat(awaitDone(saf)).isTrue();
+    }
+
+    @Test
+    public void testBatchRunsInOneFrame() throws Exception {
+        final FrameThreadType batchThreadType = new FrameThreadType("FrameBatchTest", new Handler(Looper.getMainLooper()), 1000);
+        final List<Integer> frames = Collections.synchronizedList(new ArrayList<>());
+        final SettableAltFuture<List<Integer>> saf = new SettableAltFuture<>(WORKER);
+
+        // Queue from the UI thread so that no frame can start before all tasks are queued
+        new Handler(Looper.getMainLooper()).post(() -> {
+            for (int i = 0; i < 100; i++) {
+                batchThreadType.run(() -> frames.add(batchThreadType.mFrameCount));
+            }
+            batchThreadType.run(() -> saf.set(frames));
+        });
+
+        assertThat(awaitDone(saf)).hasSize(100);
+        assertThat(new HashSet<>(frames)).hasSize(1);
+    }
+
+    @Test
+    public void testCarryOverToNextFrame() throws Exception {
+        final List<Integer> frames = Collections.synchronizedList(new ArrayList<>());
+        final SettableAltFuture<List<Integer>> saf = new SettableAltFuture<>(WORKER);
+
+        new Handler(Looper.getMainLooper()).post(() -> {
+            for (int i = 0; i < 10; i++) {
+                frameThreadType.run(() -> {
+                    final long start = System.nanoTime();
+                    while (System.nanoTime() - start < 3000000) {
+                        // 10 tasks use more than one frame budget in total
+                    }
+                    frames.add(frameThreadType.mFrameCount);
+                });
+            }
+            frameThreadType.run(() -> saf.set(frames));
+        });
+
+        final List<Integer> result = awaitDone(saf);
+        assertThat(result).hasSize(10);
+        final List<Integer> sorted = new ArrayList<>(result);
+        Collections.sort(sorted);
+        assertThat(result).isEqualTo(sorted); // Frames only move forward
+        assertThat(new HashSet<>(result).size()).isGreaterThan(1);
+    }
+
+    @Test
+    public void testHandlerFallback() throws Exception {
+        final AtomicInteger posts = new AtomicInteger();
+        final Handler countingHandler = new Handler(Looper.getMainLooper()) {
+            @Override
+            public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+                posts.incrementAndGet();
+                return super.sendMessageAtTime(msg, uptimeMillis);
+            }
+        };
+        final FrameThreadType handlerThreadType = new FrameThreadType("FrameHandlerTest", countingHandler, 1000, false);
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        new Handler(Looper.getMainLooper()).post(() -> {
+            for (int i = 0; i < 10; i++) {
+                final int j = i;
+                handlerThreadType.run(() -> order.append(j));
+            }
+            handlerThreadType.run(() -> saf.set(order.toString()));
+        });
+
+        assertThat(awaitDone(saf)).isEqualTo("0123456789");
+        assertThat(posts.get()).isEqualTo(1);
+        assertThat(handlerThreadType.mFrameCount).isEqualTo(1);
+    }
+
+    @Test
+    public void testShutdownNowReturnsQueuedTasks() throws Exception {
+        final SettableAltFuture<List<Runnable>> saf = new SettableAltFuture<>(WORKER);
+
+        new Handler(Looper.getMainLooper()).post(() -> {
+            for (int i = 0; i < 3; i++) {
+                frameThreadType.run(() -> {
+                });
+            }
+            saf.set(frameThreadType.shutdownNow("Test", null, null, 0));
+        });
+
+        assertThat(awaitDone(saf)).hasSize(3);
+        assertThat(frameThreadType.isShutdown()).isTrue();
+        frameThreadType.run(() -> {
+        });
+        assertThat(frameThreadType.shutdownNow("Test", null, null, 0)).isEmpty();
+    }
+
+    @Test
+    public void testShutdownRunsQueuedTasks() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            frameThreadType.run(count::incrementAndGet);
+        }
+        assertThat(frameThreadType.shutdown(getDefaultTimeoutMillis(), null).get()).isTrue();
+        assertThat(count.get()).isEqualTo(3);
+        frameThreadType.run(count::incrementAndGet);
+        assertThat(frameThreadType.shutdownNow("Test", null, null, 0)).isEmpty();
+    }
+
+    @Test
+    public void testThen() throws Exception {
+        assertThat(awaitDone(frameThreadType.then(() -> 42))).isEqualTo(42);
+    }
+
+    @Test
+    public void testIsInOrderExecutor() throws Exception {
+        assertThat(frameThreadType.isInOrderExecutor()).isTrue();
+    }
+}
@@ -0,0 +1,101 @@
+package com.futurice.cascade.util;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.ICancellable;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+@LargeTest
+public class HashedWheelTimerTest extends AsyncAndroidTestCase {
+
+    @Test
+    public void testSchedule() throws Exception {
+        final SettableAltFuture<Long> saf = new SettableAltFuture<>(WORKER);
+        final long start = System.currentTimeMillis();
+
+        WORKER.schedule(100, TimeUnit.MILLISECONDS, () -> saf.set(System.currentTimeMillis() - start));
+        assertThat(awaitDone(saf)).isGreaterThanOrEqualTo(100);
+    }
+
+    @Test
+    public void testScheduleManyOnOneTimer() throws Exception {
+        final HashedWheelTimer timer = new HashedWheelTimer(5, 16);
+        final SettableAltFuture<Integer> saf = new SettableAltFuture<>(WORKER);
+        final AtomicInteger count = new AtomicInteger();
+
+        try {
+            for (int i = 0; i < 1000; i++) {
+                timer.schedule(WORKER, () -> {
+                    if (count.incrementAndGet() == 1000) {
+                        saf.set(count.get());
+                    }
+                }, TimeUnit.MILLISECONDS.toNanos(i % 200), 0);
+            }
+            assertThat(awaitDone(saf)).isEqualTo(1000);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    @Test
+    public void testStopCancelsWaitingTasks() throws Exception {
+        final HashedWheelTimer timer = new HashedWheelTimer(5, 16);
+        final AtomicInteger count = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            timer.schedule(WORKER, count::incrementAndGet, TimeUnit.SECONDS.toNanos(10), 0);
+        }
+        final List<ICancellable> cancelled = timer.stop();
+
+        assertThat(cancelled).hasSize(10);
+        for (ICancellable cancellable : cancelled) {
+            assertThat(cancellable.isCancelled()).isTrue();
+        }
+        assertThat(count.get()).isEqualTo(0);
+        try {
+            timer.schedule(WORKER, count::incrementAndGet, 0, 0);
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            // Expected, the timer is stopped
+        }
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        final ICancellable cancellable = WORKER.schedule(50, TimeUnit.MILLISECONDS, count::incrementAndGet);
+
+        assertThat(cancellable.cancel("Test cancel")).isTrue();
+        assertThat(cancellable.isCancelled()).isTrue();
+        Thread.sleep(100);
+        assertThat(count.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void testScheduleAtFixedRate() throws Exception {
+        final SettableAltFuture<Integer> saf = new SettableAltFuture<>(WORKER);
+        final AtomicInteger count = new AtomicInteger();
+        final ICancellable cancellable = WORKER.scheduleAtFixedRate(0, 20, TimeUnit.MILLISECONDS, () -> {
+            if (count.incrementAndGet() == 5) {
+                saf.set(count.get());
+            }
+        });
+
+        try {
+            assertThat(awaitDone(saf)).isEqualTo(5);
+        } finally {
+            cancellable.cancel("End of test");
+        }
+    }
+}
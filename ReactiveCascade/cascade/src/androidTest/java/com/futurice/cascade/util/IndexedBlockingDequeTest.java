@@ -0,0 +1,141 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SmallTest
+public class IndexedBlockingDequeTest extends AsyncAndroidTestCase {
+    private IndexedBlockingDeque<String> deque;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        deque = new IndexedBlockingDeque<>();
+    }
+
+    @Test
+    public void testFifo() throws Exception {
+        deque.add("a");
+        deque.add("b");
+        deque.addFirst("c");
+
+        assertThat(deque.size()).isEqualTo(3);
+        assertThat(deque.take()).isEqualTo("c");
+        assertThat(deque.take()).isEqualTo("a");
+        assertThat(deque.pollLast()).isEqualTo("b");
+        assertThat(deque.poll(1, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void testMoveToHead() throws Exception {
+        deque.add("a");
+        deque.add("b");
+        deque.add("c");
+
+        assertThat(deque.moveToHead("c")).isTrue();
+        assertThat(deque.moveToHead("x")).isFalse();
+        assertThat(deque.take()).isEqualTo("c");
+        assertThat(deque.containsTask("c")).isFalse();
+        assertThat(deque.moveToHead("c")).isFalse();
+        assertThat(deque.take()).isEqualTo("a");
+    }
+
+    @Test
+    public void testDuplicates() throws Exception {
+        deque.add("a");
+        deque.add("b");
+        deque.add("a");
+
+        assertThat(deque.remove("a")).isTrue();
+        assertThat(deque.containsTask("a")).isTrue();
+        assertThat(deque.moveToHead("a")).isTrue();
+        assertThat(deque.take()).isEqualTo("a");
+        assertThat(deque.containsTask("a")).isFalse();
+        assertThat(deque.take()).isEqualTo("b");
+    }
+
+    @Test
+    public void testIteratorRemove() throws Exception {
+        deque.add("a");
+        deque.add("b");
+        deque.add("c");
+
+        final Iterator<String> iterator = deque.iterator();
+        assertThat(iterator.next()).isEqualTo("a");
+        assertThat(iterator.next()).isEqualTo("b");
+        iterator.remove();
+
+        final List<String> drained = new ArrayList<>();
+        deque.drainTo(drained);
+        assertThat(drained).containsExactly("a", "c");
+        assertThat(deque.containsTask("b")).isFalse();
+    }
+
+    @Test
+    public void testListenerSignalledOnInsert() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+
+        deque.addListener(count::incrementAndGet);
+        deque.add("a");
+        deque.addFirst("b");
+        deque.put("c");
+
+        assertThat(count.get()).isEqualTo(3);
+    }
+
+    @Test
+    public void testMoveToHeadOfQueueOnThreadType() throws Exception {
+        final IndexedBlockingDeque<Runnable> queue = new IndexedBlockingDeque<>();
+        final DefaultThreadType threadType = new DefaultThreadType("IndexedTest", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+        final Runnable first = () -> {
+        };
+        final Runnable second = () -> {
+        };
+
+        threadType.getMetrics().setEnabled(true);
+        queue.add(threadType.getMetrics().wrap(first));
+        queue.add(threadType.getMetrics().wrap(second));
+
+        assertThat(threadType.moveToHeadOfQueue(second)).isTrue();
+        assertThat(AbstractThreadType.isTaskFor(queue.peek(), second)).isTrue();
+        queue.clear();
+        threadType.shutdownNow("End of test", null, null, 0);
+    }
+
+    @Test
+    public void testRemoveFromQueueOnThreadType() throws Exception {
+        final IndexedBlockingDeque<Runnable> queue = new IndexedBlockingDeque<>();
+        final DefaultThreadType threadType = new DefaultThreadType("IndexedTest", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+        final Runnable first = () -> {
+        };
+        final Runnable second = () -> {
+        };
+
+        threadType.getMetrics().setEnabled(true);
+        queue.add(threadType.getMetrics().wrap(first));
+        queue.add(threadType.getMetrics().wrap(second));
+
+        assertThat(threadType.removeFromQueue(first)).isTrue();
+        assertThat(threadType.removeFromQueue(first)).isFalse();
+        assertThat(queue.size()).isEqualTo(1);
+        assertThat(threadType.getMetrics().getSnapshot().getQueueDepth()).isEqualTo(1);
+        queue.clear();
+        threadType.shutdownNow("End of test", null, null, 0);
+    }
+}
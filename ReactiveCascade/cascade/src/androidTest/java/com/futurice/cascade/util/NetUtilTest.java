@@ -227,6 +227,12 @@ public class NetUtilTest extends AsyncAndroidTestCase {
         assertThat(getNetUtil().getMaxNumberOfNetConnections()).isGreaterThan(1);
     }
 
+    @Test
+    @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
+    public void testGetMaxNumberOfNetConnectionsForContext() throws Exception {
+        assertThat(NetUtil.getMaxNumberOfNetConnections(mContext)).isEqualTo(getNetUtil().getMaxNumberOfNetConnections());
+    }
+
     @Test
     @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
     public void testIsWifi() throws Exception {
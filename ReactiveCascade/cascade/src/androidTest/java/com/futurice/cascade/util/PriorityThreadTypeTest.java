@@ -0,0 +1,132 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.RunnableAltFuture;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IAltFuture;
+import com.futurice.cascade.i.IPrioritized;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class PriorityThreadTypeTest extends AsyncAndroidTestCase {
+    private PriorityThreadType priorityThreadType;
+    private CountDownLatch blockLatch;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        priorityThreadType = new PriorityThreadType("PriorityTest", 1, 3, 1, 60000);
+        blockLatch = new CountDownLatch(1);
+        priorityThreadType.run(0, () -> {
+            try {
+                blockLatch.await();
+            } catch (InterruptedException e) {
+                // End of test
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        blockLatch.countDown();
+        priorityThreadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testRunInPriorityOrder() throws Exception {
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        priorityThreadType.run(2, () -> {
+            order.append("low");
+            saf.set(order.toString());
+        });
+        priorityThreadType.run(() -> order.append("default,"));
+        priorityThreadType.run(0, () -> order.append("high,"));
+        blockLatch.countDown();
+        assertThat(awaitDone(saf)).isEqualTo("high,default,low");
+    }
+
+    @Test
+    public void testRunNext() throws Exception {
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+        final Runnable next = () -> order.append("next,");
+
+        priorityThreadType.run(() -> {
+            order.append("first");
+            saf.set(order.toString());
+        });
+        priorityThreadType.runNext(next);
+        blockLatch.countDown();
+        assertThat(awaitDone(saf)).isEqualTo("next,first");
+    }
+
+    @Test
+    public void testAgingPreventsStarvation() throws Exception {
+        final PriorityThreadType agingThreadType = new PriorityThreadType("AgingTest", 1, 2, 0, 1);
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        try {
+            agingThreadType.run(0, () -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    // End of test
+                }
+            });
+            agingThreadType.run(1, () -> order.append("old,"));
+            Thread.sleep(20);
+            agingThreadType.run(0, () -> {
+                order.append("new");
+                saf.set(order.toString());
+            });
+            latch.countDown();
+            assertThat(awaitDone(saf)).isEqualTo("old,new");
+        } finally {
+            agingThreadType.shutdownNow("End of test", null, null, 0);
+        }
+    }
+
+    @Test
+    public void testChainInheritsPriority() throws Exception {
+        final IAltFuture<?, String> head = new RunnableAltFuture<>(priorityThreadType, () -> "head")
+                .setPriority(0);
+        final IAltFuture<String, String> tail = head.map(s -> s + "Tail");
+
+        assertThat(tail.getPriority()).isEqualTo(0);
+        assertThat(new RunnableAltFuture<>(priorityThreadType, () -> "").getPriority()).isEqualTo(IPrioritized.PRIORITY_UNSET);
+    }
+
+    @Test
+    public void testMoveToHeadOfQueue() throws Exception {
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+        final Runnable moved = () -> order.append("moved,");
+
+        priorityThreadType.run(() -> {
+            order.append("first");
+            saf.set(order.toString());
+        });
+        priorityThreadType.run(moved);
+        assertThat(priorityThreadType.moveToHeadOfQueue(moved)).isTrue();
+        blockLatch.countDown();
+        assertThat(awaitDone(saf)).isEqualTo("moved,first");
+    }
+}
@@ -0,0 +1,109 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.support.annotation.NonNull;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IThreadType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class QueueCapacityTest extends AsyncAndroidTestCase {
+    private DefaultThreadType threadType;
+    private CountDownLatch gate;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        final LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>();
+        threadType = new DefaultThreadType("CapacityTest", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+        gate = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        gate.countDown();
+        threadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    /**
+     * Occupy the only thread until the gate opens, then queue tasks which append to the result
+     */
+    private String fillAndRun(
+            @NonNull final IThreadType.OverflowPolicy overflowPolicy,
+            final int numberOfTasks) throws Exception {
+        final StringBuffer sb = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        threadType.setCapacity(2, overflowPolicy);
+        threadType.run(() -> {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        });
+        Thread.sleep(50);
+        for (int i = 0; i < numberOfTasks; i++) {
+            final int j = i;
+            try {
+                threadType.run(() -> sb.append(j));
+            } catch (RejectedExecutionException e) {
+                sb.append('R');
+            }
+        }
+        gate.countDown();
+        threadType.setCapacity(Integer.MAX_VALUE, overflowPolicy);
+        threadType.run(() -> saf.set(sb.toString()));
+
+        return awaitDone(saf);
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        threadType.getMetrics().setEnabled(true);
+        assertThat(fillAndRun(IThreadType.OverflowPolicy.DROP_NEWEST, 4)).isEqualTo("01");
+        assertThat(threadType.getMetrics().getSnapshot().getFailedCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        assertThat(fillAndRun(IThreadType.OverflowPolicy.DROP_OLDEST, 4)).isEqualTo("23");
+    }
+
+    @Test
+    public void testRunOnCaller() throws Exception {
+        assertThat(fillAndRun(IThreadType.OverflowPolicy.RUN_ON_CALLER, 4)).isEqualTo("2301");
+    }
+
+    @Test
+    public void testFail() throws Exception {
+        assertThat(fillAndRun(IThreadType.OverflowPolicy.FAIL, 4)).isEqualTo("RR01");
+    }
+
+    @Test
+    public void testQueueOverflowStateError() throws Exception {
+        final QueueOverflowStateError stateError = new QueueOverflowStateError(threadType, 2);
+
+        assertThat(stateError.getCapacity()).isEqualTo(2);
+        assertThat(stateError.getThreadTypeName()).isEqualTo("CapacityTest");
+        assertThat(stateError.getException()).isInstanceOf(RejectedExecutionException.class);
+    }
+}
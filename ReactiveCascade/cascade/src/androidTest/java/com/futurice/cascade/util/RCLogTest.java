@@ -0,0 +1,55 @@
+package com.futurice.cascade.util;
+
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.ImmutableValue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class RCLogTest extends AsyncAndroidTestCase {
+
+    @Test
+    public void testSameCallStackSharesOrigin() throws Exception {
+        final List<ImmutableValue<String>> origins = new ArrayList<>();
+
+        for (int i = 0; i < 2; i++) {
+            origins.add(RCLog.originAsync(1)); // Same call stack each time
+        }
+        assertThat(origins.get(0)).isSameAs(origins.get(1));
+        assertThat(origins.get(0)).isNotSameAs(RCLog.originAsync(1));
+    }
+
+    @Test
+    public void testCachedCallSitesAreLimited() throws Exception {
+        final StackTraceElement[] stackTraceElements = Thread.currentThread().getStackTrace();
+        final StackTraceElement last = stackTraceElements[stackTraceElements.length - 1];
+
+        for (int i = 0; i < RCLog.MAX_CACHED_CALL_SITES + 10; i++) {
+            final StackTraceElement[] uniqueStackTraceElements = stackTraceElements.clone();
+
+            uniqueStackTraceElements[uniqueStackTraceElements.length - 1] = new StackTraceElement(last.getClassName(), last.getMethodName(), last.getFileName(), 100000 + i);
+            RCLog.originAsync(uniqueStackTraceElements);
+        }
+
+        assertThat(RCLog.getCachedCallSiteCount()).isEqualTo(RCLog.MAX_CACHED_CALL_SITES);
+    }
+
+    @Test
+    public void testUnsampledOrigin() throws Exception {
+        int sampledCount = 0;
+
+        for (int i = 0; i < 8; i++) {
+            if (RCLog.originAsync(4) != RCLog.UNSAMPLED_ORIGIN) {
+                sampledCount++;
+            }
+        }
+        assertThat(sampledCount).isEqualTo(2);
+    }
+}
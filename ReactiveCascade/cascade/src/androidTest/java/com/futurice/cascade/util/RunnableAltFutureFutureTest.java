@@ -3,10 +3,24 @@ package com.futurice.cascade.util;
 import android.test.suitebuilder.annotation.LargeTest;
 
 import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IActionR;
+import com.futurice.cascade.i.IAltFuture;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.futurice.cascade.Async.SHOW_ERROR_STACK_TRACES;
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
 @LargeTest
 public class RunnableAltFutureFutureTest extends AsyncAndroidTestCase {
 
@@ -17,7 +31,15 @@ public class RunnableAltFutureFutureTest extends AsyncAndroidTestCase {
 
     @Test
     public void testCancel() throws Exception {
-
+        final SettableAltFuture<Integer> settableAltFuture = new SettableAltFuture<>(WORKER);
+
+        WORKER.run(() -> settableAltFuture.cancel("Just because"));
+        try {
+            new AltFutureFuture<>(settableAltFuture).get(1, TimeUnit.SECONDS);
+            failBecauseExceptionWasNotThrown(CancellationException.class);
+        } catch (CancellationException e) {
+            assertThat(e.getMessage()).contains("Just because");
+        }
     }
 
     @Test
@@ -32,7 +54,10 @@ public class RunnableAltFutureFutureTest extends AsyncAndroidTestCase {
 
     @Test
     public void testGet() throws Exception {
+        final SettableAltFuture<Integer> settableAltFuture = new SettableAltFuture<>(WORKER);
 
+        WORKER.run(() -> settableAltFuture.set(42));
+        assertThat(new AltFutureFuture<>(settableAltFuture).get()).isEqualTo(42);
     }
 
     @Test
@@ -42,6 +67,31 @@ public class RunnableAltFutureFutureTest extends AsyncAndroidTestCase {
 
     @Test
     public void testGet1() throws Exception {
+        SHOW_ERROR_STACK_TRACES = false;
+        try {
+            final IActionR<Integer> failingAction = () -> {
+                throw new IOException("Intentional test error");
+            };
+            final IAltFuture<?, Integer> downchain = WORKER.then(failingAction).map(i -> i + 1);
+
+            try {
+                new AltFutureFuture<>(downchain).get(1, TimeUnit.SECONDS);
+                failBecauseExceptionWasNotThrown(ExecutionException.class);
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IOException.class);
+            }
+        } finally {
+            SHOW_ERROR_STACK_TRACES = true;
+        }
+    }
 
+    @Test
+    public void testGetTimeout() throws Exception {
+        try {
+            new AltFutureFuture<>(new SettableAltFuture<Integer>(WORKER)).get(10, TimeUnit.MILLISECONDS);
+            failBecauseExceptionWasNotThrown(TimeoutException.class);
+        } catch (TimeoutException e) {
+            // Expected
+        }
     }
-}
\ No newline at end of file
+}
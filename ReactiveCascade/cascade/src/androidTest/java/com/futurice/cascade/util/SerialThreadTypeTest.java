@@ -0,0 +1,109 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.AsyncBuilder;
+import com.futurice.cascade.functional.SettableAltFuture;
+import com.futurice.cascade.i.IThreadType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class SerialThreadTypeTest extends AsyncAndroidTestCase {
+    private SerialThreadType serialThreadType;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        serialThreadType = new SerialThreadType("SerialTest", WORKER);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        serialThreadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testRunInOrder() throws Exception {
+        final StringBuffer order = new StringBuffer();
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        for (int i = 0; i < 100; i++) {
+            final int j = i;
+            serialThreadType.run(() -> order.append(j).append(','));
+        }
+        serialThreadType.run(() -> saf.set(order.toString()));
+
+        final StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            expected.append(i).append(',');
+        }
+        assertThat(awaitDone(saf)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void testThen() throws Exception {
+        assertThat(awaitDone(serialThreadType.then(() -> 42))).isEqualTo(42);
+    }
+
+    @Test
+    public void testIsInOrderExecutor() throws Exception {
+        assertThat(serialThreadType.isInOrderExecutor()).isTrue();
+    }
+
+    @Test
+    public void testSameKeySameThreadType() throws Exception {
+        final Object key = "someKey";
+
+        assertThat(AsyncBuilder.sAsyncBuilder.getKeyedSerialThreadType(key)).isSameAs(AsyncBuilder.sAsyncBuilder.getKeyedSerialThreadType("someKey"));
+    }
+
+    @Test
+    public void testHandOffIgnoresFullUnderlyingQueue() throws Exception {
+        final LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>();
+        final DefaultThreadType underlying = new DefaultThreadType("SerialTestUnderlying", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+        final SerialThreadType serial = new SerialThreadType("SerialTestFull", underlying);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final StringBuffer order = new StringBuffer();
+
+        try {
+            underlying.setCapacity(1, IThreadType.OverflowPolicy.DROP_NEWEST);
+            underlying.run(() -> {
+                started.countDown();
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    // End of test
+                }
+            });
+            started.await();
+            underlying.run(() -> order.append('-')); // Fills the capacity
+            for (int i = 0; i < 3; i++) {
+                final int j = i;
+                serial.run(() -> order.append(j));
+            }
+            blocker.countDown();
+
+            assertThat(awaitDone(serial.then(order::toString))).isEqualTo("-012");
+        } finally {
+            serial.shutdownNow("End of test", null, null, 0);
+            underlying.shutdownNow("End of test", null, null, 0);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.futurice.cascade.util;
+
+import android.support.annotation.CallSuper;
+import android.test.suitebuilder.annotation.LargeTest;
+
+import com.futurice.cascade.AsyncAndroidTestCase;
+import com.futurice.cascade.functional.SettableAltFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@LargeTest
+public class ThreadTypeMetricsTest extends AsyncAndroidTestCase {
+    private DefaultThreadType threadType;
+
+    @Before
+    @CallSuper
+    public void setUp() throws Exception {
+        super.setUp();
+
+        final LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>();
+        threadType = new DefaultThreadType("MetricsTest", new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue), queue);
+        threadType.getMetrics().setEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        threadType.shutdownNow("End of test", null, null, 0);
+        super.tearDown();
+    }
+
+    @Test
+    public void testCompletedCount() throws Exception {
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        threadType.run(() -> {
+        });
+        threadType.run(() -> saf.set("done"));
+        awaitDone(saf);
+        Thread.sleep(10); // The last task is counted after it returns
+
+        final ThreadTypeMetrics.Snapshot snapshot = threadType.getMetrics().getSnapshot();
+        assertThat(snapshot.getCompletedCount()).isEqualTo(2);
+        assertThat(snapshot.getFailedCount()).isEqualTo(0);
+        assertThat(snapshot.getQueueDepth()).isEqualTo(0);
+        assertThat(snapshot.getPeakQueueDepth()).isGreaterThan(0);
+        assertThat(snapshot.getWaitTime().getCount()).isEqualTo(2);
+        assertThat(snapshot.getRunTime().getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedCount() throws Exception {
+        awaitDone(threadType.then(() -> {
+        }));
+        threadType.execute(() -> {
+            throw new Exception("Intentional test exception");
+        });
+        awaitDone(threadType.then(() -> {
+        }));
+
+        assertThat(threadType.getMetrics().getSnapshot().getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        assertThat(new ThreadTypeMetrics("DefaultMetricsTest").isEnabled()).isFalse();
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        threadType.getMetrics().setEnabled(false);
+        awaitDone(threadType.then(() -> 42));
+
+        assertThat(threadType.getMetrics().getSnapshot().getCompletedCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void testPercentile() throws Exception {
+        final SettableAltFuture<String> saf = new SettableAltFuture<>(WORKER);
+
+        threadType.run(() -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+            saf.set("done");
+        });
+        awaitDone(saf);
+        Thread.sleep(10);
+
+        assertThat(threadType.getMetrics().getSnapshot().getRunTime().getPercentileMicros(0.5)).isGreaterThanOrEqualTo(4096);
+    }
+}
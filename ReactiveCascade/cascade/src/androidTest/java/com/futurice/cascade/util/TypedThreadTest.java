@@ -2,11 +2,15 @@ package com.futurice.cascade.util;
 
 import android.test.suitebuilder.annotation.LargeTest;
 
+import com.futurice.cascade.Async;
 import com.futurice.cascade.AsyncAndroidTestCase;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import static com.futurice.cascade.Async.WORKER;
+import static org.assertj.core.api.Assertions.assertThat;
+
 @LargeTest
 public class TypedThreadTest extends AsyncAndroidTestCase {
 
@@ -17,11 +21,17 @@ public class TypedThreadTest extends AsyncAndroidTestCase {
 
     @Test
     public void testGetThreadTypes() throws Exception {
-
+        assertThat(new TypedThread(WORKER, "TestThread").getThreadTypes()).containsExactly(WORKER);
     }
 
     @Test
     public void testGetThreadType() throws Exception {
+        assertThat(new TypedThread(WORKER, "TestThread").getThreadType()).isSameAs(WORKER);
+    }
 
+    @Test
+    public void testCurrentThreadType() throws Exception {
+        assertThat(awaitDone(WORKER.then(Async::currentThreadType))).isSameAs(WORKER);
+        assertThat(Async.currentThreadType()).isSameAs(Async.NON_CASCADE_THREAD);
     }
 }
\ No newline at end of file
@@ -0,0 +1,206 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.os.Handler;
+import android.os.StrictMode;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+
+import com.futurice.cascade.i.CallOrigin;
+import com.futurice.cascade.i.IReactiveSource;
+import com.futurice.cascade.i.IThreadType;
+import com.futurice.cascade.reactive.ReactiveInteger;
+import com.futurice.cascade.util.AbstractThreadType;
+import com.futurice.cascade.util.AndroidLog;
+import com.futurice.cascade.util.FrameThreadType;
+import com.futurice.cascade.util.NetUtil;
+import com.futurice.cascade.util.PlatformLog;
+import com.futurice.cascade.util.UIExecutorService;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * The {@link AsyncBuilder} for Android applications
+ * <p>
+ * {@link Async#UI} runs on the main Looper, log lines go to the system log and {@link #isStrictMode()}
+ * turns on {@link StrictMode}. If this builder creates the default {@link Async#NET_READ}, its concurrency
+ * follows {@link NetUtil#getMaxNumberOfNetConnections(Context)} as the connection type changes. The current
+ * limit is {@link #getReactiveNetReadConcurrency()}.
+ * <code><pre>
+ * .. Application.onCreate ..
+ * new AndroidAsyncBuilder(this).build();
+ * </pre></code>
+ */
+@CallOrigin
+public class AndroidAsyncBuilder extends AsyncBuilder {
+    private static final String TAG = AndroidAsyncBuilder.class.getSimpleName();
+    public final Context mContext;
+    private boolean mUseFrameAlignedUi = false;
+    @Nullable
+    private ReactiveInteger mNetReadConcurrency; // Set by build() if the NET_READ concurrency follows the connection type
+    @Nullable
+    private IReactiveSource<Integer> mNetReadConcurrencySubscription; // Held to keep the subscription from being garbage collected
+    @Nullable
+    @VisibleForTesting
+    BroadcastReceiver mNetReadConcurrencyReceiver;
+
+    /**
+     * Create a new <code>AndroidAsyncBuilder</code> that will run as long as the specified
+     * {@link android.content.Context} will run.
+     * <p>
+     * Unless you have reason to do otherwise, you probably want to pass
+     * {@link android.app.Activity#getApplicationContext()} to ensure that the asynchronous
+     * actions last past the end of the current {@link android.app.Activity}. If you do so,
+     * you can for effeciency only create the one instance for the entire application lifecycle
+     * by for example setting a static variable the first time the <code>AndroidAsyncBuilder</code>
+     * is used.
+     *
+     * @param context
+     */
+    public AndroidAsyncBuilder(@NonNull final Context context) {
+        super();
+
+        PlatformLog.setLog(new AndroidLog());
+        Context c = context;
+        try {
+            c = context.getApplicationContext();
+        } catch (NullPointerException e) {
+            // Needed for instrumentation setup with Android test runner
+        }
+        this.mContext = c;
+    }
+
+    /**
+     * Check if {@link Async#UI} will be a {@link FrameThreadType}
+     *
+     * @return mode
+     */
+    public boolean isUseFrameAlignedUi() {
+        return mUseFrameAlignedUi;
+    }
+
+    /**
+     * Set whether the default {@link Async#UI} should be a {@link FrameThreadType}. UI tasks are then
+     * collected and run together once per display frame, within a time budget, instead of each being
+     * posted as its own message to the main Looper.
+     * <p>
+     * The default from is <code>false</code>
+     *
+     * @param enabled mode
+     * @return the builder, for chaining
+     */
+    @NonNull
+    public AndroidAsyncBuilder setUseFrameAlignedUi(final boolean enabled) {
+        PlatformLog.v(TAG, "setUseFrameAlignedUi(" + enabled + ")");
+        this.mUseFrameAlignedUi = enabled;
+
+        return this;
+    }
+
+    @NonNull
+    @Override // AsyncBuilder
+    protected IThreadType createUiThreadType() {
+        if (mUseFrameAlignedUi) {
+            return new FrameThreadType("UIThreadType", new Handler(mContext.getMainLooper()), FrameThreadType.DEFAULT_FRAME_BUDGET_MILLIS);
+        }
+
+        return super.createUiThreadType();
+    }
+
+    @NonNull
+    @Override // AsyncBuilder
+    protected ExecutorService createUiExecutorService() {
+        return new UIExecutorService(new Handler(mContext.getMainLooper()));
+    }
+
+    @NonNull
+    @Override // AsyncBuilder
+    protected Thread getDefaultUiThread() {
+        Thread thread = Thread.currentThread();
+        try {
+            thread = mContext.getMainLooper().getThread();
+        } catch (NullPointerException e) {
+            // Needed for Google instrumentation test runner
+        }
+
+        return thread;
+    }
+
+    @NonNull
+    @Override // AsyncBuilder
+    public Async build() {
+        final Async async = super.build();
+        final IThreadType netReadThreadType = getCreatedNetReadThreadType();
+
+        if (netReadThreadType instanceof AbstractThreadType) {
+            registerNetReadConcurrencyReceiver((AbstractThreadType) netReadThreadType);
+        }
+
+        return async;
+    }
+
+    /**
+     * The concurrency of the default {@link Async#NET_READ}. It is set each time the connection type changes,
+     * and {@link Async#NET_READ} is resized to match.
+     *
+     * @return the current {@link NetUtil#getMaxNumberOfNetConnections(Context)} as a reactive value, or
+     * <code>null</code> before {@link #build()}, if {@link Async#NET_READ} was set by the application or if
+     * the ACCESS_WIFI_STATE permission is missing
+     */
+    @Nullable
+    public ReactiveInteger getReactiveNetReadConcurrency() {
+        return mNetReadConcurrency;
+    }
+
+    /**
+     * Resize the default {@link Async#NET_READ} now and each time the connection type changes. There is one
+     * receiver for the life of the application, so it is never unregistered.
+     *
+     * @param netReadThreadType the thread type this builder created
+     */
+    private void registerNetReadConcurrencyReceiver(@NonNull final AbstractThreadType netReadThreadType) {
+        if (mContext.checkCallingOrSelfPermission(Manifest.permission.ACCESS_WIFI_STATE) != PackageManager.PERMISSION_GRANTED) {
+            PlatformLog.v(TAG, "No ACCESS_WIFI_STATE permission, NET_READ concurrency will not follow the connection type");
+            return;
+        }
+
+        final ReactiveInteger netReadConcurrency = new ReactiveInteger(Async.WORKER, "NetReadConcurrency", null, e ->
+                PlatformLog.e(TAG, "Problem changing the NET_READ concurrency", e));
+        mNetReadConcurrencySubscription = netReadConcurrency.subscribe(netReadThreadType::setMaximumConcurrency);
+        netReadConcurrency.set(NetUtil.getMaxNumberOfNetConnections(mContext));
+        mNetReadConcurrency = netReadConcurrency;
+        mNetReadConcurrencyReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(
+                    @NonNull final Context context,
+                    @NonNull final Intent intent) {
+                netReadConcurrency.set(NetUtil.getMaxNumberOfNetConnections(mContext)); // Fires only if changed
+            }
+        };
+        mContext.registerReceiver(mNetReadConcurrencyReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    @Override // AsyncBuilder
+    protected void applyStrictMode() {
+        StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                .detectAll()
+                .penaltyDeath()
+                .build());
+        StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                .detectAll()
+                .penaltyDeath()
+                .build());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import com.futurice.cascade.i.ILog;
+
+/**
+ * Write {@link PlatformLog} lines to the Android system log
+ */
+public class AndroidLog implements ILog {
+    @Override // ILog
+    public void v(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        Log.v(tag, message);
+    }
+
+    @Override // ILog
+    public void d(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        Log.d(tag, message);
+    }
+
+    @Override // ILog
+    public void d(
+            @NonNull final String tag,
+            @NonNull final String message,
+            @NonNull final Throwable t) {
+        Log.d(tag, message, t);
+    }
+
+    @Override // ILog
+    public void i(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        Log.i(tag, message);
+    }
+
+    @Override // ILog
+    public void e(
+            @NonNull final String tag,
+            @NonNull final String message) {
+        Log.e(tag, message);
+    }
+
+    @Override // ILog
+    public void e(
+            @NonNull final String tag,
+            @NonNull final String message,
+            @NonNull final Throwable t) {
+        Log.e(tag, message, t);
+    }
+}
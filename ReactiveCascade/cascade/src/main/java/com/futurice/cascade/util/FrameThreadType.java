@@ -0,0 +1,282 @@
+/*
+This file is part of Reactive Cascade which is released under The MIT License.
+See license.txt or http://reactivecascade.com for details.
+This is open source for the common good. Please contribute improvements by pull request or contact paul.houghton@futurice.com
+*/
+package com.futurice.cascade.util;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.VisibleForTesting;
+import android.view.Choreographer;
+
+import com.futurice.cascade.i.IAction;
+import com.futurice.cascade.i.NotCallOrigin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An {@link com.futurice.cascade.i.IThreadType} for the system UI thread which runs the waiting UI work
+ * together once per display frame
+ * <p>
+ * {@link UIExecutorService} posts every task as its own {@link Handler} message. When many values update
+ * at once, for example a list of reactive views, each update is a separate Looper dispatch and they can
+ * crowd out drawing. Here tasks collect in a mQueue and one {@link Choreographer} frame callback runs
+ * them just before the next frame is drawn. At most <code>frameBudgetMillis</code> is spent per frame; the
+ * remaining tasks carry over to the next frame so that drawing is not delayed. At least one task runs
+ * each frame however long it takes.
+ * <p>
+ * Tasks run one at a time in the order they are added. Before API 16 there is no {@link Choreographer},
+ * so each batch is run from one {@link Handler} message instead.
+ * <p>
+ * The UI thread itself never stops. {@link #shutdown(long, IAction)} and
+ * {@link #shutdownNow(String, IAction, IAction, long)} only stop this thread type from accepting and
+ * running more tasks.
+ * <p>
+ * Enable this as {@link com.futurice.cascade.Async#UI} with
+ * {@link com.futurice.cascade.AndroidAsyncBuilder#setUseFrameAlignedUi(boolean)}.
+ */
+@NotCallOrigin
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public class FrameThreadType extends AbstractThreadType {
+    public static final long DEFAULT_FRAME_BUDGET_MILLIS = 8; // About half of a 60Hz frame, the rest is left for layout and drawing
+    private static final boolean CHOREOGRAPHER_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+    @NonNull
+    private final Handler mHandler;
+    private final long mFrameBudgetNanos;
+    private final boolean mUseChoreographer;
+    private final AtomicBoolean mFrameScheduled = new AtomicBoolean(false);
+    private volatile boolean mShutdown = false;
+    @VisibleForTesting
+    volatile int mFrameCount = 0; // Number of drains so far, written only on the UI thread
+    @Nullable
+    private volatile Choreographer mChoreographer; // Set on the UI thread the first time a frame is needed
+    private final Runnable mDrainRunnable = () -> drain(System.nanoTime());
+    private Choreographer.FrameCallback mFrameCallback; // Created lazily, the interface does not exist before API 16
+    private final Runnable mPostFrameCallback = this::postFrameCallback;
+
+    /**
+     * Create a new frame aligned thread type
+     *
+     * @param name              of the thread type, for debugging
+     * @param handler           a {@link Handler} on the main Looper
+     * @param frameBudgetMillis the most time used to run tasks in each frame, for example
+     *                          {@link #DEFAULT_FRAME_BUDGET_MILLIS}
+     */
+    public FrameThreadType(
+            @NonNull final String name,
+            @NonNull final Handler handler,
+            final long frameBudgetMillis) {
+        this(name, handler, frameBudgetMillis, CHOREOGRAPHER_SUPPORTED);
+    }
+
+    /**
+     * Create a new frame aligned thread type
+     *
+     * @param name              of the thread type, for debugging
+     * @param handler           a {@link Handler} on the main Looper
+     * @param frameBudgetMillis the most time used to run tasks in each frame
+     * @param useChoreographer  <code>false</code> to run each batch from a {@link Handler} message as
+     *                          before API 16
+     */
+    @VisibleForTesting
+    FrameThreadType(
+            @NonNull final String name,
+            @NonNull final Handler handler,
+            final long frameBudgetMillis,
+            final boolean useChoreographer) {
+        super(name, new UIExecutorService(handler), new LinkedBlockingQueue<>());
+
+        if (frameBudgetMillis < 1) {
+            RCLog.throwIllegalArgumentException(this, "frameBudgetMillis=" + frameBudgetMillis + " is illegal, must be > 0");
+        }
+        this.mHandler = handler;
+        this.mFrameBudgetNanos = TimeUnit.MILLISECONDS.toNanos(frameBudgetMillis);
+        this.mUseChoreographer = useChoreographer && CHOREOGRAPHER_SUPPORTED;
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void run(@NonNull final Runnable runnable) {
+        if (isShutdown()) {
+            return;
+        }
+
+        final Runnable admitted = admit(runnable);
+
+        if (admitted != null) {
+            mQueue.add(mMetrics.wrap(admitted));
+            scheduleFrame();
+        }
+    }
+
+    @Override // IThreadType
+    @NotCallOrigin
+    public void runNext(@NonNull final Runnable runnable) {
+        RCLog.v(this, "WARNING: runNext() on in-order IThreadType. This will be run FIFO only after previously queued tasks");
+        run(runnable);
+    }
+
+    @Override // IThreadType
+    public boolean moveToHeadOfQueue(@NonNull final Runnable runnable) {
+        return false; // In-order tasks may not be re-ordered
+    }
+
+    @Override // IThreadType
+    public boolean isInOrderExecutor() {
+        return true;
+    }
+
+    @Override // IThreadType
+    public boolean isShutdown() {
+        return mShutdown; // The UIExecutorService never shuts down
+    }
+
+    /**
+     * Stop accepting new tasks. The tasks already queued still run in the following frames.
+     *
+     * @param timeout             milliseconds to wait for the queued tasks to finish
+     * @param afterShutdownAction run on a dedicated thread after the queued tasks finish, if that is
+     *                            within the timeout
+     * @param <IN>                the type of input argument expected by the action
+     * @return a future which is <code>true</code> if the queued tasks finished within the timeout
+     */
+    @Override // IThreadType
+    @NonNull
+    public <IN> Future<Boolean> shutdown(
+            final long timeout,
+            @Nullable final IAction<IN> afterShutdownAction) {
+        if (timeout < 1) {
+            RCLog.throwIllegalArgumentException(this, "shutdown(" + timeout + ") is illegal, time must be > 0");
+        }
+        RCLog.i(this, "shutdown " + timeout);
+        mShutdown = true;
+        final CountDownLatch drained = new CountDownLatch(1);
+        mQueue.add(drained::countDown); // After all tasks already queued
+        scheduleFrame();
+        final FutureTask<Boolean> futureTask = new FutureTask<>(() -> {
+            boolean terminated = drained.await(timeout, TimeUnit.MILLISECONDS);
+
+            if (terminated && afterShutdownAction != null) {
+                try {
+                    afterShutdownAction.call();
+                } catch (Exception e) {
+                    RCLog.e(this, "Problem during afterShutdownAction", e);
+                    terminated = false;
+                }
+            }
+            return terminated;
+        });
+        (new Thread(futureTask, "Shutdown ThreadType " + getName())).start();
+
+        return futureTask;
+    }
+
+    /**
+     * Stop accepting new tasks and remove those which have not yet started
+     *
+     * @return the tasks which will not be run
+     */
+    @Override // IThreadType
+    @NonNull
+    public <IN> List<Runnable> shutdownNow(
+            @NonNull final String reason,
+            @Nullable final IAction<IN> actionOnDedicatedThreadAfterAlreadyStartedTasksComplete,
+            @Nullable final IAction<IN> actionOnDedicatedThreadIfTimeout,
+            final long timeoutMillis) {
+        RCLog.i(this, "shutdownNow: reason=" + reason);
+        mShutdown = true;
+        final List<Runnable> pendingActions = new ArrayList<>();
+        mQueue.drainTo(pendingActions);
+
+        if (actionOnDedicatedThreadAfterAlreadyStartedTasksComplete != null) {
+            final CountDownLatch started = new CountDownLatch(1);
+            mHandler.post(started::countDown); // After the task now running, if any, returns to the Looper
+            new Thread(() -> {
+                try {
+                    if (started.await(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                        actionOnDedicatedThreadAfterAlreadyStartedTasksComplete.call();
+                    } else if (actionOnDedicatedThreadIfTimeout != null) {
+                        actionOnDedicatedThreadIfTimeout.call();
+                    }
+                } catch (Exception e) {
+                    RCLog.e(this, "Problem in shutdownNow, reason=" + reason, e);
+                }
+            }, "shutdownNow" + reason)
+                    .start();
+        }
+
+        return pendingActions;
+    }
+
+    /**
+     * Ask for one drain of the mQueue, unless one is already pending
+     */
+    private void scheduleFrame() {
+        if (!mFrameScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (!mUseChoreographer) {
+            mHandler.post(mDrainRunnable);
+        } else if (mChoreographer != null) {
+            postFrameCallback();
+        } else {
+            mHandler.post(mPostFrameCallback); // Choreographer.getInstance() must be called on the UI thread
+        }
+    }
+
+    /**
+     * {@link Choreographer#postFrameCallback(Choreographer.FrameCallback)} may be called from any thread
+     * once the UI thread instance is known
+     */
+    private void postFrameCallback() {
+        Choreographer choreographer = mChoreographer;
+
+        if (choreographer == null) {
+            choreographer = Choreographer.getInstance();
+            mFrameCallback = frameTimeNanos -> drain(System.nanoTime());
+            mChoreographer = choreographer; // Volatile write publishes mFrameCallback
+        }
+        choreographer.postFrameCallback(mFrameCallback);
+    }
+
+    /**
+     * Run waiting tasks until the mQueue is empty or this frame's budget is used
+     *
+     * @param startNanos when this frame's work started
+     */
+    @NotCallOrigin
+    private void drain(final long startNanos) {
+        mFrameCount++;
+        try {
+            Runnable runnable;
+
+            do {
+                runnable = mQueue.poll();
+                if (runnable == null) {
+                    break;
+                }
+                try {
+                    runnable.run();
+                } catch (Exception e) {
+                    RCLog.e(this, "Problem running frame task " + runnable, e);
+                }
+            } while (System.nanoTime() - startNanos < mFrameBudgetNanos);
+        } finally {
+            mFrameScheduled.set(false);
+            if (!mQueue.isEmpty()) {
+                scheduleFrame(); // Carry over to the next frame
+            }
+        }
+    }
+}
@@ -58,6 +58,10 @@ import static com.futurice.cascade.Async.NET_WRITE;
 
 /**
  * OkHttp convenience wrapper methods
+ * <p>
+ * The concurrency of the default {@link com.futurice.cascade.Async#NET_READ} follows
+ * {@link #getMaxNumberOfNetConnections()} as the connection type changes. This is done once for the
+ * application by {@link com.futurice.cascade.AndroidAsyncBuilder}, not by each <code>NetUtil</code>.
  */
 public final class NetUtil extends Origin {
     private static final int MAX_NUMBER_OF_WIFI_NET_CONNECTIONS = 6;
@@ -505,14 +509,32 @@ public final class NetUtil extends Origin {
         return response;
     }
 
-    //TODO Use max number of NET connections on startup split adapt as these change
     @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
     public int getMaxNumberOfNetConnections() {
-        if (isWifi()) {
+        return getMaxNumberOfNetConnections(mWifiManager, mTelephonyManager);
+    }
+
+    /**
+     * The number of concurrent net reads suitable for the current connection, without creating a <code>NetUtil</code>
+     *
+     * @param context of the application
+     * @return the current {@link #getMaxNumberOfNetConnections()}
+     */
+    @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
+    public static int getMaxNumberOfNetConnections(@NonNull final Context context) {
+        return getMaxNumberOfNetConnections(
+                (WifiManager) context.getSystemService(Context.WIFI_SERVICE),
+                (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE));
+    }
+
+    private static int getMaxNumberOfNetConnections(
+            @NonNull final WifiManager wifiManager,
+            @NonNull final TelephonyManager telephonyManager) {
+        if (isWifi(wifiManager)) {
             return MAX_NUMBER_OF_WIFI_NET_CONNECTIONS;
         }
 
-        switch (getNetworkType()) {
+        switch (getNetworkType(telephonyManager)) {
             case NET_2G:
             case NET_2_5G:
                 return MAX_NUMBER_OF_2G_NET_CONNECTIONS;
@@ -533,7 +555,11 @@ public final class NetUtil extends Origin {
      */
     @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
     public boolean isWifi() {
-        final SupplicantState s = mWifiManager.getConnectionInfo().getSupplicantState();
+        return isWifi(mWifiManager);
+    }
+
+    private static boolean isWifi(@NonNull final WifiManager wifiManager) {
+        final SupplicantState s = wifiManager.getConnectionInfo().getSupplicantState();
         final NetworkInfo.DetailedState state = WifiInfo.getDetailedStateOf(s);
 
         return state == NetworkInfo.DetailedState.CONNECTED || state == NetworkInfo.DetailedState.OBTAINING_IPADDR;
@@ -542,7 +568,12 @@ public final class NetUtil extends Origin {
     @NonNull
     @RequiresPermission(android.Manifest.permission.ACCESS_WIFI_STATE)
     public NetType getNetworkType() {
-        switch (mTelephonyManager.getNetworkType()) {
+        return getNetworkType(mTelephonyManager);
+    }
+
+    @NonNull
+    private static NetType getNetworkType(@NonNull final TelephonyManager telephonyManager) {
+        switch (telephonyManager.getNetworkType()) {
             case NETWORK_TYPE_UNKNOWN:
             case NETWORK_TYPE_CDMA:
             case NETWORK_TYPE_GPRS: